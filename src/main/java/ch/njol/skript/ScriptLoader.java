@@ -26,10 +26,16 @@ import java.io.FileFilter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.regex.Matcher;
 
 import org.eclipse.jdt.annotation.Nullable;
@@ -47,10 +53,12 @@ import ch.njol.skript.config.SectionNode;
 import ch.njol.skript.config.SimpleNode;
 import ch.njol.skript.effects.Delay;
 import ch.njol.skript.lang.Condition;
+import ch.njol.skript.lang.ConstantFolder;
 import ch.njol.skript.lang.Conditional;
 import ch.njol.skript.lang.Expression;
 import ch.njol.skript.lang.Loop;
 import ch.njol.skript.lang.ParseContext;
+import ch.njol.skript.lang.ParseHints;
 import ch.njol.skript.lang.SelfRegisteringSkriptEvent;
 import ch.njol.skript.lang.SkriptEvent;
 import ch.njol.skript.lang.SkriptEventInfo;
@@ -59,6 +67,7 @@ import ch.njol.skript.lang.Statement;
 import ch.njol.skript.lang.Trigger;
 import ch.njol.skript.lang.TriggerItem;
 import ch.njol.skript.lang.TriggerSection;
+import ch.njol.skript.lang.Variable;
 import ch.njol.skript.lang.While;
 import ch.njol.skript.lang.function.Function;
 import ch.njol.skript.lang.function.FunctionEvent;
@@ -93,25 +102,98 @@ final public class ScriptLoader {
 			m_no_scripts = new Message("skript.no scripts");
 	private final static PluralizingArgsMessage m_scripts_loaded = new PluralizingArgsMessage("skript.scripts loaded");
 	
-	@Nullable
-	public static Config currentScript = null;
-	
 	/**
-	 * use {@link #setCurrentEvent(String, Class...)}
+	 * The state of the script that is currently being parsed on a thread. Each thread has its own state, which allows to parse several scripts at the same time.
 	 */
-	@Nullable
-	private static String currentEventName = null;
+	private final static class ParserState {
+		
+		@Nullable
+		Config script = null;
+		
+		/**
+		 * use {@link ScriptLoader#setCurrentEvent(String, Class...)}
+		 */
+		@Nullable
+		String eventName = null;
+		
+		/**
+		 * use {@link ScriptLoader#setCurrentEvent(String, Class...)}
+		 */
+		@Nullable
+		Class<? extends Event>[] events = null;
+		
+		Kleenean hasDelayBefore = Kleenean.FALSE;
+		
+		/**
+		 * The number of slots allocated by the trigger that is currently being parsed
+		 */
+		int slots = 0;
+		
+		/**
+		 * The slots of the local variables with constant names of the trigger that is currently being parsed
+		 */
+		final Map<String, Integer> localSlots = new HashMap<String, Integer>();
+		
+		final List<TriggerSection> sections = new ArrayList<TriggerSection>();
+		final List<Loop> loops = new ArrayList<Loop>();
+		final Map<String, ItemType> aliases = new HashMap<String, ItemType>();
+		final Map<String, String> options = new HashMap<String, String>();
+		
+		String indentation = "";
+		
+		/**
+		 * The number of constant expressions folded in the script that is currently being parsed
+		 */
+		int foldedExpressions = 0;
+		
+		/**
+		 * The parse hints of the script that is currently being parsed, or null if script caching is disabled
+		 */
+		@Nullable
+		ParseHints hints = null;
+		
+		ParserState() {}
+		
+		ParserState(final Config script) {
+			this.script = script;
+		}
+		
+	}
+	
+	private final static ThreadLocal<ParserState> parserState = new ThreadLocal<ParserState>() {
+		@Override
+		protected ParserState initialValue() {
+			return new ParserState();
+		}
+	};
 	
+	@SuppressWarnings("null")
+	private final static ParserState state() {
+		return parserState.get();
+	}
+	
+	/**
+	 * Replaces the former field <tt>currentScript</tt>.
+	 * 
+	 * @return The script that is currently being parsed on this thread, or null if no script is being parsed
+	 */
 	@Nullable
-	public static String getCurrentEventName() {
-		return currentEventName;
+	public static Config getCurrentScript() {
+		return state().script;
 	}
 	
 	/**
-	 * use {@link #setCurrentEvent(String, Class...)}
+	 * @return The {@link ParseHints} of the script that is currently being parsed on this thread, or null if script caching is disabled or no script is being parsed
 	 */
 	@Nullable
-	private static Class<? extends Event>[] currentEvents = null;
+	public static ParseHints getParseHints() {
+		return state().hints;
+	}
+	
+	@Nullable
+	public static String getCurrentEventName() {
+		return state().eventName;
+	}
 	
 	/**
 	 * Call {@link #deleteCurrentEvent()} after parsing
@@ -120,24 +202,97 @@ final public class ScriptLoader {
 	 * @param events
 	 */
 	public static void setCurrentEvent(final String name, final @Nullable Class<? extends Event>... events) {
-		currentEventName = name;
-		currentEvents = events;
-		hasDelayBefore = Kleenean.FALSE;
+		final ParserState s = state();
+		s.eventName = name;
+		s.events = events;
+		s.hasDelayBefore = Kleenean.FALSE;
+		s.slots = 0;
+		s.localSlots.clear();
 	}
 	
 	public static void deleteCurrentEvent() {
-		currentEventName = null;
-		currentEvents = null;
-		hasDelayBefore = Kleenean.FALSE;
+		final ParserState s = state();
+		s.eventName = null;
+		s.events = null;
+		s.hasDelayBefore = Kleenean.FALSE;
+		s.slots = 0;
+		s.localSlots.clear();
 	}
 	
-	public static List<TriggerSection> currentSections = new ArrayList<TriggerSection>();
-	public static List<Loop> currentLoops = new ArrayList<Loop>();
-	private final static Map<String, ItemType> currentAliases = new HashMap<String, ItemType>();
-	final static HashMap<String, String> currentOptions = new HashMap<String, String>();
+	/**
+	 * Reserves a slot in the {@link TriggerFrame}s of the trigger that is currently being parsed, e.g. for the state of a loop.
+	 * 
+	 * @return The index of the slot
+	 */
+	public static int allocateSlot() {
+		return state().slots++;
+	}
+	
+	/**
+	 * @return The number of slots allocated by the trigger that is currently being parsed
+	 */
+	public static int getSlotCount() {
+		return state().slots;
+	}
+	
+	/**
+	 * Returns the slot holding the local variable with the given name in the trigger that is currently being parsed, and reserves it if this is the first use of the variable.
+	 * 
+	 * @param name The variable's name in lower case, excluding the local variable token. Must not be a list variable or an element of one.
+	 * @return The index of the slot
+	 */
+	public static int getLocalSlot(final String name) {
+		assert !name.contains(Variable.SEPARATOR) : name;
+		final Map<String, Integer> localSlots = state().localSlots;
+		final Integer slot = localSlots.get(name);
+		if (slot != null)
+			return slot;
+		final int s = allocateSlot();
+		localSlots.put(name, s);
+		return s;
+	}
+	
+	/**
+	 * @return The local variables with slots of the trigger that is currently being parsed
+	 */
+	public static Map<String, Integer> getLocalSlots() {
+		final Map<String, Integer> localSlots = state().localSlots;
+		return localSlots.isEmpty() ? Collections.<String, Integer>emptyMap() : new HashMap<String, Integer>(localSlots);
+	}
+	
+	/**
+	 * Replaces the former field <tt>currentSections</tt>.
+	 * 
+	 * @return The sections around the element that is currently being parsed, the innermost last. Sections add themselves while their contents are parsed.
+	 */
+	public static List<TriggerSection> getCurrentSections() {
+		return state().sections;
+	}
+	
+	/**
+	 * Replaces the former field <tt>currentLoops</tt>.
+	 * 
+	 * @return The loops around the element that is currently being parsed, the innermost last. Loops add themselves while their contents are parsed.
+	 */
+	public static List<Loop> getCurrentLoops() {
+		return state().loops;
+	}
 	
 	public static Map<String, ItemType> getScriptAliases() {
-		return currentAliases;
+		return state().aliases;
+	}
+	
+	/**
+	 * Replaces the former field <tt>hasDelayBefore</tt>, which is set with {@link #setHasDelayBefore(Kleenean)}.
+	 * 
+	 * @return Whether a delay has or might have happened before the element that is currently being parsed
+	 */
+	public static Kleenean getHasDelayBefore() {
+		return state().hasDelayBefore;
+	}
+	
+	public static void setHasDelayBefore(final Kleenean hasDelayBefore) {
+		state().hasDelayBefore = hasDelayBefore;
 	}
 	
 	/**
@@ -145,8 +300,6 @@ final public class ScriptLoader {
 	 */
 	private final static ScriptInfo loadedScripts = new ScriptInfo();
 	
-	public static Kleenean hasDelayBefore = Kleenean.FALSE;
-	
 	public static class ScriptInfo {
 		public int files, triggers, commands, functions;
 		
@@ -174,15 +327,6 @@ final public class ScriptLoader {
 		}
 	}
 	
-//	private final static class SerializedScript {
-//		public SerializedScript() {}
-//
-//		public final List<Trigger> triggers = new ArrayList<Trigger>();
-//		public final List<ScriptCommand> commands = new ArrayList<ScriptCommand>();
-//	}
-	
-	private static String indentation = "";
-	
 	static ScriptInfo loadScripts() {
 		final File scriptsFolder = new File(Skript.getInstance().getDataFolder(), Skript.SCRIPTSFOLDER + File.separator);
 		if (!scriptsFolder.isDirectory())
@@ -233,23 +377,32 @@ final public class ScriptLoader {
 	 * @return Info on the loaded scripts
 	 */
 	public final static ScriptInfo loadScripts(final File directory) {
-		final ScriptInfo i = new ScriptInfo();
+		final List<File> files = new ArrayList<File>();
+		listScripts(directory, files);
 		final boolean wasLocal = Language.setUseLocal(false);
 		try {
-			final File[] files = directory.listFiles(scriptFilter);
-			Arrays.sort(files);
-			for (final File f : files) {
-				if (f.isDirectory()) {
-					i.add(loadScripts(f));
-				} else {
-					i.add(loadScript(f));
-				}
-			}
+			return loadScripts(files);
 		} finally {
 			if (wasLocal)
 				Language.setUseLocal(true);
 		}
-		return i;
+	}
+	
+	/**
+	 * Adds the enabled scripts in the specified directory and its subdirectories to the given list, in the order they are loaded in.
+	 * 
+	 * @param directory
+	 * @param files
+	 */
+	private final static void listScripts(final File directory, final List<File> files) {
+		final File[] fs = directory.listFiles(scriptFilter);
+		Arrays.sort(fs);
+		for (final File f : fs) {
+			if (f.isDirectory())
+				listScripts(f, files);
+			else
+				files.add(f);
+		}
 	}
 	
 	/**
@@ -260,13 +413,12 @@ final public class ScriptLoader {
 	 */
 	public final static ScriptInfo loadScripts(final File[] files) {
 		Arrays.sort(files);
-		final ScriptInfo i = new ScriptInfo();
+		for (final File f : files)
+			assert f != null : Arrays.toString(files);
+		final ScriptInfo i;
 		final boolean wasLocal = Language.setUseLocal(false);
 		try {
-			for (final File f : files) {
-				assert f != null : Arrays.toString(files);
-				i.add(loadScript(f));
-			}
+			i = loadScripts(Arrays.asList(files));
 		} finally {
 			if (wasLocal)
 				Language.setUseLocal(true);
@@ -281,77 +433,206 @@ final public class ScriptLoader {
 		return i;
 	}
 	
-	@SuppressWarnings("unchecked")
-	private final static ScriptInfo loadScript(final File f) {
-//		File cache = null;
-//		if (SkriptConfig.enableScriptCaching.value()) {
-//			cache = new File(f.getParentFile(), "cache" + File.separator + f.getName() + "c");
-//			if (cache.exists()) {
-//				final RetainingLogHandler log = SkriptLogger.startRetainingLog();
-//				ObjectInputStream in = null;
-//				try {
-//					in = new ObjectInputStream(new FileInputStream(cache));
-//					final long lastModified = in.readLong();
-//					if (lastModified == f.lastModified()) {
-//						final SerializedScript script = (SerializedScript) in.readObject();
-//						triggersLoop: for (final Trigger t : script.triggers) {
-//							if (t.getEvent() instanceof SelfRegisteringSkriptEvent) {
-//								((SelfRegisteringSkriptEvent) t.getEvent()).register(t);
-//								SkriptEventHandler.addSelfRegisteringTrigger(t);
-//							} else {
-//								for (final SkriptEventInfo<?> e : Skript.getEvents()) {
-//									if (e.c == t.getEvent().getClass()) {
-//										SkriptEventHandler.addTrigger(e.events, t);
-//										continue triggersLoop;
-//									}
-//								}
-//								throw new EmptyStackException();
-//							}
-//						}
-//						for (final ScriptCommand c : script.commands) {
-//							Commands.registerCommand(c);
-//						}
-//						log.printLog();
-//						return new ScriptInfo(1, script.triggers.size(), script.commands.size());
-//					} else {
-//						cache.delete();
-//					}
-//				} catch (final Exception e) {
-//					if (Skript.testing()) {
-//						System.err.println("[debug] Error loading cached script '" + f.getName() + "':");
-//						e.printStackTrace();
-//					}
-//					unloadScript(f);
-//					if (in != null) {
-//						try {
-//							in.close();
-//						} catch (final IOException e1) {}
-//					}
-//					cache.delete();
-//				} finally {
-//					log.stop();
-//					if (in != null) {
-//						try {
-//							in.close();
-//						} catch (final IOException e) {}
-//					}
-//				}
-//			}
-//		}
+	/**
+	 * A script that is being loaded. Scripts are read and parsed first, possibly on several threads at once, and are then registered one after another by
+	 * {@link ScriptLoader#commitScript(LoadingScript)}.
+	 */
+	private final static class LoadingScript {
+		
+		final File file;
+		
+		/**
+		 * null if the file could not be read
+		 */
+		@Nullable
+		Config config = null;
+		
+		/**
+		 * Whether parsing the script failed with an exception
+		 */
+		boolean failed = false;
+		
+		/**
+		 * The messages logged while reading and parsing the script, which are printed when the script is registered
+		 */
+		final List<RetainingLogHandler> logs = new ArrayList<RetainingLogHandler>(2);
+		
+		final List<NonNullPair<SkriptEventInfo<?>, Trigger>> triggers = new ArrayList<NonNullPair<SkriptEventInfo<?>, Trigger>>();
+		
+		/**
+		 * The default values of variables
+		 */
+		final List<NonNullPair<String, Object>> variables = new ArrayList<NonNullPair<String, Object>>();
+		
+		int numCommands = 0, numFunctions = 0;
+		
+		/**
+		 * The parse hints of the script, or null if script caching is disabled
+		 */
+		@Nullable
+		ParseHints hints = null;
+		
+		LoadingScript(final File file) {
+			this.file = file;
+		}
+		
+	}
+	
+	private final static ThreadFactory loaderThreadFactory = new ThreadFactory() {
+		@Override
+		public Thread newThread(final @Nullable Runnable r) {
+			assert r != null;
+			final Thread t = Skript.newThread(r, "Skript script loader");
+			t.setDaemon(true);
+			return t;
+		}
+	};
+	
+	/**
+	 * Loads the given scripts.
+	 * <p>
+	 * The scripts are read on as many threads as there are processors. If {@link SkriptConfig#parseScriptsInParallel} is enabled they are also parsed on these threads, except
+	 * for scripts that define functions or commands: functions have to exist before any script that calls them is parsed, and commands are registered while they are parsed.
+	 * These scripts are thus parsed one after another in the given order before the other scripts. Otherwise all scripts are parsed on the calling thread in the given order,
+	 * as the elements of addons might not support being initialised on other threads. Finally the triggers of all scripts are registered and the messages logged while loading
+	 * them are printed, both in the given order.
+	 * 
+	 * @param files
+	 * @return Info on the loaded scripts
+	 */
+	private final static ScriptInfo loadScripts(final List<File> files) {
+		final List<LoadingScript> scripts = new ArrayList<LoadingScript>(files.size());
+		for (final File f : files)
+			scripts.add(new LoadingScript(f));
+		
+		final int threads = Math.min(scripts.size(), Runtime.getRuntime().availableProcessors());
+		final ExecutorService executor = threads <= 1 ? null : Executors.newFixedThreadPool(threads, loaderThreadFactory);
 		try {
-			final Config config = new Config(f, true, false, ":");
-			if (SkriptConfig.keepConfigsLoaded.value())
-				SkriptConfig.configs.add(config);
-			int numTriggers = 0;
-			int numCommands = 0;
-			int numFunctions = 0;
+			runAll(executor, scripts, false);
 			
-			currentAliases.clear();
-			currentOptions.clear();
-			currentScript = config;
+			if (!SkriptConfig.parseScriptsInParallel.value()) {
+				for (final LoadingScript s : scripts) {
+					if (s.config != null)
+						parseScript(s);
+				}
+				return commitScripts(scripts);
+			}
 			
-//			final SerializedScript script = new SerializedScript();
+			final List<LoadingScript> independent = new ArrayList<LoadingScript>(scripts.size());
+			for (final LoadingScript s : scripts) {
+				final Config config = s.config;
+				if (config == null)
+					continue;
+				if (mustBeParsedInOrder(config))
+					parseScript(s);
+				else
+					independent.add(s);
+			}
 			
+			runAll(executor, independent, true);
+		} finally {
+			if (executor != null)
+				executor.shutdown();
+		}
+		
+		return commitScripts(scripts);
+	}
+	
+	private final static ScriptInfo commitScripts(final List<LoadingScript> scripts) {
+		final ScriptInfo i = new ScriptInfo();
+		for (final LoadingScript s : scripts)
+			i.add(commitScript(s));
+		return i;
+	}
+	
+	/**
+	 * @param config
+	 * @return Whether the script defines any functions or commands
+	 */
+	private final static boolean mustBeParsedInOrder(final Config config) {
+		for (final Node n : config.getMainNode()) {
+			final String key = n.getKey();
+			if (!(n instanceof SectionNode) || key == null)
+				continue;
+			final String k = key.toLowerCase(Locale.ENGLISH);
+			if (k.startsWith("function ") || k.startsWith("command "))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Reads or parses the given scripts, using the given executor if there is more than one script, and waits until all scripts are done.
+	 * 
+	 * @param executor
+	 * @param scripts
+	 * @param parse Whether to parse the scripts ({@link #parseScript(LoadingScript)}) or to read them ({@link #readScript(LoadingScript)})
+	 */
+	private final static void runAll(final @Nullable ExecutorService executor, final List<LoadingScript> scripts, final boolean parse) {
+		if (executor == null || scripts.size() <= 1) {
+			for (final LoadingScript s : scripts) {
+				if (parse)
+					parseScript(s);
+				else
+					readScript(s);
+			}
+			return;
+		}
+		final List<Future<?>> futures = new ArrayList<Future<?>>(scripts.size());
+		for (final LoadingScript s : scripts) {
+			futures.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					if (parse)
+						parseScript(s);
+					else
+						readScript(s);
+				}
+			}));
+		}
+		boolean interrupted = false;
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				futures.get(i).get();
+			} catch (final InterruptedException e) {
+				interrupted = true;
+				i--; // the scripts have to be finished before they can be registered
+			} catch (final ExecutionException e) {
+				final LoadingScript s = scripts.get(i);
+				s.failed = true;
+				Skript.exception(e, "Could not load " + s.file.getName());
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+	
+	private final static void readScript(final LoadingScript loading) {
+		final RetainingLogHandler log = SkriptLogger.startRetainingLog();
+		try {
+			loading.config = new Config(loading.file, true, false, ":");
+			if (SkriptConfig.enableScriptCaching.value())
+				loading.hints = ParseHints.load(loading.file);
+		} catch (final IOException e) {
+			Skript.error("Could not load " + loading.file.getName() + ": " + ExceptionUtils.toString(e));
+		} catch (final Exception e) {
+			Skript.exception(e, "Could not load " + loading.file.getName());
+		} finally {
+			log.detach();
+			loading.logs.add(log);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private final static void parseScript(final LoadingScript loading) {
+		final File f = loading.file;
+		final Config config = loading.config;
+		assert config != null;
+		final ParserState state = new ParserState(config);
+		parserState.set(state);
+		final RetainingLogHandler parseLog = SkriptLogger.startRetainingLog();
+		state.hints = loading.hints;
+		try {
 			final CountingLogHandler numErrors = SkriptLogger.startLogHandler(new CountingLogHandler(SkriptLogger.SEVERE));
 			
 			try {
@@ -376,7 +657,7 @@ final public class ScriptLoader {
 							final ItemType t = Aliases.parseAlias(((EntryNode) n).getValue());
 							if (t == null)
 								continue;
-							currentAliases.put(((EntryNode) n).getKey().toLowerCase(), t);
+							state.aliases.put(((EntryNode) n).getKey().toLowerCase(), t);
 						}
 						continue;
 					} else if (event.equalsIgnoreCase("options")) {
@@ -386,7 +667,7 @@ final public class ScriptLoader {
 								Skript.error("invalid line in options");
 								continue;
 							}
-							currentOptions.put(((EntryNode) n).getKey(), ((EntryNode) n).getValue());
+							state.options.put(((EntryNode) n).getKey(), ((EntryNode) n).getValue());
 						}
 						continue;
 					} else if (event.equalsIgnoreCase("variables")) {
@@ -454,7 +735,7 @@ final public class ScriptLoader {
 									continue;
 								}
 							}
-							Variables.setVariable(name, o, null, false);
+							loading.variables.add(new NonNullPair<String, Object>(name, o));
 						}
 						continue;
 					}
@@ -468,8 +749,7 @@ final public class ScriptLoader {
 						
 						final ScriptCommand c = Commands.loadCommand(node);
 						if (c != null) {
-							numCommands++;
-//							script.commands.add(c);
+							loading.numCommands++;
 						}
 						
 						deleteCurrentEvent();
@@ -481,7 +761,7 @@ final public class ScriptLoader {
 						
 						final Function<?> func = Functions.loadFunction(node);
 						if (func != null) {
-							numFunctions++;
+							loading.numFunctions++;
 						}
 						
 						deleteCurrentEvent();
@@ -512,60 +792,64 @@ final public class ScriptLoader {
 						deleteCurrentEvent();
 					}
 					
-					if (parsedEvent.getSecond() instanceof SelfRegisteringSkriptEvent) {
-						((SelfRegisteringSkriptEvent) parsedEvent.getSecond()).register(trigger);
-						SkriptEventHandler.addSelfRegisteringTrigger(trigger);
-					} else {
-						SkriptEventHandler.addTrigger(parsedEvent.getFirst().events, trigger);
-					}
-					
-//					script.triggers.add(trigger);
-					
-					numTriggers++;
+					loading.triggers.add(new NonNullPair<SkriptEventInfo<?>, Trigger>(parsedEvent.getFirst(), trigger));
 				}
 				
+				final int numTriggers = loading.triggers.size(), numCommands = loading.numCommands, foldedExpressions = state.foldedExpressions;
 				if (Skript.logHigh())
-					Skript.info("loaded " + numTriggers + " trigger" + (numTriggers == 1 ? "" : "s") + " and " + numCommands + " command" + (numCommands == 1 ? "" : "s") + " from '" + config.getFileName() + "'");
-				
-				currentScript = null;
+					Skript.info("loaded " + numTriggers + " trigger" + (numTriggers == 1 ? "" : "s") + " and " + numCommands + " command" + (numCommands == 1 ? "" : "s") + " from '" + config.getFileName() + "'"
+							+ (foldedExpressions == 0 ? "" : " (folded " + foldedExpressions + " constant expression" + (foldedExpressions == 1 ? "" : "s") + ")"));
 			} finally {
 				numErrors.stop();
 			}
 			
-//			if (SkriptConfig.enableScriptCaching.value() && cache != null) {
-//				if (numErrors.getCount() > 0) {
-//					ObjectOutputStream out = null;
-//					try {
-//						cache.getParentFile().mkdirs();
-//						out = new ObjectOutputStream(new FileOutputStream(cache));
-//						out.writeLong(f.lastModified());
-//						out.writeObject(script);
-//					} catch (final NotSerializableException e) {
-//						Skript.exception(e, "Cannot cache " + f.getName());
-//						if (out != null)
-//							out.close();
-//						cache.delete();
-//					} catch (final IOException e) {
-//						Skript.warning("Cannot cache " + f.getName() + ": " + e.getLocalizedMessage());
-//						if (out != null)
-//							out.close();
-//						cache.delete();
-//					} finally {
-//						if (out != null)
-//							out.close();
-//					}
-//				}
-//			}
-			
-			return new ScriptInfo(1, numTriggers, numCommands, numFunctions);
-		} catch (final IOException e) {
-			Skript.error("Could not load " + f.getName() + ": " + ExceptionUtils.toString(e));
+			final ParseHints hints = loading.hints;
+			if (hints != null)
+				hints.save();
 		} catch (final Exception e) {
+			loading.failed = true;
 			Skript.exception(e, "Could not load " + f.getName());
 		} finally {
 			SkriptLogger.setNode(null);
+			parserState.remove();
+			parseLog.detach();
+			loading.logs.add(parseLog);
 		}
-		return new ScriptInfo();
+	}
+	
+	/**
+	 * Registers the triggers of a parsed script and prints the messages logged while loading it.
+	 * 
+	 * @param loading
+	 * @return Info on the loaded script
+	 */
+	private final static ScriptInfo commitScript(final LoadingScript loading) {
+		for (final RetainingLogHandler log : loading.logs)
+			log.printLog();
+		final Config config = loading.config;
+		if (config == null)
+			return new ScriptInfo();
+		if (SkriptConfig.keepConfigsLoaded.value())
+			SkriptConfig.configs.add(config);
+		if (loading.failed)
+			return new ScriptInfo();
+		
+		for (final NonNullPair<String, Object> v : loading.variables) {
+			if (Variables.getVariable(v.getFirst(), null, false) == null) // might have been set by a previous script
+				Variables.setVariable(v.getFirst(), v.getSecond(), null, false);
+		}
+		
+		for (final NonNullPair<SkriptEventInfo<?>, Trigger> t : loading.triggers) {
+			final Trigger trigger = t.getSecond();
+			if (trigger.getEvent() instanceof SelfRegisteringSkriptEvent) {
+				((SelfRegisteringSkriptEvent) trigger.getEvent()).register(trigger);
+				SkriptEventHandler.addSelfRegisteringTrigger(trigger);
+			} else {
+				SkriptEventHandler.addTrigger(t.getFirst().events, trigger);
+			}
+		}
+		
+		return new ScriptInfo(1, loading.triggers.size(), loading.numCommands, loading.numFunctions);
 	}
 	
 	/**
@@ -614,11 +898,12 @@ final public class ScriptLoader {
 	}
 	
 	public final static String replaceOptions(final String s) {
+		final Map<String, String> options = state().options;
 		final String r = StringUtils.replaceAll(s, "\\{@(.+?)\\}", new Callback<String, Matcher>() {
 			@Override
 			@Nullable
 			public String run(final Matcher m) {
-				final String option = currentOptions.get(m.group(1));
+				final String option = options.get(m.group(1));
 				if (option == null) {
 					Skript.error("undefined option " + m.group());
 					return m.group();
@@ -632,9 +917,10 @@ final public class ScriptLoader {
 	
 	@SuppressWarnings("unchecked")
 	public static ArrayList<TriggerItem> loadItems(final SectionNode node) {
+		final ParserState state = state();
 		
 		if (Skript.debug())
-			indentation += "    ";
+			state.indentation += "    ";
 		
 		final ArrayList<TriggerItem> items = new ArrayList<TriggerItem>();
 		
@@ -651,10 +937,10 @@ final public class ScriptLoader {
 				if (stmt == null)
 					continue;
 				if (Skript.debug() || n.debug())
-					Skript.debug(indentation + stmt.toString(null, true));
+					Skript.debug(state.indentation + stmt.toString(null, true));
 				items.add(stmt);
 				if (stmt instanceof Delay)
-					hasDelayBefore = Kleenean.TRUE;
+					state.hasDelayBefore = Kleenean.TRUE;
 			} else if (n instanceof SectionNode) {
 				String name = replaceOptions("" + n.getKey());
 				if (!SkriptParser.validateLine(name))
@@ -681,33 +967,33 @@ final public class ScriptLoader {
 						continue;
 					}
 					if (Skript.debug() || n.debug())
-						Skript.debug(indentation + "loop " + loopedExpr.toString(null, true) + ":");
-					final Kleenean hadDelayBefore = hasDelayBefore;
+						Skript.debug(state.indentation + "loop " + loopedExpr.toString(null, true) + ":");
+					final Kleenean hadDelayBefore = state.hasDelayBefore;
 					items.add(new Loop(loopedExpr, (SectionNode) n));
-					if (hadDelayBefore != Kleenean.TRUE && hasDelayBefore != Kleenean.FALSE)
-						hasDelayBefore = Kleenean.UNKNOWN;
+					if (hadDelayBefore != Kleenean.TRUE && state.hasDelayBefore != Kleenean.FALSE)
+						state.hasDelayBefore = Kleenean.UNKNOWN;
 				} else if (StringUtils.startsWithIgnoreCase(name, "while ")) {
 					final String l = "" + name.substring("while ".length());
 					final Condition c = Condition.parse(l, "Can't understand this condition: " + l);
 					if (c == null)
 						continue;
 					if (Skript.debug() || n.debug())
-						Skript.debug(indentation + "while " + c.toString(null, true) + ":");
-					final Kleenean hadDelayBefore = hasDelayBefore;
+						Skript.debug(state.indentation + "while " + c.toString(null, true) + ":");
+					final Kleenean hadDelayBefore = state.hasDelayBefore;
 					items.add(new While(c, (SectionNode) n));
-					if (hadDelayBefore != Kleenean.TRUE && hasDelayBefore != Kleenean.FALSE)
-						hasDelayBefore = Kleenean.UNKNOWN;
+					if (hadDelayBefore != Kleenean.TRUE && state.hasDelayBefore != Kleenean.FALSE)
+						state.hasDelayBefore = Kleenean.UNKNOWN;
 				} else if (name.equalsIgnoreCase("else")) {
 					if (items.size() == 0 || !(items.get(items.size() - 1) instanceof Conditional) || ((Conditional) items.get(items.size() - 1)).hasElseClause()) {
 						Skript.error("'else' has to be placed just after an 'if' or 'else if' section");
 						continue;
 					}
 					if (Skript.debug() || n.debug())
-						Skript.debug(indentation + "else:");
-					final Kleenean hadDelayAfterLastIf = hasDelayBefore;
-					hasDelayBefore = hadDelayBeforeLastIf;
+						Skript.debug(state.indentation + "else:");
+					final Kleenean hadDelayAfterLastIf = state.hasDelayBefore;
+					state.hasDelayBefore = hadDelayBeforeLastIf;
 					((Conditional) items.get(items.size() - 1)).loadElseClause((SectionNode) n);
-					hasDelayBefore = hadDelayBeforeLastIf.or(hadDelayAfterLastIf.and(hasDelayBefore));
+					state.hasDelayBefore = hadDelayBeforeLastIf.or(hadDelayAfterLastIf.and(state.hasDelayBefore));
 				} else if (StringUtils.startsWithIgnoreCase(name, "else if ")) {
 					if (items.size() == 0 || !(items.get(items.size() - 1) instanceof Conditional) || ((Conditional) items.get(items.size() - 1)).hasElseClause()) {
 						Skript.error("'else if' has to be placed just after another 'if' or 'else if' section");
@@ -718,11 +1004,11 @@ final public class ScriptLoader {
 					if (cond == null)
 						continue;
 					if (Skript.debug() || n.debug())
-						Skript.debug(indentation + "else if " + cond.toString(null, true));
-					final Kleenean hadDelayAfterLastIf = hasDelayBefore;
-					hasDelayBefore = hadDelayBeforeLastIf;
+						Skript.debug(state.indentation + "else if " + cond.toString(null, true));
+					final Kleenean hadDelayAfterLastIf = state.hasDelayBefore;
+					state.hasDelayBefore = hadDelayBeforeLastIf;
 					((Conditional) items.get(items.size() - 1)).loadElseIf(cond, (SectionNode) n);
-					hasDelayBefore = hadDelayBeforeLastIf.or(hadDelayAfterLastIf.and(hasDelayBefore.and(Kleenean.UNKNOWN)));
+					state.hasDelayBefore = hadDelayBeforeLastIf.or(hadDelayAfterLastIf.and(state.hasDelayBefore.and(Kleenean.UNKNOWN)));
 				} else {
 					if (StringUtils.startsWithIgnoreCase(name, "if "))
 						name = "" + name.substring(3);
@@ -730,11 +1016,11 @@ final public class ScriptLoader {
 					if (cond == null)
 						continue;
 					if (Skript.debug() || n.debug())
-						Skript.debug(indentation + cond.toString(null, true) + ":");
-					final Kleenean hadDelayBefore = hasDelayBefore;
+						Skript.debug(state.indentation + cond.toString(null, true) + ":");
+					final Kleenean hadDelayBefore = state.hasDelayBefore;
 					hadDelayBeforeLastIf = hadDelayBefore;
 					items.add(new Conditional(cond, (SectionNode) n));
-					hasDelayBefore = hadDelayBefore.or(hasDelayBefore.and(Kleenean.UNKNOWN));
+					state.hasDelayBefore = hadDelayBefore.or(state.hasDelayBefore.and(Kleenean.UNKNOWN));
 				}
 			}
 		}
@@ -745,7 +1031,10 @@ final public class ScriptLoader {
 		SkriptLogger.setNode(node);
 		
 		if (Skript.debug())
-			indentation = "" + indentation.substring(0, indentation.length() - 4);
+			state.indentation = "" + state.indentation.substring(0, state.indentation.length() - 4);
+		
+		if (state.sections.isEmpty()) // the whole trigger has been loaded
+			state.foldedExpressions += ConstantFolder.fold(items);
 		
 		return items;
 	}
@@ -805,11 +1094,11 @@ final public class ScriptLoader {
 	}
 	
 	public final static boolean isCurrentEvent(final @Nullable Class<? extends Event> event) {
-		return CollectionUtils.containsSuperclass(currentEvents, event);
+		return CollectionUtils.containsSuperclass(state().events, event);
 	}
 	
 	public final static boolean isCurrentEvent(final Class<? extends Event>... events) {
-		return CollectionUtils.containsAnySuperclass(currentEvents, events);
+		return CollectionUtils.containsAnySuperclass(state().events, events);
 	}
 	
 	/**
@@ -817,7 +1106,7 @@ final public class ScriptLoader {
 	 */
 	@Nullable
 	public static Class<? extends Event>[] getCurrentEvents() {
-		return currentEvents;
+		return state().events;
 	}
 	
 }
@@ -153,6 +153,12 @@ public abstract class SkriptConfig {
 	
 	public final static Option<Boolean> caseSensitive = new Option<Boolean>("case sensitive", false);
 	
+	public final static Option<Boolean> compileTriggers = new Option<Boolean>("compile triggers", false)
+			.optional(true);
+	
+	public final static Option<Boolean> parseScriptsInParallel = new Option<Boolean>("parse scripts in parallel", false)
+			.optional(true);
+	
 	public final static Option<Boolean> disableVariableConflictWarnings = new Option<Boolean>("disable variable conflict warnings", false);
 	public final static Option<Boolean> disableObjectCannotBeSavedWarnings = new Option<Boolean>("disable variable will not be saved warnings", false);
 	
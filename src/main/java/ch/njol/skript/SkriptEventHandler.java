@@ -25,11 +25,11 @@ import java.io.File;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
 import java.util.Set;
 
 import org.bukkit.Bukkit;
@@ -62,78 +62,115 @@ public abstract class SkriptEventHandler {
 	
 	private final static List<Trigger> selfRegisteredTriggers = new ArrayList<Trigger>();
 	
-	private final static Iterator<Trigger> getTriggers(final Class<? extends Event> event) {
-		return new Iterator<Trigger>() {
-			@Nullable
-			private Class<?> e = event;
-			@Nullable
-			private Iterator<Trigger> current = null;
-			
-			@Override
-			public boolean hasNext() {
-				Iterator<Trigger> current = this.current;
-				Class<?> e = this.e;
-				while (current == null || !current.hasNext()) {
-					if (e == null || !Event.class.isAssignableFrom(e))
-						return false;
-					final List<Trigger> l = triggers.get(e);
-					this.current = current = l == null ? null : l.iterator();
-					this.e = e = e.getSuperclass();
-				}
-				return true;
+	/**
+	 * The triggers to check for events of a class, see {@link #getEventTriggers(Class)}
+	 */
+	private final static class EventTriggers {
+		
+		/**
+		 * The triggers of the class and all its superclasses, ordered from the most specific class to the least specific
+		 */
+		final Trigger[] triggers;
+		
+		/**
+		 * The registered event class whose listener handles events of the class. Events are passed to the listeners of all registered superclasses, but must only be
+		 * handled once.
+		 */
+		@Nullable
+		final Class<?> listener;
+		
+		EventTriggers(final Trigger[] triggers, final @Nullable Class<?> listener) {
+			this.triggers = triggers;
+			this.listener = listener;
+		}
+		
+	}
+	
+	/**
+	 * {@link #triggers} indexed by the actual classes of called events. This map is never modified, but replaced whenever triggers are added or removed, or when it is extended
+	 * by an event of a class that has not been called yet. Changes are made while synchronized on {@link #triggers}.
+	 */
+	private static volatile Map<Class<?>, EventTriggers> eventTriggers = new IdentityHashMap<Class<?>, EventTriggers>();
+	
+	/**
+	 * @param c The class of a called event
+	 * @return The triggers of the given class and its superclasses, and the listener to handle events of the given class
+	 */
+	private final static EventTriggers getEventTriggers(final Class<?> c) {
+		final EventTriggers ts = eventTriggers.get(c);
+		if (ts != null)
+			return ts;
+		synchronized (triggers) {
+			EventTriggers r = eventTriggers.get(c);
+			if (r != null)
+				return r;
+			final List<Trigger> l = new ArrayList<Trigger>();
+			for (Class<?> e = c; e != null && Event.class.isAssignableFrom(e); e = e.getSuperclass()) {
+				final List<Trigger> t = triggers.get(e);
+				if (t != null)
+					l.addAll(t);
 			}
-			
-			@Override
-			public Trigger next() {
-				final Iterator<Trigger> current = this.current;
-				if (current == null || !hasNext())
-					throw new NoSuchElementException();
-				final Trigger next = current.next();
-				assert next != null;
-				return next;
+			Class<?> listener = null;
+			for (final Class<?> e : registeredEvents) {
+				if (e.isAssignableFrom(c)) {
+					listener = e;
+					break;
+				}
 			}
-			
+			r = new EventTriggers(l.toArray(new Trigger[l.size()]), listener);
+			final Map<Class<?>, EventTriggers> newEventTriggers = new IdentityHashMap<Class<?>, EventTriggers>(eventTriggers);
+			newEventTriggers.put(c, r);
+			eventTriggers = newEventTriggers;
+			return r;
+		}
+	}
+	
+	/**
+	 * Must be called while synchronized on {@link #triggers} after triggers or listeners have changed.
+	 */
+	private final static void clearEventTriggers() {
+		assert Thread.holdsLock(triggers);
+		eventTriggers = new IdentityHashMap<Class<?>, EventTriggers>();
+	}
+	
+	/**
+	 * Creates the executor of the listener of the given event class.
+	 * 
+	 * @param listener A registered event class
+	 * @return An executor that handles all events that are not handled by the listener of another registered class
+	 */
+	private final static EventExecutor newExecutor(final Class<? extends Event> listener) {
+		return new EventExecutor() {
 			@Override
-			public void remove() {
-				throw new UnsupportedOperationException();
+			public void execute(final @Nullable Listener l, final @Nullable Event e) {
+				if (e == null)
+					return;
+				final EventTriggers ts = getEventTriggers(e.getClass());
+				if (ts.listener != listener) // an event is received multiple times if multiple superclasses of it are registered
+					return;
+				check(e, ts.triggers);
 			}
 		};
 	}
 	
-	@Nullable
-	static Event last = null;
-	
-	final static EventExecutor ee = new EventExecutor() {
-		@Override
-		public void execute(final @Nullable Listener l, final @Nullable Event e) {
-			if (e == null)
-				return;
-			if (last == e) // an event is received multiple times if multiple superclasses of it are registered
-				return;
-			last = e;
-			check(e);
-		}
-	};
-	
 	static void check(final Event e) {
-		@SuppressWarnings("null")
-		Iterator<Trigger> ts = getTriggers(e.getClass());
-		if (!ts.hasNext())
+		check(e, getEventTriggers(e.getClass()).triggers);
+	}
+	
+	private static void check(final Event e, final Trigger[] ts) {
+		if (ts.length == 0)
 			return;
 		
 		if (Skript.logVeryHigh()) {
 			boolean hasTrigger = false;
-			while (ts.hasNext()) {
-				if (ts.next().getEvent().check(e)) {
+			for (final Trigger t : ts) {
+				if (t.getEvent().check(e)) {
 					hasTrigger = true;
 					break;
 				}
 			}
 			if (!hasTrigger)
 				return;
-			final Class<? extends Event> c = e.getClass();
-			assert c != null;
-			ts = getTriggers(c);
 			
 			logEventStart(e);
 		}
@@ -146,8 +183,7 @@ public abstract class SkriptEventHandler {
 			return;
 		}
 		
-		while (ts.hasNext()) {
-			final Trigger t = ts.next();
+		for (final Trigger t : ts) {
 			if (!t.getEvent().check(e))
 				continue;
 			logTriggerStart(t);
@@ -190,11 +226,14 @@ public abstract class SkriptEventHandler {
 	}
 	
 	static void addTrigger(final Class<? extends Event>[] events, final Trigger trigger) {
-		for (final Class<? extends Event> e : events) {
-			List<Trigger> ts = triggers.get(e);
-			if (ts == null)
-				triggers.put(e, ts = new ArrayList<Trigger>());
-			ts.add(trigger);
+		synchronized (triggers) {
+			for (final Class<? extends Event> e : events) {
+				List<Trigger> ts = triggers.get(e);
+				if (ts == null)
+					triggers.put(e, ts = new ArrayList<Trigger>());
+				ts.add(trigger);
+			}
+			clearEventTriggers();
 		}
 	}
 	
@@ -212,18 +251,21 @@ public abstract class SkriptEventHandler {
 		final ScriptInfo info = new ScriptInfo();
 		info.files = 1;
 		
-		final Iterator<List<Trigger>> triggersIter = SkriptEventHandler.triggers.values().iterator();
-		while (triggersIter.hasNext()) {
-			final List<Trigger> ts = triggersIter.next();
-			for (int i = 0; i < ts.size(); i++) {
-				if (script.equals(ts.get(i).getScript())) {
-					info.triggers++;
-					ts.remove(i);
-					i--;
-					if (ts.isEmpty())
-						triggersIter.remove();
+		synchronized (triggers) {
+			final Iterator<List<Trigger>> triggersIter = SkriptEventHandler.triggers.values().iterator();
+			while (triggersIter.hasNext()) {
+				final List<Trigger> ts = triggersIter.next();
+				for (int i = 0; i < ts.size(); i++) {
+					if (script.equals(ts.get(i).getScript())) {
+						info.triggers++;
+						ts.remove(i);
+						i--;
+						if (ts.isEmpty())
+							triggersIter.remove();
+					}
 				}
 			}
+			clearEventTriggers();
 		}
 		
 		for (int i = 0; i < selfRegisteredTriggers.size(); i++) {
@@ -244,7 +286,10 @@ public abstract class SkriptEventHandler {
 	}
 	
 	static void removeAllTriggers() {
-		triggers.clear();
+		synchronized (triggers) {
+			triggers.clear();
+			clearEventTriggers();
+		}
 		for (final Trigger t : selfRegisteredTriggers)
 			((SelfRegisteringSkriptEvent) t.getEvent()).unregisterAll();
 		selfRegisteredTriggers.clear();
@@ -252,9 +297,9 @@ public abstract class SkriptEventHandler {
 	}
 	
 	/**
-	 * Stores which events are currently registered with Bukkit
+	 * Stores which events are currently registered with Bukkit, in the order they were registered in
 	 */
-	private final static Set<Class<? extends Event>> registeredEvents = new HashSet<Class<? extends Event>>();
+	private final static Set<Class<? extends Event>> registeredEvents = new LinkedHashSet<Class<? extends Event>>();
 	private final static Listener listener = new Listener() {
 		@Override
 		public boolean beforeModifications() {
@@ -277,20 +322,30 @@ public abstract class SkriptEventHandler {
 		}
 	};
 	
+	/**
+	 * Registers listeners for all events that have triggers, and indexes the triggers by the events' classes.
+	 */
 	@SuppressWarnings({"unchecked", "rawtypes"})
 	final static void registerBukkitEvents() {
-		for (final Class<? extends Event> e : triggers.keySet()) {
-			assert e != null;
-			if (!containsSuperclass((Set) registeredEvents, e)) { // I just love Java's generics
-				Bukkit.getPluginManager().registerEvent(e, listener, SkriptConfig.defaultEventPriority.value(), ee, Skript.getInstance());
-				registeredEvents.add(e);
-//				for (final Iterator<Class<? extends Event>> i = registeredEvents.iterator(); i.hasNext();) {
-//					final Class<? extends Event> ev = i.next();
-//					if (e.isAssignableFrom(ev)) {
-//						if (unregisterEvent(ev))
-//							i.remove();
+		synchronized (triggers) {
+			for (final Class<? extends Event> e : triggers.keySet()) {
+				assert e != null;
+				if (!containsSuperclass((Set) registeredEvents, e)) { // I just love Java's generics
+					Bukkit.getPluginManager().registerEvent(e, listener, SkriptConfig.defaultEventPriority.value(), newExecutor(e), Skript.getInstance());
+					registeredEvents.add(e);
+					clearEventTriggers();
+//					for (final Iterator<Class<? extends Event>> i = registeredEvents.iterator(); i.hasNext();) {
+//						final Class<? extends Event> ev = i.next();
+//						if (e.isAssignableFrom(ev)) {
+//							if (unregisterEvent(ev))
+//								i.remove();
+//						}
 //					}
-//				}
+				}
+			}
+			for (final Class<? extends Event> e : triggers.keySet()) {
+				assert e != null;
+				getEventTriggers(e);
 			}
 		}
 	}
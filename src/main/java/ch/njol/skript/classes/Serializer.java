@@ -102,6 +102,21 @@ public abstract class Serializer<T> extends YggdrasilSerializer<T> {
 	@Override
 	public abstract void deserialize(T o, Fields f) throws StreamCorruptedException, NotSerializableException;
 	
+	/**
+	 * Returns an object equal to the given one that will not change anymore, so that it can be serialised later on a different thread (e.g. by the variable save thread).
+	 * Immutable objects can simply be returned, while mutable objects should be copied if this is cheap.
+	 * <p>
+	 * The default implementation returns null, which means that objects of this class must be serialised immediately on Bukkit's main thread. This method is not called if
+	 * {@link #mustSyncDeserialization()} returns true, as such objects are always serialised on Bukkit's main thread.
+	 * 
+	 * @param o The object to take a snapshot of. Only called on Bukkit's main thread.
+	 * @return A snapshot of the object, or null if it must be serialised on Bukkit's main thread.
+	 */
+	@Nullable
+	public T snapshot(final T o) {
+		return null;
+	}
+	
 	/**
 	 * Not currently used (everything happens on Bukkit's main thread).
 	 * 
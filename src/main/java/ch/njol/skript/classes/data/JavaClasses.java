@@ -193,6 +193,11 @@ public class JavaClasses {
 					public boolean mustSyncDeserialization() {
 						return false;
 					}
+					
+					@Override
+					public Long snapshot(final Long o) {
+						return o; // immutable
+					}
 				}).math(Number.class, new NumberArithmetic()));
 		
 		Classes.registerClass(new ClassInfo<Integer>(Integer.class, "integer")
@@ -254,6 +259,11 @@ public class JavaClasses {
 					public boolean mustSyncDeserialization() {
 						return false;
 					}
+					
+					@Override
+					public Integer snapshot(final Integer o) {
+						return o; // immutable
+					}
 				}).math(Number.class, new NumberArithmetic()));
 		
 		Classes.registerClass(new ClassInfo<Double>(Double.class, "double")
@@ -317,6 +327,11 @@ public class JavaClasses {
 					public boolean mustSyncDeserialization() {
 						return false;
 					}
+					
+					@Override
+					public Double snapshot(final Double o) {
+						return o; // immutable
+					}
 				}).math(Number.class, new NumberArithmetic()));
 		
 		Classes.registerClass(new ClassInfo<Float>(Float.class, "float")
@@ -378,6 +393,11 @@ public class JavaClasses {
 					public boolean mustSyncDeserialization() {
 						return false;
 					}
+					
+					@Override
+					public Float snapshot(final Float o) {
+						return o; // immutable
+					}
 				}).math(Number.class, new NumberArithmetic()));
 		
 		Classes.registerClass(new ClassInfo<Boolean>(Boolean.class, "boolean")
@@ -449,6 +469,11 @@ public class JavaClasses {
 					public boolean mustSyncDeserialization() {
 						return false;
 					}
+					
+					@Override
+					public Boolean snapshot(final Boolean o) {
+						return o; // immutable
+					}
 				}));
 		
 		Classes.registerClass(new ClassInfo<Short>(Short.class, "short")
@@ -510,6 +535,11 @@ public class JavaClasses {
 					public boolean mustSyncDeserialization() {
 						return false;
 					}
+					
+					@Override
+					public Short snapshot(final Short o) {
+						return o; // immutable
+					}
 				}).math(Number.class, new NumberArithmetic()));
 		
 		Classes.registerClass(new ClassInfo<Byte>(Byte.class, "byte")
@@ -571,6 +601,11 @@ public class JavaClasses {
 					public boolean mustSyncDeserialization() {
 						return false;
 					}
+					
+					@Override
+					public Byte snapshot(final Byte o) {
+						return o; // immutable
+					}
 				}).math(Number.class, new NumberArithmetic()));
 		
 		Classes.registerClass(new ClassInfo<String>(String.class, "string")
@@ -662,6 +697,11 @@ public class JavaClasses {
 					public boolean mustSyncDeserialization() {
 						return false;
 					}
+					
+					@Override
+					public String snapshot(final String o) {
+						return o; // immutable
+					}
 				}));
 	}
 }
@@ -429,6 +429,11 @@ public class SkriptClasses {
 					public boolean mustSyncDeserialization() {
 						return false;
 					}
+					
+					@Override
+					public Timespan snapshot(final Timespan t) {
+						return t; // immutable
+					}
 				})
 				.math(Timespan.class, new Arithmetic<Timespan, Timespan>() {
 					@Override
@@ -537,6 +542,11 @@ public class SkriptClasses {
 							return null;
 						}
 					}
+					
+					@Override
+					public Date snapshot(final Date d) {
+						return new Date(d.getTimestamp());
+					}
 				}).math(Timespan.class, new Arithmetic<Date, Timespan>() {
 					@Override
 					public Timespan difference(final Date first, final Date second) {
@@ -21,15 +21,15 @@
 
 package ch.njol.skript.command;
 
-import java.util.WeakHashMap;
-
 import org.eclipse.jdt.annotation.Nullable;
 
+import ch.njol.skript.ScriptLoader;
 import ch.njol.skript.Skript;
 import ch.njol.skript.classes.ClassInfo;
 import ch.njol.skript.lang.Expression;
 import ch.njol.skript.lang.ParseContext;
 import ch.njol.skript.lang.SkriptParser;
+import ch.njol.skript.lang.TriggerFrame;
 import ch.njol.skript.lang.Variable;
 import ch.njol.skript.lang.VariableString;
 import ch.njol.skript.lang.util.SimpleLiteral;
@@ -59,7 +59,10 @@ public class Argument<T> {
 	
 	private final boolean optional;
 	
-	private transient WeakHashMap<Event, T[]> current = new WeakHashMap<Event, T[]>();
+	/**
+	 * The {@link TriggerFrame} slot holding this argument's value
+	 */
+	private final int slot = ScriptLoader.allocateSlot();
 	
 	private Argument(@Nullable final String name, final @Nullable Expression<? extends T> def, final ClassInfo<T> type, final boolean single, final int index, final boolean optional) {
 		this.name = name;
@@ -134,7 +137,9 @@ public class Argument<T> {
 	public void set(final ScriptCommandEvent e, final Object[] o) {
 		if (!(type.getC().isAssignableFrom(o.getClass().getComponentType())))
 			throw new IllegalArgumentException();
-		current.put(e, (T[]) o);
+		final TriggerFrame frame = TriggerFrame.of(e);
+		assert frame != null;
+		frame.setSlot(slot, o);
 		final String name = this.name;
 		if (name != null) {
 			if (single) {
@@ -147,9 +152,11 @@ public class Argument<T> {
 		}
 	}
 	
+	@SuppressWarnings("unchecked")
 	@Nullable
 	public T[] getCurrent(final Event e) {
-		return current.get(e);
+		final TriggerFrame frame = TriggerFrame.of(e);
+		return frame == null ? null : (T[]) frame.getSlot(slot);
 	}
 	
 	public Class<T> getType() {
@@ -31,6 +31,7 @@ import org.eclipse.jdt.annotation.Nullable;
 import ch.njol.skript.Skript;
 import ch.njol.skript.lang.SkriptParser;
 import ch.njol.skript.lang.Trigger;
+import ch.njol.skript.lang.TriggerFrame;
 import ch.njol.skript.lang.TriggerItem;
 import ch.njol.skript.lang.util.SimpleEvent;
 import ch.njol.skript.localization.Language;
@@ -199,34 +200,40 @@ public class ScriptCommand implements CommandCallable {
 	
 	boolean execute2(final CommandSource sender, final String commandLabel, final String rest) {
 		final ScriptCommandEvent event = new ScriptCommandEvent(ScriptCommand.this, sender);
-		
-		final ParseLogHandler log = SkriptLogger.startParseLogHandler();
+		// arguments are stored in the frame the trigger will be executed in
+		final TriggerFrame frame = new TriggerFrame(event, trigger);
+		final TriggerFrame previous = frame.enter();
 		try {
-			final boolean ok = SkriptParser.parseArguments(rest, ScriptCommand.this, event);
-			if (!ok) {
-				final LogEntry e = log.getError();
-				if (e != null)
-					sender.sendMessage(Text.of(TextColors.DARK_RED, e.getMessage()));
-				sender.sendMessage(Text.of(Commands.m_correct_usage, " ", usage));
+			final ParseLogHandler log = SkriptLogger.startParseLogHandler();
+			try {
+				final boolean ok = SkriptParser.parseArguments(rest, ScriptCommand.this, event);
+				if (!ok) {
+					final LogEntry e = log.getError();
+					if (e != null)
+						sender.sendMessage(Text.of(TextColors.DARK_RED, e.getMessage()));
+					sender.sendMessage(Text.of(Commands.m_correct_usage, " ", usage));
+					log.clear();
+					log.printLog();
+					return false;
+				}
 				log.clear();
 				log.printLog();
-				return false;
+			} finally {
+				log.stop();
 			}
-			log.clear();
-			log.printLog();
+			
+			if (Skript.log(Verbosity.VERY_HIGH))
+				Skript.info("# /" + name + " " + rest);
+			final long startTrigger = System.nanoTime();
+			
+			if (!trigger.execute(frame))
+				sender.sendMessage(Text.of(Commands.m_internal_error.toString()));
+			
+			if (Skript.log(Verbosity.VERY_HIGH))
+				Skript.info("# " + name + " took " + 1. * (System.nanoTime() - startTrigger) / 1000000. + " milliseconds");
 		} finally {
-			log.stop();
+			frame.exit(previous);
 		}
-		
-		if (Skript.log(Verbosity.VERY_HIGH))
-			Skript.info("# /" + name + " " + rest);
-		final long startTrigger = System.nanoTime();
-		
-		if (!trigger.execute(event))
-			sender.sendMessage(Text.of(Commands.m_internal_error.toString()));
-		
-		if (Skript.log(Verbosity.VERY_HIGH))
-			Skript.info("# " + name + " took " + 1. * (System.nanoTime() - startTrigger) / 1000000. + " milliseconds");
 		return true;
 	}
 	
@@ -21,10 +21,6 @@
 
 package ch.njol.skript.effects;
 
-import java.util.Collections;
-import java.util.Set;
-import java.util.WeakHashMap;
-
 import org.bukkit.Bukkit;
 import org.bukkit.event.Event;
 import org.eclipse.jdt.annotation.Nullable;
@@ -37,6 +33,7 @@ import ch.njol.skript.doc.Since;
 import ch.njol.skript.lang.Effect;
 import ch.njol.skript.lang.Expression;
 import ch.njol.skript.lang.SkriptParser.ParseResult;
+import ch.njol.skript.lang.TriggerFrame;
 import ch.njol.skript.lang.TriggerItem;
 import ch.njol.skript.util.Timespan;
 import ch.njol.util.Kleenean;
@@ -73,7 +70,7 @@ public class Delay extends Effect {
 		final long start = Skript.debug() ? System.nanoTime() : 0;
 		final TriggerItem next = getNext();
 		if (next != null) {
-			delayed.add(e);
+			final TriggerFrame frame = TriggerFrame.suspend(e);
 			final Timespan d = duration.getSingle(e);
 			if (d == null)
 				return null;
@@ -82,18 +79,16 @@ public class Delay extends Effect {
 				public void run() {
 					if (Skript.debug())
 						Skript.info(getIndentation() + "... continuing after " + (System.nanoTime() - start) / 1000000000. + "s");
-					TriggerItem.walk(next, e);
+					TriggerItem.walk(next, frame);
 				}
 			}, d.getTicks_i());
 		}
 		return null;
 	}
 	
-	@SuppressWarnings("null")
-	protected final static Set<Event> delayed = Collections.newSetFromMap(new WeakHashMap<Event, Boolean>());
-	
 	public final static boolean isDelayed(final Event e) {
-		return delayed.contains(e);
+		final TriggerFrame frame = TriggerFrame.of(e);
+		return frame != null && frame.isDelayed();
 	}
 	
 	@Override
@@ -63,7 +63,7 @@ public class EffReturn extends Effect {
 	@SuppressWarnings("unchecked")
 	@Override
 	public boolean init(final Expression<?>[] exprs, final int matchedPattern, final Kleenean isDelayed, final ParseResult parseResult) {
-		final ScriptFunction<?> f = Functions.currentFunction;
+		final ScriptFunction<?> f = Functions.getCurrentFunction();
 		if (f == null) {
 			Skript.error("The return statement can only be used in a function");
 			return false;
@@ -21,13 +21,12 @@
 
 package ch.njol.skript.effects;
 
-import static ch.njol.skript.effects.Delay.*;
-
 import org.bukkit.Bukkit;
 import org.bukkit.event.Event;
 import org.eclipse.jdt.annotation.Nullable;
 
 import ch.njol.skript.Skript;
+import ch.njol.skript.lang.TriggerFrame;
 import ch.njol.skript.lang.TriggerItem;
 import ch.njol.skript.util.Timespan;
 
@@ -43,7 +42,7 @@ public class IndeterminateDelay extends Delay {
 		final long start = Skript.debug() ? System.nanoTime() : 0;
 		final TriggerItem next = getNext();
 		if (next != null) {
-			delayed.add(e);
+			final TriggerFrame frame = TriggerFrame.suspend(e);
 			final Timespan d = duration.getSingle(e);
 			if (d == null)
 				return null;
@@ -52,7 +51,7 @@ public class IndeterminateDelay extends Delay {
 				public void run() {
 					if (Skript.debug())
 						Skript.info(getIndentation() + "... continuing after " + (System.nanoTime() - start) / 1000000000. + "s");
-					TriggerItem.walk(next, e);
+					TriggerItem.walk(next, frame);
 				}
 			}, d.getTicks());
 		}
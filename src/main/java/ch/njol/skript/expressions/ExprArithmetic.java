@@ -195,11 +195,11 @@ public class ExprArithmetic extends SimpleExpression<Number> {
 		return first.toString(e, debug) + " " + op + " " + second.toString(e, debug);
 	}
 	
-	@SuppressWarnings("null")
+	@SuppressWarnings({"null", "unchecked"})
 	@Override
 	public Expression<? extends Number> simplify() {
 		if (first instanceof Literal && second instanceof Literal)
-			return new SimpleLiteral<Number>(getArray(null), Number.class, false);
+			return new SimpleLiteral<Number>(getArray(null), (Class<Number>) returnType, false);
 		return this;
 	}
 	
@@ -69,15 +69,17 @@ public class ExprHealth extends PropertyExpression<LivingEntity, Double> {
 //				}
 //			});
 //		}
-		return get(source, new Getter<Double, LivingEntity>() {
-			@SuppressWarnings("null")
-			@Override
-			public Double get(final LivingEntity entity) {
-				return Double.valueOf(HealthUtils.getHealth(entity));
-			}
-		});
+		return get(source, health);
 	}
 	
+	private final static Getter<Double, LivingEntity> health = new Getter<Double, LivingEntity>() {
+		@SuppressWarnings("null")
+		@Override
+		public Double get(final LivingEntity entity) {
+			return Double.valueOf(HealthUtils.getHealth(entity));
+		}
+	};
+	
 	@Override
 	public String toString(final @Nullable Event e, final boolean debug) {
 		return "the health of " + getExpr().toString(e, debug);
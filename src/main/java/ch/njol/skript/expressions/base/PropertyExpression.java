@@ -104,6 +104,14 @@ public abstract class PropertyExpression<F, T> extends SimpleExpression<T> {
 		return Converters.convertUnsafe(source, getReturnType(), converter);
 	}
 	
+	/**
+	 * @return false, as {@link #get(Event, Object[])} must not return nulls
+	 */
+	@Override
+	protected final boolean mayReturnNulls() {
+		return false;
+	}
+	
 	@Override
 	public final boolean isSingle() {
 		return expr.isSingle();
@@ -45,6 +45,11 @@ public abstract class SimplePropertyExpression<F, T> extends PropertyExpression<
 		return true;
 	}
 	
+	/**
+	 * Whether {@link #get(Event, Object[])} is not overridden, i.e. whether a single value can be converted directly
+	 */
+	private final boolean convertsDirectly = !declaresMethod(SimplePropertyExpression.class, "get");
+	
 	protected abstract String getPropertyName();
 	
 	@Override
@@ -56,6 +61,16 @@ public abstract class SimplePropertyExpression<F, T> extends PropertyExpression<
 		return super.get(source, this);
 	}
 	
+	@Override
+	@Nullable
+	protected T getSingleValue(final Event e) {
+		final Expression<? extends F> expr = getExpr();
+		if (!convertsDirectly || !expr.isSingle())
+			return super.getSingleValue(e);
+		final F f = expr.getSingle(e);
+		return f == null ? null : convert(f);
+	}
+	
 	@Override
 	public String toString(final @Nullable Event e, final boolean debug) {
 		return "the " + getPropertyName() + " of " + getExpr().toString(e, debug);
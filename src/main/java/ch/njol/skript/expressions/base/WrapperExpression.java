@@ -47,6 +47,11 @@ public abstract class WrapperExpression<T> extends SimpleExpression<T> {
 	
 	private Expression<? extends T> expr;
 	
+	/**
+	 * Whether {@link #get(Event)} is not overridden, i.e. whether this expression has exactly the values of the wrapped expression
+	 */
+	private final boolean passesThrough = !declaresMethod(WrapperExpression.class, "get");
+	
 	@SuppressWarnings("null")
 	protected WrapperExpression() {}
 	
@@ -88,6 +93,19 @@ public abstract class WrapperExpression<T> extends SimpleExpression<T> {
 		return expr.getArray(e);
 	}
 	
+	@Override
+	protected boolean mayReturnNulls() {
+		return !passesThrough;
+	}
+	
+	@Override
+	@Nullable
+	protected T getSingleValue(final Event e) {
+		if (passesThrough && expr.isSingle())
+			return expr.getSingle(e);
+		return super.getSingleValue(e);
+	}
+	
 	@Override
 	@Nullable
 	public Iterator<? extends T> iterator(final Event e) {
@@ -0,0 +1,398 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.lang;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import ch.njol.skript.lang.SkriptParser.ExprInfo;
+import ch.njol.skript.lang.SkriptParser.MalformedPatternException;
+
+/**
+ * A pattern prepared for {@link SkriptParser}: the ends of optional parts, the alternatives of groups, the types of expressions and the regexes of a pattern are found once
+ * and then reused whenever the pattern is matched, instead of being searched for, resolved and compiled on every attempt.
+ * <p>
+ * Each element is compiled when it is reached for the first time. Thus malformed parts of a pattern only cause errors when they are used, like when the pattern was
+ * interpreted directly, and the types of expressions are only resolved after all types have been registered. Compiled elements are immutable, which allows to use a pattern
+ * from multiple threads.
+ */
+final class CompiledPattern {
+	
+	final String pattern;
+	
+	/**
+	 * The number of expressions in the pattern
+	 */
+	final int expressionCount;
+	
+	/**
+	 * The compiled element starting at each index of the pattern, or null if the element has not been compiled yet
+	 */
+	private final Object[] elements;
+	
+	/**
+	 * The name of each expression, e.g. <tt>-*number</tt>
+	 */
+	private final String[] expressionNames;
+	
+	/**
+	 * The info of each expression that requires a default expression if it is omitted, {@link #OPTIONAL} for optional expressions, or null if it has not been resolved yet
+	 */
+	private final Object[] defaultExpressionInfos;
+	
+	private final static Object OPTIONAL = new Object();
+	
+	/**
+	 * The words a text matching this pattern can start with, in lower case, or null if it can start with anything, e.g. if the pattern starts with an expression
+	 */
+	@Nullable
+	private final Set<String> firstWords;
+	
+	/**
+	 * The maximum number of words in {@link #firstWords}, as each optional part can double the number of ways to start the pattern
+	 */
+	private final static int MAX_FIRST_WORDS = 64;
+	
+	CompiledPattern(final String pattern) {
+		this.pattern = pattern;
+		expressionCount = SkriptParser.countUnescaped(pattern, '%') / 2;
+		elements = new Object[pattern.length()];
+		final List<String> names = new ArrayList<String>();
+		for (int x = SkriptParser.nextUnescaped(pattern, '%', 0); x != -1; x = SkriptParser.nextUnescaped(pattern, '%', x + 1)) {
+			final int x2 = SkriptParser.nextUnescaped(pattern, '%', x + 1);
+			if (x2 == -1)
+				break;
+			names.add("" + pattern.substring(x + 1, x2));
+			x = x2;
+		}
+		expressionNames = names.toArray(new String[names.size()]);
+		defaultExpressionInfos = new Object[expressionNames.length];
+		Set<String> firstWords = new HashSet<String>();
+		try {
+			if (!addFirstWords(0, "", firstWords))
+				firstWords = null;
+		} catch (final MalformedPatternException e) { // only reported when the pattern is used
+			firstWords = null;
+		}
+		this.firstWords = firstWords;
+	}
+	
+	/**
+	 * Finds the first words of texts that match the pattern from the given index on, i.e. the literal text up to the first space that is not optional.
+	 * 
+	 * @param j The index in the pattern
+	 * @param word The part of the first word found so far, in lower case
+	 * @param words The set to add the found words to
+	 * @return Whether the first word could be determined for all ways to match the pattern
+	 */
+	private boolean addFirstWords(int j, String word, final Set<String> words) throws MalformedPatternException {
+		while (j < pattern.length()) {
+			final char c = pattern.charAt(j);
+			switch (c) {
+				case '[':
+					if (!addFirstWords(j + 1, word, words))
+						return false;
+					j = getOptionalEnd(j);
+					continue;
+				case '(': {
+					final Group g = getGroup(j);
+					if (g.error != null)
+						return false;
+					for (final int start : g.starts) {
+						if (!addFirstWords(start, word, words))
+							return false;
+					}
+					return true;
+				}
+				case '|': {
+					final int end = getAlternativeEnd(j);
+					if (end == -1) // alternatives of the whole pattern start at the beginning of the text again
+						return false;
+					j = end + 1;
+					continue;
+				}
+				case ']':
+				case ')':
+					j++;
+					continue;
+				case ' ':
+					if (word.isEmpty()) { // leading spaces are ignored
+						j++;
+						continue;
+					}
+					return add(word, words);
+				case '\\':
+					j++;
+					if (j == pattern.length() || pattern.charAt(j) == ' ')
+						return false;
+					word += Character.toLowerCase(pattern.charAt(j));
+					j++;
+					continue;
+				case '%':
+				case '<':
+					return false;
+				default:
+					word += Character.toLowerCase(c);
+					j++;
+			}
+		}
+		return !word.isEmpty() && add(word, words);
+	}
+	
+	private final static boolean add(final String word, final Set<String> words) {
+		words.add(word);
+		return words.size() <= MAX_FIRST_WORDS;
+	}
+	
+	/**
+	 * @param word The first word of a text, as returned by {@link #getFirstWord(String)}
+	 * @return Whether a text starting with the given word might match this pattern. If this returns false, the text certainly does not match.
+	 */
+	boolean canStartWith(final String word) {
+		final Set<String> firstWords = this.firstWords;
+		return firstWords == null || firstWords.contains(word);
+	}
+	
+	/**
+	 * @param text
+	 * @return The text up to the first space, in lower case like the patterns' first words.
+	 */
+	static String getFirstWord(final String text) {
+		int end = text.indexOf(' ');
+		if (end == -1)
+			end = text.length();
+		final char[] word = new char[end];
+		for (int i = 0; i < end; i++)
+			word[i] = Character.toLowerCase(text.charAt(i));
+		return new String(word);
+	}
+	
+	/**
+	 * A group <tt>(...|...)</tt>
+	 */
+	final static class Group {
+		
+		/**
+		 * The index in the pattern after the start of each alternative, including its mark
+		 */
+		final int[] starts;
+		
+		final int[] marks;
+		
+		/**
+		 * An error found after the last alternative, e.g. a missing closing bracket
+		 */
+		@Nullable
+		final MalformedPatternException error;
+		
+		Group(final int[] starts, final int[] marks, final @Nullable MalformedPatternException error) {
+			this.starts = starts;
+			this.marks = marks;
+			this.error = error;
+		}
+		
+	}
+	
+	/**
+	 * An expression <tt>%...%</tt>
+	 */
+	final static class ExpressionElement {
+		
+		/**
+		 * The index of the closing percent sign
+		 */
+		final int end;
+		
+		/**
+		 * The position of the expression in the parse result's expressions
+		 */
+		final int index;
+		
+		final ExprInfo info;
+		
+		ExpressionElement(final int end, final int index, final ExprInfo info) {
+			this.end = end;
+			this.index = index;
+			this.info = info;
+		}
+		
+	}
+	
+	/**
+	 * A regex <tt>&lt;...&gt;</tt>
+	 */
+	final static class Regex {
+		
+		/**
+		 * The index of the closing bracket
+		 */
+		final int end;
+		
+		final Pattern regex;
+		
+		Regex(final int end, final Pattern regex) {
+			this.end = end;
+			this.regex = regex;
+		}
+		
+	}
+	
+	/**
+	 * @param j The index of an opening bracket '['
+	 * @return The index after the matching closing bracket
+	 */
+	int getOptionalEnd(final int j) {
+		assert pattern.charAt(j) == '[';
+		return (Integer) get(j);
+	}
+	
+	/**
+	 * @param j The index of an opening bracket '('
+	 * @return The group starting at the given index
+	 */
+	Group getGroup(final int j) {
+		assert pattern.charAt(j) == '(';
+		return (Group) get(j);
+	}
+	
+	/**
+	 * @param j The index of an opening percent sign
+	 * @return The expression starting at the given index
+	 */
+	ExpressionElement getExpression(final int j) {
+		assert pattern.charAt(j) == '%';
+		return (ExpressionElement) get(j);
+	}
+	
+	/**
+	 * @param j The index of an opening bracket '<'
+	 * @return The regex starting at the given index
+	 */
+	Regex getRegex(final int j) {
+		assert pattern.charAt(j) == '<';
+		return (Regex) get(j);
+	}
+	
+	/**
+	 * @param j The index of a pipe '|'
+	 * @return The index of the closing bracket of the group of the pipe, or -1 if the pipe is not in a group
+	 */
+	int getAlternativeEnd(final int j) {
+		assert pattern.charAt(j) == '|';
+		return (Integer) get(j);
+	}
+	
+	/**
+	 * @param index The position of an expression
+	 * @return The expression's info if a default expression has to be used if it is omitted, or null if it is optional
+	 */
+	@Nullable
+	ExprInfo getDefaultExpressionInfo(final int index) {
+		Object info = defaultExpressionInfos[index];
+		if (info == null) {
+			final String name = expressionNames[index];
+			defaultExpressionInfos[index] = info = name.startsWith("-") ? OPTIONAL : SkriptParser.getExprInfo(name);
+		}
+		return info == OPTIONAL ? null : (ExprInfo) info;
+	}
+	
+	private Object get(final int j) {
+		Object e = elements[j];
+		if (e == null)
+			elements[j] = e = compile(j);
+		return e;
+	}
+	
+	private Object compile(final int j) throws MalformedPatternException {
+		switch (pattern.charAt(j)) {
+			case '[':
+				return Integer.valueOf(SkriptParser.nextBracket(pattern, ']', '[', j + 1, true) + 1);
+			case '(':
+				return compileGroup(j);
+			case '%': {
+				final int end = pattern.indexOf('%', j + 1);
+				if (end == -1)
+					throw new MalformedPatternException(pattern, "Odd number of '%'");
+				return new ExpressionElement(end, SkriptParser.countUnescaped(pattern, '%', 0, j) / 2, SkriptParser.getExprInfo("" + pattern.substring(j + 1, end)));
+			}
+			case '<': {
+				final int end = pattern.indexOf('>', j + 1);// not next()
+				if (end == -1)
+					throw new MalformedPatternException(pattern, "Missing closing regex bracket '>'");
+				try {
+					return new Regex(end, Pattern.compile(pattern.substring(j + 1, end)));
+				} catch (final PatternSyntaxException e) {
+					throw new MalformedPatternException(pattern, "Invalid regex <" + pattern.substring(j + 1, end) + ">", e);
+				}
+			}
+			case '|':
+				return Integer.valueOf(SkriptParser.nextBracket(pattern, ')', '(', j + 1, SkriptParser.getGroupLevel(pattern, j) != 0));
+			default:
+				throw new IllegalArgumentException("No element starts at index " + j + " [pattern: " + pattern + "]");
+		}
+	}
+	
+	private Group compileGroup(final int start) {
+		final List<Integer> starts = new ArrayList<Integer>(), marks = new ArrayList<Integer>();
+		MalformedPatternException error = null;
+		for (int j = start; j < pattern.length(); j++) {
+			if (j == start || pattern.charAt(j) == '|') {
+				int mark = 0;
+				if (j != pattern.length() - 1 && ('0' <= pattern.charAt(j + 1) && pattern.charAt(j + 1) <= '9' || pattern.charAt(j + 1) == '-')) {
+					final int j2 = pattern.indexOf('¦', j + 2);
+					if (j2 != -1) {
+						try {
+							mark = Integer.parseInt(pattern.substring(j + 1, j2));
+							j = j2;
+						} catch (final NumberFormatException e) {}
+					}
+				}
+				starts.add(j + 1);
+				marks.add(mark);
+			} else if (pattern.charAt(j) == '(') {
+				try {
+					j = SkriptParser.nextBracket(pattern, ')', '(', j + 1, true);
+				} catch (final MalformedPatternException e) {
+					error = e;
+					break;
+				}
+			} else if (pattern.charAt(j) == ')') {
+				break;
+			} else if (j == pattern.length() - 1) {
+				error = new MalformedPatternException(pattern, "Missing closing bracket ')'");
+			}
+		}
+		final int[] s = new int[starts.size()], m = new int[marks.size()];
+		for (int i = 0; i < s.length; i++) {
+			s[i] = starts.get(i);
+			m[i] = marks.get(i);
+		}
+		return new Group(s, m, error);
+	}
+	
+}
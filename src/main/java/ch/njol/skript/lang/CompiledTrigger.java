@@ -0,0 +1,252 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.lang;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.spongepowered.api.event.Event;
+
+/**
+ * A trigger whose items have been flattened into a table, i.e. whose control flow is resolved to indices once instead of following the items' links on every execution.
+ * <p>
+ * Statements, conditionals, 'else' sections, loops and while loops are executed directly from the table. Any other item (e.g. delays, 'exit' or sections added by addons)
+ * is executed by calling its {@link TriggerItem#walk(Event)} method, and execution continues at the returned item, or in the interpreter if that item is not part of
+ * the table.
+ *
+ * @see ch.njol.skript.SkriptConfig#compileTriggers
+ */
+final class CompiledTrigger {
+	
+	private final static int STATEMENT = 0, CONDITIONAL = 1, SECTION = 2, WHILE = 3, LOOP = 4, OTHER = 5;
+	
+	/**
+	 * Index of the end of the execution
+	 */
+	private final static int END = -1;
+	/**
+	 * Returned by {@link #indexOf(TriggerItem)} for items that don't belong to the compiled trigger
+	 */
+	final static int NOT_COMPILED = -2;
+	
+	private final Trigger trigger;
+	
+	private final TriggerItem[] items;
+	private final int[] ops;
+	/**
+	 * The index to continue at if the item at the same index succeeded or its condition is true
+	 */
+	private final int[] onTrue;
+	/**
+	 * The index to continue at if the item at the same index failed or its condition is false
+	 */
+	private final int[] onFalse;
+	/**
+	 * The conditions of conditionals and while loops
+	 */
+	private final Condition[] conditions;
+	
+	private final Map<TriggerItem, Integer> indices;
+	
+	private CompiledTrigger(final Trigger trigger, final List<TriggerItem> items, final List<TriggerItem> elseClauses) {
+		this.trigger = trigger;
+		final int n = items.size();
+		this.items = items.toArray(new TriggerItem[n]);
+		ops = new int[n];
+		onTrue = new int[n];
+		onFalse = new int[n];
+		conditions = new Condition[n];
+		indices = new IdentityHashMap<TriggerItem, Integer>(n);
+		for (int i = 0; i < n; i++)
+			indices.put(items.get(i), i);
+		for (int i = 0; i < n; i++) {
+			final TriggerItem item = items.get(i);
+			if (item instanceof Statement && !overridesWalk(item.getClass())) {
+				ops[i] = STATEMENT;
+				onTrue[i] = index(item.getNext());
+				final TriggerSection parent = item.getParent();
+				onFalse[i] = index(parent == null ? null : parent.getNext());
+			} else if (item.getClass() == Conditional.class) {
+				final Conditional c = (Conditional) item;
+				ops[i] = CONDITIONAL;
+				conditions[i] = c.getCondition();
+				onTrue[i] = index(first(c));
+				final TriggerSection elseClause = c.getElseClause();
+				onFalse[i] = index(elseClause != null ? elseClause : c.getNext());
+			} else if (elseClauses.contains(item)) {
+				ops[i] = SECTION;
+				onTrue[i] = index(first((TriggerSection) item));
+			} else if (item.getClass() == While.class) {
+				final While w = (While) item;
+				ops[i] = WHILE;
+				conditions[i] = w.getCondition();
+				onTrue[i] = index(first(w));
+				onFalse[i] = index(w.getActualNext());
+			} else if (item.getClass() == Loop.class) {
+				final Loop l = (Loop) item;
+				ops[i] = LOOP;
+				onTrue[i] = index(first(l));
+				onFalse[i] = index(l.getActualNext());
+			} else {
+				ops[i] = OTHER;
+			}
+			if (onTrue[i] == NOT_COMPILED || onFalse[i] == NOT_COMPILED)
+				ops[i] = OTHER;
+		}
+	}
+	
+	/**
+	 * @param trigger A fully loaded trigger
+	 * @return The compiled trigger
+	 */
+	static CompiledTrigger compile(final Trigger trigger) {
+		final List<TriggerItem> items = new ArrayList<TriggerItem>();
+		final List<TriggerItem> elseClauses = new ArrayList<TriggerItem>();
+		addItems(trigger, items, elseClauses);
+		return new CompiledTrigger(trigger, items, elseClauses);
+	}
+	
+	private static void addItems(final TriggerSection section, final List<TriggerItem> items, final List<TriggerItem> elseClauses) {
+		final TriggerItem last = section.last;
+		TriggerItem i = section.getFirst();
+		while (i != null) {
+			addItem(i, items, elseClauses);
+			if (i == last)
+				break;
+			i = i.getNext();
+		}
+	}
+	
+	private static void addItem(final TriggerItem item, final List<TriggerItem> items, final List<TriggerItem> elseClauses) {
+		items.add(item);
+		if (item instanceof TriggerSection)
+			addItems((TriggerSection) item, items, elseClauses);
+		if (item.getClass() == Conditional.class) {
+			final TriggerSection elseClause = ((Conditional) item).getElseClause();
+			if (elseClause != null) {
+				if (!(elseClause instanceof Conditional))
+					elseClauses.add(elseClause);
+				addItem(elseClause, items, elseClauses);
+			}
+		}
+	}
+	
+	/**
+	 * @return Whether the given item class implements its own control flow
+	 */
+	private static boolean overridesWalk(Class<?> c) {
+		for (; c != TriggerItem.class; c = c.getSuperclass()) {
+			try {
+				c.getDeclaredMethod("walk", Event.class);
+				return true;
+			} catch (final NoSuchMethodException e) {}
+		}
+		return false;
+	}
+	
+	/**
+	 * @return The item executed when the given section is entered, i.e. the section's first item, or the item after the section if it is empty
+	 */
+	@Nullable
+	private static TriggerItem first(final TriggerSection s) {
+		final TriggerItem first = s.getFirst();
+		return first != null ? first : s.getNext();
+	}
+	
+	private int index(final @Nullable TriggerItem item) {
+		if (item == null)
+			return END;
+		final Integer i = indices.get(item);
+		return i == null ? NOT_COMPILED : i;
+	}
+	
+	/**
+	 * @param item
+	 * @return The index to start at to execute the given item, {@link #END} if the item is the trigger itself but the trigger is empty, or {@link #NOT_COMPILED}
+	 */
+	int indexOf(final TriggerItem item) {
+		return item == trigger ? index(first(trigger)) : index(item);
+	}
+	
+	/**
+	 * Executes this trigger like {@link TriggerItem#walk(TriggerItem, TriggerFrame)}.
+	 *
+	 * @param start The item to start at
+	 * @param pc The index of the item, see {@link #indexOf(TriggerItem)}
+	 * @param frame
+	 * @return false iff an exception occurred
+	 */
+	boolean execute(final TriggerItem start, int pc, final TriggerFrame frame) {
+		final Event e = frame.getEvent();
+		final TriggerItem[] items = this.items;
+		final int[] ops = this.ops;
+		@Nullable
+		TriggerItem current = null;
+		final TriggerFrame previous = frame.enter();
+		try {
+			if (start == trigger)
+				trigger.debug(e, true);
+			while (pc != END) {
+				final TriggerItem item = current = items[pc];
+				final boolean result;
+				switch (ops[pc]) {
+					case STATEMENT:
+						result = item.run(e);
+						break;
+					case CONDITIONAL:
+					case WHILE:
+						result = conditions[pc].check(e);
+						break;
+					case SECTION:
+						result = true;
+						break;
+					case LOOP:
+						result = ((Loop) item).next(e);
+						break;
+					default:
+						TriggerItem next = item.walk(e);
+						pc = index(next);
+						if (pc == NOT_COMPILED) {
+							while (next != null)
+								next = (current = next).walk(e);
+							return true;
+						}
+						continue;
+				}
+				item.debug(e, result);
+				pc = result ? onTrue[pc] : onFalse[pc];
+			}
+			return true;
+		} catch (final StackOverflowError err) {
+			TriggerItem.walkFailed(start, current, err);
+		} catch (final Exception ex) {
+			TriggerItem.walkFailed(start, current, ex);
+		} finally {
+			frame.exit(previous);
+		}
+		return false;
+	}
+	
+}
@@ -80,7 +80,7 @@ public abstract class Condition extends Statement {
 		s = s.trim();
 		while (s.startsWith("(") && SkriptParser.next(s, 0, ParseContext.DEFAULT) == s.length())
 			s = s.substring(1, s.length() - 1);
-		return (Condition) SkriptParser.parse(s, (Iterator) Skript.getConditions().iterator(), defaultError);
+		return (Condition) SkriptParser.parse(s, (Iterator) Skript.getConditions().iterator(), defaultError, "condition");
 	}
 	
 }
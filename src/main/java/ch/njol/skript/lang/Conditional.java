@@ -98,6 +98,18 @@ public class Conditional extends TriggerSection {
 				.setNext(getNext());
 	}
 	
+	Condition getCondition() {
+		return cond;
+	}
+	
+	/**
+	 * @return The 'else' section or the next 'else if' conditional, or null if this conditional has neither
+	 */
+	@Nullable
+	TriggerSection getElseClause() {
+		return elseClause;
+	}
+	
 	public boolean hasElseClause() {
 		return elseClause != null && !(elseClause instanceof Conditional);
 	}
@@ -0,0 +1,170 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.lang;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ch.njol.skript.Skript;
+
+/**
+ * Replaces constant expressions of loaded trigger items with literals, e.g. <tt>2 * 3</tt> with <tt>6</tt>, literals that are converted to another type with the converted
+ * literals, and strings without any non-constant expressions with simple strings.
+ * <p>
+ * Syntax elements don't expose their sub-expressions, thus this finds them in the elements' fields (including fields of conditions and arrays of expressions). Each
+ * expression is folded bottom-up, i.e. its sub-expressions are folded first, and then it is replaced by the result of its {@link Expression#simplify()} method if that is a
+ * {@link Literal} or a {@link VariableString} and fits into the field. Final fields and the elements of final arrays are not changed, but their expressions'
+ * sub-expressions are still folded.
+ * <p>
+ * Only the fields of Skript's own elements are visited, as addons' elements might not expect their private fields to be changed. Expressions of addons can still be folded
+ * as a whole if they are sub-expressions of Skript's elements.
+ */
+public final class ConstantFolder {
+	
+	/**
+	 * The result of folding each expression visited so far, as expressions can be shared, e.g. by converted expressions and their sources
+	 */
+	private final Map<Object, Object> folded = new IdentityHashMap<Object, Object>();
+	
+	private int count = 0;
+	
+	private ConstantFolder() {}
+	
+	/**
+	 * Folds the expressions of the given items and all items inside them.
+	 *
+	 * @param items Loaded items, e.g. as returned by {@link ch.njol.skript.ScriptLoader#loadItems(ch.njol.skript.config.SectionNode)}
+	 * @return The number of expressions that have been folded
+	 */
+	public static int fold(final List<TriggerItem> items) {
+		final ConstantFolder folder = new ConstantFolder();
+		for (final TriggerItem item : items)
+			folder.foldItem(item);
+		return folder.count;
+	}
+	
+	private void foldItem(final TriggerItem item) {
+		foldFields(item);
+		if (item instanceof TriggerSection) {
+			final TriggerSection s = (TriggerSection) item;
+			final TriggerItem last = s.last;
+			TriggerItem i = s.getFirst();
+			while (i != null) {
+				foldItem(i);
+				if (i == last)
+					break;
+				i = i.getNext();
+			}
+		}
+		if (item instanceof Conditional) {
+			final TriggerSection elseClause = ((Conditional) item).getElseClause();
+			if (elseClause != null)
+				foldItem(elseClause);
+		}
+	}
+	
+	/**
+	 * @param e
+	 * @return The folded expression, or the given expression if it cannot be folded
+	 */
+	@SuppressWarnings("unchecked")
+	<T> Expression<? extends T> fold(final Expression<? extends T> e) {
+		final Object done = folded.get(e);
+		if (done != null)
+			return (Expression<? extends T>) done;
+		folded.put(e, e); // prevents endless recursion
+		if (e instanceof VariableString)
+			((VariableString) e).foldParts(this);
+		else
+			foldFields(e);
+		Expression<? extends T> r = e;
+		try {
+			final Expression<? extends T> s = e.simplify();
+			if (s != e && (s instanceof Literal || s instanceof VariableString)) {
+				r = s;
+				count++;
+			}
+		} catch (final RuntimeException ex) { // simplify() is new to many expressions, and folding is only an optimisation
+			if (Skript.testing())
+				Skript.exception(ex, "Cannot simplify " + e.toString(null, true));
+		}
+		folded.put(e, r);
+		return r;
+	}
+	
+	/**
+	 * @param c
+	 * @return Whether the given class belongs to Skript, i.e. whether its fields may be folded
+	 */
+	private static boolean isSkriptClass(final Class<?> c) {
+		return c.getName().startsWith("ch.njol.skript.");
+	}
+	
+	private void foldFields(final Object o) {
+		if (!isSkriptClass(o.getClass()))
+			return;
+		for (Class<?> c = o.getClass(); c != null && c != Object.class; c = c.getSuperclass()) {
+			for (final Field f : c.getDeclaredFields()) {
+				final int mod = f.getModifiers();
+				if (Modifier.isStatic(mod))
+					continue;
+				final Class<?> type = f.getType();
+				try {
+					if (Expression.class.isAssignableFrom(type)) {
+						f.setAccessible(true);
+						final Expression<?> e = (Expression<?>) f.get(o);
+						if (e == null)
+							continue;
+						final Expression<?> r = fold(e);
+						if (r != e && !Modifier.isFinal(mod) && type.isInstance(r))
+							f.set(o, r);
+					} else if (type.isArray() && Expression.class.isAssignableFrom(type.getComponentType())) {
+						f.setAccessible(true);
+						final Object[] es = (Object[]) f.get(o);
+						if (es == null)
+							continue;
+						for (int i = 0; i < es.length; i++) {
+							if (es[i] == null)
+								continue;
+							final Expression<?> r = fold((Expression<?>) es[i]);
+							if (r != es[i] && !Modifier.isFinal(mod) && type.getComponentType().isInstance(r))
+								es[i] = r;
+						}
+					} else if (Condition.class.isAssignableFrom(type)) {
+						f.setAccessible(true);
+						final Object cond = f.get(o);
+						if (cond != null && !folded.containsKey(cond)) {
+							folded.put(cond, cond);
+							foldFields(cond);
+						}
+					}
+				} catch (final IllegalAccessException ex) {
+					// SecurityManager - leave the field as is
+				} catch (final SecurityException ex) {}
+			}
+		}
+	}
+	
+}
@@ -22,8 +22,7 @@
 package ch.njol.skript.lang;
 
 import java.util.Iterator;
-import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.List;
 
 import org.eclipse.jdt.annotation.Nullable;
 
@@ -44,8 +43,10 @@ public class Loop extends TriggerSection {
 	
 	private final Expression<?> expr;
 	
-	private transient Map<Event, Object> current = new WeakHashMap<Event, Object>();
-	private transient Map<Event, Iterator<?>> currentIter = new WeakHashMap<Event, Iterator<?>>();
+	/**
+	 * {@link TriggerFrame} slots holding the current element and the iterator of this loop
+	 */
+	private final int currentSlot, iterSlot;
 	
 	@Nullable
 	private TriggerItem actualNext;
@@ -62,13 +63,17 @@ public class Loop extends TriggerSection {
 		} else {
 			this.expr = expr;
 		}
-		ScriptLoader.currentSections.add(this);
-		ScriptLoader.currentLoops.add(this);
+		currentSlot = ScriptLoader.allocateSlot();
+		iterSlot = ScriptLoader.allocateSlot();
+		final List<TriggerSection> sections = ScriptLoader.getCurrentSections();
+		final List<Loop> loops = ScriptLoader.getCurrentLoops();
+		sections.add(this);
+		loops.add(this);
 		try {
 			setTriggerItems(ScriptLoader.loadItems(node));
 		} finally {
-			ScriptLoader.currentLoops.remove(ScriptLoader.currentLoops.size() - 1);
-			ScriptLoader.currentSections.remove(ScriptLoader.currentSections.size() - 1);
+			loops.remove(loops.size() - 1);
+			sections.remove(sections.size() - 1);
 		}
 		super.setNext(this);
 	}
@@ -76,24 +81,40 @@ public class Loop extends TriggerSection {
 	@Override
 	@Nullable
 	protected TriggerItem walk(final Event e) {
-		Iterator<?> iter = currentIter.get(e);
+		if (next(e)) {
+			return walk(e, true);
+		} else {
+			debug(e, false);
+			return actualNext;
+		}
+	}
+	
+	/**
+	 * Advances this loop to its next element.
+	 * 
+	 * @param e
+	 * @return Whether there is a next element, false if the loop is done
+	 */
+	boolean next(final Event e) {
+		final TriggerFrame frame = TriggerFrame.of(e);
+		assert frame != null;
+		Iterator<?> iter = (Iterator<?>) frame.getSlot(iterSlot);
 		if (iter == null) {
 			iter = expr instanceof Variable ? ((Variable<?>) expr).variablesIterator(e) : expr.iterator(e);
 			if (iter != null) {
 				if (iter.hasNext())
-					currentIter.put(e, iter);
+					frame.setSlot(iterSlot, iter);
 				else
 					iter = null;
 			}
 		}
 		if (iter == null || !iter.hasNext()) {
 			if (iter != null)
-				currentIter.remove(e); // a loop inside another loop can be called multiple times in the same event
-			debug(e, false);
-			return actualNext;
+				frame.setSlot(iterSlot, null); // a loop inside another loop can be called multiple times in the same event
+			return false;
 		} else {
-			current.put(e, iter.next());
-			return walk(e, true);
+			frame.setSlot(currentSlot, iter.next());
+			return true;
 		}
 	}
 	
@@ -104,7 +125,8 @@ public class Loop extends TriggerSection {
 	
 	@Nullable
 	public Object getCurrent(final Event e) {
-		return current.get(e);
+		final TriggerFrame frame = TriggerFrame.of(e);
+		return frame == null ? null : frame.getSlot(currentSlot);
 	}
 	
 	public Expression<?> getLoopedExpression() {
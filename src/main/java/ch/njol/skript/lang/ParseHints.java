@@ -0,0 +1,316 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.lang;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import ch.njol.skript.Skript;
+import ch.njol.skript.SkriptAddon;
+import ch.njol.skript.SkriptConfig;
+import ch.njol.skript.config.Node;
+import ch.njol.skript.log.SkriptLogger;
+import ch.njol.skript.util.ExceptionUtils;
+
+/**
+ * Remembers which pattern of which syntax element matched each part of a script, so that the script can be parsed by trying only these patterns when it is loaded again.
+ * <p>
+ * The hints of a script are saved in the <tt>cache</tt> folder next to the script if {@link SkriptConfig#enableScriptCaching script caching} is enabled. They are only used
+ * if neither the script, the config, the aliases nor the versions of Skript and its addons have changed since they were saved. If a hinted pattern does not match, the part
+ * is parsed as usual.
+ * <p>
+ * A hint is only recorded if no pattern that was tried before the matching one got as far as parsing an expression or initialising an element, so that trying the hinted
+ * pattern first cannot give a different result than trying all patterns in order. Whether an expression can be parsed or an element be initialised can depend on things
+ * outside of the script, e.g. the functions defined in other scripts, while the remaining patterns only fail because of the script's text.
+ */
+public final class ParseHints {
+	
+	private final static int FORMAT_VERSION = 2;
+	
+	final static class Hint {
+		
+		final String className;
+		final int patternIndex;
+		final String pattern;
+		
+		Hint(final String className, final int patternIndex, final String pattern) {
+			this.className = className;
+			this.patternIndex = patternIndex;
+			this.pattern = pattern;
+		}
+		
+		/**
+		 * @param info
+		 * @return Whether this is a hint for a pattern of the given element
+		 */
+		boolean isFor(final SyntaxElementInfo<?> info) {
+			return info.c.getName().equals(className) && patternIndex < info.patterns.length && info.patterns[patternIndex].equals(pattern);
+		}
+		
+		@Override
+		public int hashCode() {
+			return (className.hashCode() * 31 + patternIndex) * 31 + pattern.hashCode();
+		}
+		
+		@Override
+		public boolean equals(final @Nullable Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Hint))
+				return false;
+			final Hint other = (Hint) obj;
+			return patternIndex == other.patternIndex && className.equals(other.className) && pattern.equals(other.pattern);
+		}
+		
+	}
+	
+	private final File script, file;
+	
+	private final String header;
+	
+	/**
+	 * The hints loaded from the cache
+	 */
+	private final Map<String, Hint> previous;
+	
+	/**
+	 * The hints of the parts parsed since loading the cache
+	 */
+	private final Map<String, Hint> current = new HashMap<String, Hint>();
+	
+	private boolean changed = false;
+	
+	private ParseHints(final File script, final String header, final Map<String, Hint> previous) {
+		this.script = script;
+		file = new File(script.getParentFile(), "cache" + File.separator + script.getName() + "c");
+		this.header = header;
+		this.previous = previous;
+	}
+	
+	/**
+	 * Loads the hints of the given script. Returns empty hints if the script has not been cached yet or if the cache is outdated.
+	 * 
+	 * @param script
+	 * @return The hints of the script
+	 * @throws IOException If the script cannot be read
+	 */
+	public static ParseHints load(final File script) throws IOException {
+		final String header = getHeader(script);
+		final ParseHints hints = new ParseHints(script, header, new HashMap<String, Hint>());
+		if (!hints.file.exists())
+			return hints;
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(hints.file)));
+			if (in.readInt() != FORMAT_VERSION || !in.readUTF().equals(header))
+				return hints;
+			final int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				final String key = in.readUTF();
+				hints.previous.put(key, new Hint(in.readUTF(), in.readInt(), in.readUTF()));
+			}
+		} catch (final IOException e) {
+			hints.previous.clear();
+			hints.file.delete();
+		} finally {
+			if (in != null)
+				in.close();
+		}
+		return hints;
+	}
+	
+	/**
+	 * @param script
+	 * @return The hash of the script's content and of the config and aliases files, together with the versions of Skript and all addons, as patterns can change with any of
+	 *         these.
+	 * @throws IOException
+	 */
+	private static String getHeader(final File script) throws IOException {
+		final MessageDigest digest = newDigest();
+		digest(script, digest);
+		final StringBuilder b = new StringBuilder();
+		appendHex(b, digest.digest());
+		b.append(' ').append(getSettingsHash());
+		b.append(" Skript ").append(Skript.getVersion());
+		final List<String> addons = new ArrayList<String>();
+		for (final SkriptAddon addon : Skript.getAddons())
+			addons.add(addon.getName() + " " + addon.version);
+		Collections.sort(addons);
+		for (final String addon : addons)
+			b.append(", ").append(addon);
+		b.append(" (").append(SkriptConfig.language.value()).append(")");
+		return "" + b;
+	}
+	
+	@Nullable
+	private static String settingsHash = null;
+	private static long settingsModified = 0;
+	
+	/**
+	 * The config and aliases files are the same for all scripts, thus their hash is only calculated again if any of them has been modified.
+	 * 
+	 * @return The hash of config.sk and all aliases files
+	 * @throws IOException
+	 */
+	private static synchronized String getSettingsHash() throws IOException {
+		final File folder = Skript.getInstance().getDataFolder();
+		final File[] aliases = folder.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(final @Nullable File dir, final @Nullable String name) {
+				return name != null && name.startsWith("aliases-") && name.endsWith(".sk");
+			}
+		});
+		final List<File> files = new ArrayList<File>();
+		files.add(new File(folder, "config.sk"));
+		if (aliases != null) {
+			Arrays.sort(aliases);
+			files.addAll(Arrays.asList(aliases));
+		}
+		long modified = 0;
+		for (final File f : files)
+			modified = (modified * 31 + f.lastModified()) * 31 + f.length();
+		final String cached = settingsHash;
+		if (cached != null && modified == settingsModified)
+			return cached;
+		final MessageDigest digest = newDigest();
+		for (final File f : files) {
+			digest.update(f.getName().getBytes("UTF-8"));
+			if (f.exists())
+				digest(f, digest);
+		}
+		final StringBuilder b = new StringBuilder();
+		appendHex(b, digest.digest());
+		settingsModified = modified;
+		return settingsHash = "" + b;
+	}
+	
+	private static MessageDigest newDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+	}
+	
+	private static void digest(final File f, final MessageDigest digest) throws IOException {
+		final InputStream in = new DigestInputStream(new BufferedInputStream(new FileInputStream(f)), digest);
+		try {
+			final byte[] buffer = new byte[4096];
+			while (in.read(buffer) != -1) {}
+		} finally {
+			in.close();
+		}
+	}
+	
+	private static void appendHex(final StringBuilder b, final byte[] bytes) {
+		for (final byte x : bytes)
+			b.append(Character.forDigit((x >> 4) & 0xF, 16)).append(Character.forDigit(x & 0xF, 16));
+	}
+	
+	/**
+	 * Saves the hints if any have changed since they were loaded. Hints that were not used are not saved again.
+	 */
+	public void save() {
+		if (!changed && current.size() == previous.size())
+			return;
+		DataOutputStream out = null;
+		try {
+			file.getParentFile().mkdirs();
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(header);
+			out.writeInt(current.size());
+			for (final Entry<String, Hint> e : current.entrySet()) {
+				final Hint h = e.getValue();
+				out.writeUTF(e.getKey());
+				out.writeUTF(h.className);
+				out.writeInt(h.patternIndex);
+				out.writeUTF(h.pattern);
+			}
+			out.close();
+			out = null;
+		} catch (final IOException e) {
+			Skript.warning("Cannot cache " + script.getName() + ": " + ExceptionUtils.toString(e));
+			if (out != null) {
+				try {
+					out.close();
+				} catch (final IOException e2) {}
+			}
+			file.delete();
+		}
+	}
+	
+	/**
+	 * Creates the key of a part of the current line. The line number is part of the key as the same text can be parsed differently depending on its surroundings, e.g. in
+	 * different events.
+	 * 
+	 * @param kind What the part is parsed as, e.g. an effect or an expression of certain types
+	 * @param flags The flags of the parser, see {@link SkriptParser#PARSE_EXPRESSIONS} and {@link SkriptParser#PARSE_LITERALS}
+	 * @param context The context of the parser
+	 * @param expr
+	 * @return The key of the part
+	 */
+	static String key(final String kind, final int flags, final ParseContext context, final String expr) {
+		final Node n = SkriptLogger.getNode();
+		return (n == null ? -1 : n.getLine()) + ":" + kind + ":" + flags + ":" + context.name() + ":" + expr;
+	}
+	
+	@Nullable
+	Hint get(final String key) {
+		return previous.get(key);
+	}
+	
+	/**
+	 * Remembers that the given part matched the given pattern.
+	 * 
+	 * @param key
+	 * @param info
+	 * @param patternIndex
+	 */
+	void add(final String key, final SyntaxElementInfo<?> info, final int patternIndex) {
+		final Hint h = new Hint("" + info.c.getName(), patternIndex, info.patterns[patternIndex]);
+		if (!h.equals(previous.get(key)))
+			changed = true;
+		current.put(key, h);
+	}
+	
+}
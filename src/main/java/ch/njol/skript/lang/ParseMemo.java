@@ -0,0 +1,149 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.lang;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import ch.njol.skript.log.LogEntry;
+import ch.njol.skript.log.SkriptLogger;
+
+/**
+ * Remembers which parts of a line could not be parsed as which types while the line is being parsed, as the same parts are tried again for other patterns, list splits and
+ * expressions inside expressions.
+ * <p>
+ * Only failures are remembered, together with the messages they logged, which are logged again when the failure is looked up. Parsed expressions are not shared, as they
+ * can be changed after parsing, e.g. by {@link Expression#setTime(int)}.
+ * <p>
+ * A memo lasts as long as the outermost parse on the current thread, i.e. it does not outlive the line it was created for.
+ */
+final class ParseMemo {
+	
+	private final static ThreadLocal<ParseMemo> current = new ThreadLocal<ParseMemo>();
+	
+	final static int SINGLE_EXPRESSION = 0, SINGLE_EXPRESSION_OR_UNPARSED_LITERAL = 1, EXPRESSION = 2;
+	
+	private int depth = 0;
+	
+	/**
+	 * The number of times {@link SkriptParser#parseExpression(Class...)} has been called during the current parse, used to find out whether a pattern that did not match
+	 * got as far as parsing an expression
+	 */
+	int expressions = 0;
+	
+	private final Map<Key, LogEntry[]> failures = new HashMap<Key, LogEntry[]>();
+	
+	private ParseMemo() {}
+	
+	/**
+	 * Starts using the current thread's memo, or a new one if no parse is in progress. Must be followed by {@link #exit()}.
+	 *
+	 * @return The memo of the current parse
+	 */
+	static ParseMemo enter() {
+		ParseMemo m = current.get();
+		if (m == null)
+			current.set(m = new ParseMemo());
+		m.depth++;
+		return m;
+	}
+	
+	void exit() {
+		assert depth > 0;
+		if (--depth == 0)
+			current.remove();
+	}
+	
+	final static class Key {
+		
+		private final int kind;
+		private final String expr;
+		private final int flags;
+		private final ParseContext context;
+		/**
+		 * The error to print if nothing better is found, which is part of the messages of a failure
+		 */
+		@Nullable
+		private final LogEntry error;
+		private final Class<?>[] types;
+		
+		Key(final int kind, final String expr, final int flags, final ParseContext context, final @Nullable LogEntry error, final Class<?>[] types) {
+			this.kind = kind;
+			this.expr = expr;
+			this.flags = flags;
+			this.context = context;
+			this.error = error;
+			this.types = types;
+		}
+		
+		@Override
+		public int hashCode() {
+			return ((expr.hashCode() * 31 + Arrays.hashCode(types)) * 31 + flags) * 31 + kind;
+		}
+		
+		@Override
+		public boolean equals(final @Nullable Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			final Key other = (Key) obj;
+			return kind == other.kind && flags == other.flags && context == other.context && expr.equals(other.expr) && Arrays.equals(types, other.types) && sameError(other.error);
+		}
+		
+		private boolean sameError(final @Nullable LogEntry other) {
+			final LogEntry e = error;
+			if (e == null || other == null)
+				return e == other;
+			return e.level == other.level && e.quality == other.quality && e.message.equals(other.message);
+		}
+		
+	}
+	
+	/**
+	 * Logs the messages of a remembered failure again.
+	 *
+	 * @param key
+	 * @return Whether parsing has failed for the given key before
+	 */
+	boolean replayFailure(final Key key) {
+		final LogEntry[] log = failures.get(key);
+		if (log == null)
+			return false;
+		for (final LogEntry e : log)
+			SkriptLogger.log(e.copy());
+		return true;
+	}
+	
+	/**
+	 * @param key
+	 * @param log The messages logged by the failed parse
+	 */
+	void addFailure(final Key key, final Collection<LogEntry> log) {
+		failures.put(key, log.toArray(new LogEntry[log.size()]));
+	}
+	
+}
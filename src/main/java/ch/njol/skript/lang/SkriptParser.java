@@ -27,6 +27,8 @@ import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -42,6 +44,7 @@ import ch.njol.skript.classes.ClassInfo;
 import ch.njol.skript.command.Argument;
 import ch.njol.skript.command.Commands;
 import ch.njol.skript.command.ScriptCommand;
+import ch.njol.skript.config.Config;
 import ch.njol.skript.command.ScriptCommandEvent;
 import ch.njol.skript.entity.EntityData;
 import ch.njol.skript.expressions.ExprParse;
@@ -130,9 +133,14 @@ public class SkriptParser {
 			expr = parser.expr;
 			exprs = new Expression<?>[countUnescaped(pattern, '%') / 2];
 		}
+		
+		ParseResult(final SkriptParser parser, final CompiledPattern pattern) {
+			expr = parser.expr;
+			exprs = new Expression<?>[pattern.expressionCount];
+		}
 	}
 	
-	private final static class MalformedPatternException extends RuntimeException {
+	final static class MalformedPatternException extends RuntimeException {
 		private static final long serialVersionUID = -5133477361763823946L;
 		
 		public MalformedPatternException(final String pattern, final String message) {
@@ -164,7 +172,19 @@ public class SkriptParser {
 	 * Can print an error.
 	 */
 	@Nullable
-	public final static <T extends SyntaxElement> T parse(String expr, final Iterator<? extends SyntaxElementInfo<T>> source, final @Nullable String defaultError) {
+	public final static <T extends SyntaxElement> T parse(final String expr, final Iterator<? extends SyntaxElementInfo<T>> source, final @Nullable String defaultError) {
+		return parse(expr, source, defaultError, null);
+	}
+	
+	/**
+	 * Parses a string as one of the given syntax elements, using and updating the {@link ParseHints} of the script currently being loaded if there are any.
+	 * <p>
+	 * Can print an error.
+	 * 
+	 * @param hintKind What the string is parsed as, e.g. "effect", or null to not use hints
+	 */
+	@Nullable
+	final static <T extends SyntaxElement> T parse(String expr, final Iterator<? extends SyntaxElementInfo<T>> source, final @Nullable String defaultError, final @Nullable String hintKind) {
 		expr = "" + expr.trim();
 		if (expr.isEmpty()) {
 			Skript.error(defaultError);
@@ -172,7 +192,7 @@ public class SkriptParser {
 		}
 		final ParseLogHandler log = SkriptLogger.startParseLogHandler();
 		try {
-			final T e = new SkriptParser(expr).parse(source);
+			final T e = new SkriptParser(expr).parse(source, hintKind);
 			if (e != null) {
 				log.printLog();
 				return e;
@@ -194,7 +214,7 @@ public class SkriptParser {
 		final ParseLogHandler log = SkriptLogger.startParseLogHandler();
 		final T e;
 		try {
-			e = new SkriptParser(expr, PARSE_LITERALS).parse(source);
+			e = new SkriptParser(expr, PARSE_LITERALS).parse(source, null);
 			if (e != null) {
 				log.printLog();
 				return e;
@@ -206,62 +226,143 @@ public class SkriptParser {
 		}
 	}
 	
+	/**
+	 * If there is a hint for the expression, only the hinted pattern is tried at first. The elements skipped while looking for the hinted element are remembered so that all
+	 * elements can be tried in order if the hinted pattern does not match.
+	 * <p>
+	 * A hint is only recorded if no pattern before the one that was used got as far as parsing an expression, see {@link ParseHints}.
+	 */
 	@Nullable
-	private final <T extends SyntaxElement> T parse(final Iterator<? extends SyntaxElementInfo<? extends T>> source) {
+	private final <T extends SyntaxElement> T parse(final Iterator<? extends SyntaxElementInfo<? extends T>> source, final @Nullable String hintKind) {
+		final ParseMemo memo = ParseMemo.enter();
 		final ParseLogHandler log = SkriptLogger.startParseLogHandler();
 		try {
-			while (source.hasNext()) {
-				final SyntaxElementInfo<? extends T> info = source.next();
-				patternsLoop: for (int i = 0; i < info.patterns.length; i++) {
-					log.clear();
-					try {
-						final String pattern = info.patterns[i];
-						assert pattern != null;
-						final ParseResult res = parse_i(pattern, 0, 0);
-						if (res != null) {
-							int x = -1;
-							for (int j = 0; (x = nextUnescaped(pattern, '%', x + 1)) != -1; j++) {
-								final int x2 = nextUnescaped(pattern, '%', x + 1);
-								if (res.exprs[j] == null) {
-									final String name = pattern.substring(x + 1, x2);
-									if (!name.startsWith("-")) {
-										final ExprInfo vi = getExprInfo(name);
-										final DefaultExpression<?> expr = vi.classes[0].getDefaultExpression();
-										if (expr == null)
-											throw new SkriptAPIException("The class '" + vi.classes[0].getCodeName() + "' does not provide a default expression. Either allow null (with %-" + vi.classes[0].getCodeName() + "%) or make it mandatory [pattern: " + info.patterns[i] + "]");
-										if (!(expr instanceof Literal) && (vi.flagMask & PARSE_EXPRESSIONS) == 0)
-											throw new SkriptAPIException("The default expression of '" + vi.classes[0].getCodeName() + "' is not a literal. Either allow null (with %-*" + vi.classes[0].getCodeName() + "%) or make it mandatory [pattern: " + info.patterns[i] + "]");
-										if (expr instanceof Literal && (vi.flagMask & PARSE_LITERALS) == 0)
-											throw new SkriptAPIException("The default expression of '" + vi.classes[0].getCodeName() + "' is a literal. Either allow null (with %-~" + vi.classes[0].getCodeName() + "%) or make it mandatory [pattern: " + info.patterns[i] + "]");
-										if (!vi.isPlural[0] && !expr.isSingle())
-											throw new SkriptAPIException("The default expression of '" + vi.classes[0].getCodeName() + "' is not a single-element expression. Change your pattern to allow multiple elements or make the expression mandatory [pattern: " + info.patterns[i] + "]");
-										if (vi.time != 0 && !expr.setTime(vi.time))
-											throw new SkriptAPIException("The default expression of '" + vi.classes[0].getCodeName() + "' does not have distinct time states. [pattern: " + info.patterns[i] + "]");
-										if (!expr.init())
-											continue patternsLoop;
-										res.exprs[j] = expr;
-									}
-								}
-								x = x2;
-							}
-							final T t = info.c.newInstance();
-							if (t.init(res.exprs, i, ScriptLoader.hasDelayBefore, res)) {
+			final ParseHints hints = hintKind == null ? null : ScriptLoader.getParseHints();
+			final String hintKey = hints == null || hintKind == null ? null : ParseHints.key(hintKind, flags, context, expr);
+			List<SyntaxElementInfo<? extends T>> skipped = null;
+			if (hints != null && hintKey != null) {
+				final ParseHints.Hint hint = hints.get(hintKey);
+				if (hint != null) {
+					skipped = new ArrayList<SyntaxElementInfo<? extends T>>();
+					while (source.hasNext()) {
+						final SyntaxElementInfo<? extends T> info = source.next();
+						skipped.add(info);
+						if (hint.isFor(info)) {
+							log.clear();
+							final T t = parse(info, hint.patternIndex);
+							if (t != null) {
+								hints.add(hintKey, info, hint.patternIndex);
 								log.printLog();
 								return t;
 							}
+							break;
 						}
-					} catch (final InstantiationException e) {
-						assert false;
-					} catch (final IllegalAccessException e) {
-						assert false;
 					}
 				}
 			}
+			final String firstWord = CompiledPattern.getFirstWord(expr);
+			boolean first = true;
+			int k = 0;
+			while (true) {
+				final SyntaxElementInfo<? extends T> info;
+				if (skipped != null && k < skipped.size())
+					info = skipped.get(k++);
+				else if (source.hasNext())
+					info = source.next();
+				else
+					break;
+				for (int i = 0; i < info.patterns.length; i++) {
+					if (!info.getCompiledPattern(i).canStartWith(firstWord))
+						continue;
+					log.clear();
+					final int expressions = memo.expressions;
+					final ParseResult res = parse_i(info.getCompiledPattern(i), 0, 0);
+					if (res == null) {
+						if (memo.expressions != expressions)
+							first = false;
+						continue;
+					}
+					final T t = init(info, i, res);
+					if (t != null) {
+						if (first && hints != null && hintKey != null)
+							hints.add(hintKey, info, i);
+						log.printLog();
+						return t;
+					}
+					first = false;
+				}
+			}
 			log.printError();
 			return null;
 		} finally {
 			log.stop();
+			memo.exit();
+		}
+	}
+	
+	/**
+	 * Parses the expression as the given pattern of the given element. Does not print anything.
+	 * 
+	 * @return The initialised element, or null if the pattern does not match or the element could not be initialised
+	 */
+	@Nullable
+	private final <T extends SyntaxElement> T parse(final SyntaxElementInfo<? extends T> info, final int i) {
+		final ParseResult res = parse_i(info.getCompiledPattern(i), 0, 0);
+		if (res == null)
+			return null;
+		return init(info, i, res);
+	}
+	
+	/**
+	 * Initialises the given element with the result of matching its pattern. Does not print anything.
+	 * 
+	 * @return The initialised element, or null if the element could not be initialised
+	 */
+	@Nullable
+	private final <T extends SyntaxElement> T init(final SyntaxElementInfo<? extends T> info, final int i, final ParseResult res) {
+		final CompiledPattern pattern = info.getCompiledPattern(i);
+		try {
+			for (int j = 0; j < res.exprs.length; j++) {
+				if (res.exprs[j] == null) {
+					final ExprInfo vi = pattern.getDefaultExpressionInfo(j);
+					if (vi != null) {
+						final DefaultExpression<?> expr = vi.classes[0].getDefaultExpression();
+						if (expr == null)
+							throw new SkriptAPIException("The class '" + vi.classes[0].getCodeName() + "' does not provide a default expression. Either allow null (with %-" + vi.classes[0].getCodeName() + "%) or make it mandatory [pattern: " + info.patterns[i] + "]");
+						if (!(expr instanceof Literal) && (vi.flagMask & PARSE_EXPRESSIONS) == 0)
+							throw new SkriptAPIException("The default expression of '" + vi.classes[0].getCodeName() + "' is not a literal. Either allow null (with %-*" + vi.classes[0].getCodeName() + "%) or make it mandatory [pattern: " + info.patterns[i] + "]");
+						if (expr instanceof Literal && (vi.flagMask & PARSE_LITERALS) == 0)
+							throw new SkriptAPIException("The default expression of '" + vi.classes[0].getCodeName() + "' is a literal. Either allow null (with %-~" + vi.classes[0].getCodeName() + "%) or make it mandatory [pattern: " + info.patterns[i] + "]");
+						if (!vi.isPlural[0] && !expr.isSingle())
+							throw new SkriptAPIException("The default expression of '" + vi.classes[0].getCodeName() + "' is not a single-element expression. Change your pattern to allow multiple elements or make the expression mandatory [pattern: " + info.patterns[i] + "]");
+						if (vi.time != 0 && !expr.setTime(vi.time))
+							throw new SkriptAPIException("The default expression of '" + vi.classes[0].getCodeName() + "' does not have distinct time states. [pattern: " + info.patterns[i] + "]");
+						if (!expr.init())
+							return null;
+						res.exprs[j] = expr;
+					}
+				}
+			}
+			final T t = info.c.newInstance();
+			if (t.init(res.exprs, i, ScriptLoader.getHasDelayBefore(), res))
+				return t;
+		} catch (final InstantiationException e) {
+			assert false;
+		} catch (final IllegalAccessException e) {
+			assert false;
 		}
+		return null;
+	}
+	
+	/**
+	 * @param types
+	 * @return The kind of {@link ParseHints} of expressions of the given types
+	 */
+	private final static String getHintKind(final Class<?>[] types) {
+		final StringBuilder b = new StringBuilder("expression");
+		for (final Class<?> t : types)
+			b.append(' ').append(t.getName());
+		return "" + b;
 	}
 	
 	@SuppressWarnings("null")
@@ -277,9 +378,33 @@ public class SkriptParser {
 		return null;
 	}
 	
-	@SuppressWarnings({"unchecked", "rawtypes"})
+	/**
+	 * Prints errors. Failures are remembered for the current line, see {@link ParseMemo}.
+	 */
 	@Nullable
 	private final <T> Expression<? extends T> parseSingleExpr(final boolean allowUnparsedLiteral, @Nullable final LogEntry error, final Class<? extends T>... types) {
+		final ParseMemo memo = ParseMemo.enter();
+		try {
+			final ParseMemo.Key key = new ParseMemo.Key(allowUnparsedLiteral ? ParseMemo.SINGLE_EXPRESSION_OR_UNPARSED_LITERAL : ParseMemo.SINGLE_EXPRESSION, expr, flags, context, error, types);
+			if (memo.replayFailure(key))
+				return null;
+			final RetainingLogHandler log = SkriptLogger.startRetainingLog();
+			try {
+				final Expression<? extends T> r = parseSingleExpr_i(allowUnparsedLiteral, error, types);
+				if (r == null)
+					memo.addFailure(key, log.getLog());
+				return r;
+			} finally {
+				log.printLog();
+			}
+		} finally {
+			memo.exit();
+		}
+	}
+	
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	@Nullable
+	private final <T> Expression<? extends T> parseSingleExpr_i(final boolean allowUnparsedLiteral, @Nullable final LogEntry error, final Class<? extends T>... types) {
 		assert types.length > 0;
 		assert types.length == 1 || !CollectionUtils.contains(types, Object.class);
 		if (expr.isEmpty())
@@ -317,7 +442,7 @@ public class SkriptParser {
 				if (expr.startsWith("\"") && expr.endsWith("\"") && expr.length() != 1 && (types[0] == Object.class || CollectionUtils.contains(types, String.class))) {
 					e = VariableString.newInstance("" + expr.substring(1, expr.length() - 1));
 				} else {
-					e = parse(expr, (Iterator) Skript.getExpressions(types), null);
+					e = parse(expr, (Iterator) Skript.getExpressions(types), null, ScriptLoader.getParseHints() == null ? null : getHintKind(types));
 				}
 				if (e != null) {
 					for (final Class<? extends T> t : types) {
@@ -386,11 +511,36 @@ public class SkriptParser {
 		return this;
 	}
 	
-	@SuppressWarnings("unchecked")
+	/**
+	 * Prints errors. Failures are remembered for the current line, see {@link ParseMemo}.
+	 */
 	@Nullable
 	public final <T> Expression<? extends T> parseExpression(final Class<? extends T>... types) {
 		if (expr.length() == 0)
 			return null;
+		final ParseMemo memo = ParseMemo.enter();
+		memo.expressions++;
+		try {
+			final ParseMemo.Key key = new ParseMemo.Key(ParseMemo.EXPRESSION, expr, flags, context, null, types);
+			if (memo.replayFailure(key))
+				return null;
+			final RetainingLogHandler log = SkriptLogger.startRetainingLog();
+			try {
+				final Expression<? extends T> r = parseExpression_i(types);
+				if (r == null)
+					memo.addFailure(key, log.getLog());
+				return r;
+			} finally {
+				log.printLog();
+			}
+		} finally {
+			memo.exit();
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Nullable
+	private final <T> Expression<? extends T> parseExpression_i(final Class<? extends T>... types) {
 		
 		assert types != null && types.length > 0;
 		assert types.length == 1 || !CollectionUtils.contains(types, Object.class);
@@ -749,7 +899,8 @@ public class SkriptParser {
 //				}
 //			}
 //			@SuppressWarnings("null")
-			final FunctionReference<T> e = new FunctionReference<T>(functionName, SkriptLogger.getNode(), ScriptLoader.currentScript != null ? ScriptLoader.currentScript.getFile() : null, types, params);//.toArray(new Expression[params.size()]));
+			final Config script = ScriptLoader.getCurrentScript();
+			final FunctionReference<T> e = new FunctionReference<T>(functionName, SkriptLogger.getNode(), script != null ? script.getFile() : null, types, params);//.toArray(new Expression[params.size()]));
 			if (!e.validateFunction(true)) {
 				log.printError();
 				return null;
@@ -766,7 +917,7 @@ public class SkriptParser {
 	 */
 	public static boolean parseArguments(final String args, final ScriptCommand command, final ScriptCommandEvent event) {
 		final SkriptParser parser = new SkriptParser(args, PARSE_LITERALS, ParseContext.COMMAND);
-		final ParseResult res = parser.parse_i(command.getPattern(), 0, 0);
+		final ParseResult res = parser.parse_i(getCompiledPattern(command.getPattern()), 0, 0);
 		if (res == null)
 			return false;
 		
@@ -788,7 +939,23 @@ public class SkriptParser {
 	 */
 	@Nullable
 	public static ParseResult parse(final String text, final String pattern) {
-		return new SkriptParser(text, PARSE_LITERALS, ParseContext.COMMAND).parse_i(pattern, 0, 0);
+		return new SkriptParser(text, PARSE_LITERALS, ParseContext.COMMAND).parse_i(getCompiledPattern(pattern), 0, 0);
+	}
+	
+	/**
+	 * Compiled patterns of commands and {@link ExprParse}, which are not registered as syntax elements. These are only few, and they are kept until the server stops.
+	 */
+	private final static ConcurrentMap<String, CompiledPattern> compiledPatterns = new ConcurrentHashMap<String, CompiledPattern>();
+	
+	private final static CompiledPattern getCompiledPattern(final String pattern) {
+		CompiledPattern p = compiledPatterns.get(pattern);
+		if (p == null) {
+			p = new CompiledPattern(pattern);
+			final CompiledPattern old = compiledPatterns.putIfAbsent(pattern, p);
+			if (old != null)
+				p = old;
+		}
+		return p;
 	}
 	
 	@Nullable
@@ -811,40 +978,78 @@ public class SkriptParser {
 	private NonNullPair<SkriptEventInfo<?>, SkriptEvent> parseEvent() {
 		assert context == ParseContext.EVENT;
 		assert flags == PARSE_LITERALS;
+		final ParseMemo memo = ParseMemo.enter();
 		final ParseLogHandler log = SkriptLogger.startParseLogHandler();
 		try {
+			final ParseHints hints = ScriptLoader.getParseHints();
+			final String hintKey = hints == null ? null : ParseHints.key("event", flags, context, expr);
+			if (hints != null && hintKey != null) {
+				final ParseHints.Hint hint = hints.get(hintKey);
+				if (hint != null) {
+					for (final SkriptEventInfo<?> info : Skript.getEvents()) {
+						if (!hint.isFor(info))
+							continue;
+						log.clear();
+						final ParseResult res = parse_i(info.getCompiledPattern(hint.patternIndex), 0, 0);
+						if (res != null) {
+							hints.add(hintKey, info, hint.patternIndex);
+							return initEvent(info, hint.patternIndex, res, log);
+						}
+						break;
+					}
+				}
+			}
+			final String firstWord = CompiledPattern.getFirstWord(expr);
+			boolean first = true;
 			for (final SkriptEventInfo<?> info : Skript.getEvents()) {
 				for (int i = 0; i < info.patterns.length; i++) {
+					final CompiledPattern pattern = info.getCompiledPattern(i);
+					if (!pattern.canStartWith(firstWord))
+						continue;
 					log.clear();
-					try {
-						final String pattern = info.patterns[i];
-						assert pattern != null;
-						final ParseResult res = parse_i(pattern, 0, 0);
-						if (res != null) {
-							final SkriptEvent e = info.c.newInstance();
-							final Literal<?>[] ls = Arrays.copyOf(res.exprs, res.exprs.length, Literal[].class);
-							assert ls != null;
-							if (!e.init(ls, i, res)) {
-								log.printError();
-								return null;
-							}
-							log.printLog();
-							return new NonNullPair<SkriptEventInfo<?>, SkriptEvent>(info, e);
-						}
-					} catch (final InstantiationException e) {
-						assert false;
-					} catch (final IllegalAccessException e) {
-						assert false;
+					final int expressions = memo.expressions;
+					final ParseResult res = parse_i(pattern, 0, 0);
+					if (res != null) {
+						if (first && hints != null && hintKey != null)
+							hints.add(hintKey, info, i);
+						return initEvent(info, i, res, log);
 					}
+					if (memo.expressions != expressions)
+						first = false;
 				}
 			}
 			log.printError(null);
 			return null;
 		} finally {
 			log.stop();
+			memo.exit();
 		}
 	}
 	
+	/**
+	 * Creates the event of the given info for the given pattern. Prints the log or the error.
+	 */
+	@Nullable
+	private final static NonNullPair<SkriptEventInfo<?>, SkriptEvent> initEvent(final SkriptEventInfo<?> info, final int i, final ParseResult res, final ParseLogHandler log) {
+		try {
+			final SkriptEvent e = info.c.newInstance();
+			final Literal<?>[] ls = Arrays.copyOf(res.exprs, res.exprs.length, Literal[].class);
+			assert ls != null;
+			if (!e.init(ls, i, res)) {
+				log.printError();
+				return null;
+			}
+			log.printLog();
+			return new NonNullPair<SkriptEventInfo<?>, SkriptEvent>(info, e);
+		} catch (final InstantiationException e) {
+			assert false;
+		} catch (final IllegalAccessException e) {
+			assert false;
+		}
+		log.printError(null);
+		return null;
+	}
+	
 	/**
 	 * Finds the closing bracket of the group at <tt>start</tt> (i.e. <tt>start</tt> has to be <i>in</i> a group).
 	 * 
@@ -856,7 +1061,7 @@ public class SkriptParser {
 	 * @return The index of the next bracket
 	 * @throws MalformedPatternException If the group is not closed
 	 */
-	private static int nextBracket(final String pattern, final char closingBracket, final char openingBracket, final int start, final boolean isGroup) throws MalformedPatternException {
+	static int nextBracket(final String pattern, final char closingBracket, final char openingBracket, final int start, final boolean isGroup) throws MalformedPatternException {
 		int n = 0;
 		for (int i = start; i < pattern.length(); i++) {
 			if (pattern.charAt(i) == '\\') {
@@ -886,7 +1091,7 @@ public class SkriptParser {
 	 * @param from The index to start searching from
 	 * @return The next index where the character occurs unescaped or -1 if it doesn't occur.
 	 */
-	private static int nextUnescaped(final String pattern, final char c, final int from) {
+	static int nextUnescaped(final String pattern, final char c, final int from) {
 		for (int i = from; i < pattern.length(); i++) {
 			if (pattern.charAt(i) == '\\') {
 				i++;
@@ -1016,7 +1221,7 @@ public class SkriptParser {
 		return i + 1;
 	}
 	
-	private final static int getGroupLevel(final String pattern, final int j) {
+	final static int getGroupLevel(final String pattern, final int j) {
 		assert j >= 0 && j <= pattern.length() : j + "; " + pattern;
 		int level = 0;
 		for (int i = 0; i < j; i++) {
@@ -1037,13 +1242,14 @@ public class SkriptParser {
 	/**
 	 * Prints errors
 	 * 
-	 * @param pattern
+	 * @param p
 	 * @param i Position in the input string
 	 * @param j Position in the pattern
 	 * @return Parsed result or null on error (which does not imply that an error was printed)
 	 */
 	@Nullable
-	private final ParseResult parse_i(final String pattern, int i, int j) {
+	private final ParseResult parse_i(final CompiledPattern p, int i, int j) {
+		final String pattern = p.pattern;
 		ParseResult res;
 		int end, i2;
 		
@@ -1052,14 +1258,14 @@ public class SkriptParser {
 				case '[': {
 					final ParseLogHandler log = SkriptLogger.startParseLogHandler();
 					try {
-						res = parse_i(pattern, i, j + 1);
+						res = parse_i(p, i, j + 1);
 						if (res != null) {
 							log.printLog();
 							return res;
 						}
 						log.clear();
-						j = nextBracket(pattern, ']', '[', j + 1, true) + 1;
-						res = parse_i(pattern, i, j);
+						j = p.getOptionalEnd(j);
+						res = parse_i(p, i, j);
 						if (res == null)
 							log.printError();
 						else
@@ -1072,34 +1278,19 @@ public class SkriptParser {
 				case '(': {
 					final ParseLogHandler log = SkriptLogger.startParseLogHandler();
 					try {
-						final int start = j;
-						for (; j < pattern.length(); j++) {
+						final CompiledPattern.Group g = p.getGroup(j);
+						for (int k = 0; k < g.starts.length; k++) {
 							log.clear();
-							if (j == start || pattern.charAt(j) == '|') {
-								int mark = 0;
-								if (j != pattern.length() - 1 && ('0' <= pattern.charAt(j + 1) && pattern.charAt(j + 1) <= '9' || pattern.charAt(j + 1) == '-')) {
-									final int j2 = pattern.indexOf('¦', j + 2);
-									if (j2 != -1) {
-										try {
-											mark = Integer.parseInt(pattern.substring(j + 1, j2));
-											j = j2;
-										} catch (final NumberFormatException e) {}
-									}
-								}
-								res = parse_i(pattern, i, j + 1);
-								if (res != null) {
-									log.printLog();
-									res.mark ^= mark; // doesn't do anything if no mark was set as x ^ 0 == x
-									return res;
-								}
-							} else if (pattern.charAt(j) == '(') {
-								j = nextBracket(pattern, ')', '(', j + 1, true);
-							} else if (pattern.charAt(j) == ')') {
-								break;
-							} else if (j == pattern.length() - 1) {
-								throw new MalformedPatternException(pattern, "Missing closing bracket ')'");
+							res = parse_i(p, i, g.starts[k]);
+							if (res != null) {
+								log.printLog();
+								res.mark ^= g.marks[k]; // doesn't do anything if no mark was set as x ^ 0 == x
+								return res;
 							}
 						}
+						log.clear();
+						if (g.error != null)
+							throw g.error;
 						log.printError();
 						return null;
 					} finally {
@@ -1109,11 +1300,9 @@ public class SkriptParser {
 				case '%': {
 					if (i == expr.length())
 						return null;
-					end = pattern.indexOf('%', j + 1);
-					if (end == -1)
-						throw new MalformedPatternException(pattern, "Odd number of '%'");
-					final String name = "" + pattern.substring(j + 1, end);
-					final ExprInfo vi = getExprInfo(name);
+					final CompiledPattern.ExpressionElement x = p.getExpression(j);
+					end = x.end;
+					final ExprInfo vi = x.info;
 					if (end == pattern.length() - 1) {
 						i2 = expr.length();
 					} else {
@@ -1125,7 +1314,7 @@ public class SkriptParser {
 					try {
 						for (; i2 != -1; i2 = next(expr, i2, context)) {
 							log.clear();
-							res = parse_i(pattern, i2, end + 1);
+							res = parse_i(p, i2, end + 1);
 							if (res != null) {
 								final ParseLogHandler log2 = SkriptLogger.startParseLogHandler();
 								try {
@@ -1148,7 +1337,7 @@ public class SkriptParser {
 											if (vi.time != 0) {
 												if (e instanceof Literal<?>)
 													return null;
-												if (ScriptLoader.hasDelayBefore == Kleenean.TRUE) {
+												if (ScriptLoader.getHasDelayBefore() == Kleenean.TRUE) {
 													Skript.error("Cannot use time states after the event has already passed", ErrorQuality.SEMANTIC_ERROR);
 													return null;
 												}
@@ -1159,7 +1348,7 @@ public class SkriptParser {
 											}
 											log2.printLog();
 											log.printLog();
-											res.exprs[countUnescaped(pattern, '%', 0, j) / 2] = e;
+											res.exprs[x.index] = e;
 											return res;
 										}
 									}
@@ -1178,23 +1367,16 @@ public class SkriptParser {
 					return null;
 				}
 				case '<': {
-					end = pattern.indexOf('>', j + 1);// not next()
-					if (end == -1)
-						throw new MalformedPatternException(pattern, "Missing closing regex bracket '>'");
-					Pattern p;
-					try {
-						p = Pattern.compile(pattern.substring(j + 1, end));
-					} catch (final PatternSyntaxException e) {
-						throw new MalformedPatternException(pattern, "Invalid regex <" + pattern.substring(j + 1, end) + ">", e);
-					}
+					final CompiledPattern.Regex r = p.getRegex(j);
+					end = r.end;
 					final ParseLogHandler log = SkriptLogger.startParseLogHandler();
 					try {
-						final Matcher m = p.matcher(expr);
+						final Matcher m = r.regex.matcher(expr);
 						for (i2 = next(expr, i, context); i2 != -1; i2 = next(expr, i2, context)) {
 							log.clear();
 							m.region(i, i2);
 							if (m.matches()) {
-								res = parse_i(pattern, i2, end + 1);
+								res = parse_i(p, i2, end + 1);
 								if (res != null) {
 									res.regexes.add(0, m.toMatchResult());
 									log.printLog();
@@ -1213,7 +1395,7 @@ public class SkriptParser {
 					j++;
 					continue;
 				case '|':
-					final int newJ = nextBracket(pattern, ')', '(', j + 1, getGroupLevel(pattern, j) != 0);
+					final int newJ = p.getAlternativeEnd(j);
 					if (newJ == -1) {
 						if (i == expr.length()) {
 							j = pattern.length();
@@ -1250,7 +1432,7 @@ public class SkriptParser {
 			}
 		}
 		if (i == expr.length() && j == pattern.length())
-			return new ParseResult(this, pattern);
+			return new ParseResult(this, p);
 		return null;
 	}
 	
@@ -1353,49 +1535,57 @@ public class SkriptParser {
 		return true;
 	}
 	
-	private final static class ExprInfo {
-		public ExprInfo(final int length) {
-			classes = new ClassInfo[length];
-			isPlural = new boolean[length];
+	/**
+	 * The type of an expression in a pattern. This is immutable as it is shared by all parses of a {@link CompiledPattern}.
+	 */
+	final static class ExprInfo {
+		public ExprInfo(final ClassInfo<?>[] classes, final boolean[] isPlural, final boolean isOptional, final int flagMask, final int time) {
+			this.classes = classes;
+			this.isPlural = isPlural;
+			this.isOptional = isOptional;
+			this.flagMask = flagMask;
+			this.time = time;
 		}
 		
 		final ClassInfo<?>[] classes;
 		final boolean[] isPlural;
-		boolean isOptional;
-		int flagMask = ~0;
-		int time = 0;
+		final boolean isOptional;
+		final int flagMask;
+		final int time;
 	}
 	
-	private static ExprInfo getExprInfo(String s) throws MalformedPatternException, IllegalArgumentException, SkriptAPIException {
-		final ExprInfo r = new ExprInfo(StringUtils.count(s, '/') + 1);
-		r.isOptional = s.startsWith("-");
-		if (r.isOptional)
+	static ExprInfo getExprInfo(String s) throws MalformedPatternException, IllegalArgumentException, SkriptAPIException {
+		boolean isOptional = s.startsWith("-");
+		if (isOptional)
 			s = "" + s.substring(1);
+		int flagMask = ~0;
 		if (s.startsWith("*")) {
 			s = "" + s.substring(1);
-			r.flagMask &= ~PARSE_EXPRESSIONS;
+			flagMask &= ~PARSE_EXPRESSIONS;
 		} else if (s.startsWith("~")) {
 			s = "" + s.substring(1);
-			r.flagMask &= ~PARSE_LITERALS;
+			flagMask &= ~PARSE_LITERALS;
 		}
-		if (!r.isOptional) {
-			r.isOptional = s.startsWith("-");
-			if (r.isOptional)
+		if (!isOptional) {
+			isOptional = s.startsWith("-");
+			if (isOptional)
 				s = "" + s.substring(1);
 		}
+		int time = 0;
 		final int a = s.indexOf("@");
 		if (a != -1) {
-			r.time = Integer.parseInt(s.substring(a + 1));
+			time = Integer.parseInt(s.substring(a + 1));
 			s = "" + s.substring(0, a);
 		}
 		final String[] classes = s.split("/");
-		assert classes.length == r.classes.length;
+		final ClassInfo<?>[] cs = new ClassInfo[classes.length];
+		final boolean[] isPlural = new boolean[classes.length];
 		for (int i = 0; i < classes.length; i++) {
 			final NonNullPair<String, Boolean> p = Utils.getEnglishPlural("" + classes[i]);
-			r.classes[i] = Classes.getClassInfo(p.getFirst());
-			r.isPlural[i] = p.getSecond();
+			cs[i] = Classes.getClassInfo(p.getFirst());
+			isPlural[i] = p.getSecond();
 		}
-		return r;
+		return new ExprInfo(cs, isPlural, isOptional, flagMask, time);
 	}
 	
 }
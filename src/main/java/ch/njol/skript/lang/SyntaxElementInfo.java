@@ -30,9 +30,19 @@ public class SyntaxElementInfo<E extends SyntaxElement> {
 	public final Class<E> c;
 	public final String[] patterns;
 	
+	/**
+	 * The compiled {@link #patterns}. A pattern is compiled again if it has been replaced, e.g. after the language has changed.
+	 */
+	private final CompiledPattern[] compiledPatterns;
+	
 	public SyntaxElementInfo(final String[] patterns, final Class<E> c) throws IllegalArgumentException {
 		this.patterns = patterns;
 		this.c = c;
+		compiledPatterns = new CompiledPattern[patterns.length];
+		for (int i = 0; i < patterns.length; i++) {
+			if (patterns[i] != null)
+				compiledPatterns[i] = new CompiledPattern(patterns[i]);
+		}
 		try {
 			c.getConstructor();
 //			if (!c.getDeclaredConstructor().isAccessible())
@@ -45,4 +55,13 @@ public class SyntaxElementInfo<E extends SyntaxElement> {
 		}
 	}
 	
+	final CompiledPattern getCompiledPattern(final int i) {
+		final String pattern = patterns[i];
+		assert pattern != null;
+		CompiledPattern p = compiledPatterns[i];
+		if (p == null || p.pattern != pattern)
+			compiledPatterns[i] = p = new CompiledPattern(pattern);
+		return p;
+	}
+	
 }
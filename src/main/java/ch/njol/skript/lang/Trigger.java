@@ -23,10 +23,14 @@ package ch.njol.skript.lang;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.spongepowered.api.event.Event;
 
+import ch.njol.skript.ScriptLoader;
+import ch.njol.skript.SkriptConfig;
+
 /**
  * @author Peter Güttinger
  */
@@ -38,11 +42,20 @@ public class Trigger extends TriggerSection {
 	@Nullable
 	private final File script;
 	
+	private final int slots;
+	private final Map<String, Integer> localSlots;
+	
+	@Nullable
+	private final CompiledTrigger compiled;
+	
 	public Trigger(final @Nullable File script, final String name, final SkriptEvent event, final List<TriggerItem> items) {
 		super(items);
 		this.script = script;
 		this.name = name;
 		this.event = event;
+		slots = ScriptLoader.getSlotCount();
+		localSlots = ScriptLoader.getLocalSlots();
+		compiled = SkriptConfig.compileTriggers.value() ? CompiledTrigger.compile(this) : null;
 	}
 	
 	/**
@@ -53,6 +66,14 @@ public class Trigger extends TriggerSection {
 		return TriggerItem.walk(this, e);
 	}
 	
+	/**
+	 * @param frame A frame created for this trigger
+	 * @return false iff an exception occurred
+	 */
+	public boolean execute(final TriggerFrame frame) {
+		return TriggerItem.walk(this, frame);
+	}
+	
 	@Override
 	@Nullable
 	protected TriggerItem walk(final Event e) {
@@ -77,4 +98,26 @@ public class Trigger extends TriggerSection {
 		return script;
 	}
 	
+	/**
+	 * @return The number of {@link TriggerFrame} slots allocated by this trigger's items while parsing
+	 */
+	public int getSlotCount() {
+		return slots;
+	}
+	
+	/**
+	 * @return The slots of the local variables that are accessed by a constant name in this trigger, see {@link ScriptLoader#getLocalSlot(String)}
+	 */
+	public Map<String, Integer> getLocalSlots() {
+		return localSlots;
+	}
+	
+	/**
+	 * @return This trigger compiled into a table of its items if 'compile triggers' is enabled in the config, null otherwise
+	 */
+	@Nullable
+	CompiledTrigger getCompiled() {
+		return compiled;
+	}
+	
 }
@@ -0,0 +1,193 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.lang;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.spongepowered.api.event.Event;
+
+/**
+ * Holds the state of one execution of a trigger: its local variables, the state of its loops, its command arguments, and whether it has been delayed.
+ * <p>
+ * A frame is created whenever a trigger is executed, and is kept when the execution continues after a delay. Items and expressions only get the event passed, and can get
+ * the frame executing this event with {@link #of(Event)}. State that is known at parse time is stored in slots allocated with {@link ch.njol.skript.ScriptLoader#allocateSlot()}.
+ * <p>
+ * Items that continue the execution later, e.g. delays, must {@link #suspend(Event) suspend} the frame and pass it to {@link TriggerItem#walk(TriggerItem, TriggerFrame)}.
+ * <p>
+ * Frames are made current per thread, i.e. triggers can execute on several threads at once.
+ */
+public final class TriggerFrame {
+	
+	private final static ThreadLocal<TriggerFrame> current = new ThreadLocal<TriggerFrame>();
+	
+	private final Event event;
+	
+	private Object[] slots;
+	
+	/**
+	 * The slots of local variables with constant names, used to find these variables when they are accessed by name
+	 */
+	private final Map<String, Integer> localSlots;
+	
+	private boolean delayed = false;
+	
+	@Nullable
+	private Object localVariables = null;
+	
+	/**
+	 * The frame that was current when this frame was entered, e.g. the frame of a trigger that called a function
+	 */
+	@Nullable
+	private TriggerFrame outer = null;
+	
+	/**
+	 * @param event
+	 * @param slots The number of slots of the executed trigger, see {@link Trigger#getSlotCount()}
+	 */
+	public TriggerFrame(final Event event, final int slots) {
+		this.event = event;
+		this.slots = new Object[slots];
+		localSlots = Collections.emptyMap();
+	}
+	
+	/**
+	 * @param event
+	 * @param trigger The trigger to execute, or null if the executed items don't belong to a trigger
+	 */
+	public TriggerFrame(final Event event, final @Nullable Trigger trigger) {
+		this.event = event;
+		if (trigger == null) {
+			slots = new Object[0];
+			localSlots = Collections.emptyMap();
+		} else {
+			slots = new Object[trigger.getSlotCount()];
+			localSlots = trigger.getLocalSlots();
+		}
+	}
+	
+	/**
+	 * @param e
+	 * @return The frame executing the given event on this thread, or null if the event is not being executed
+	 */
+	@Nullable
+	public static TriggerFrame of(final @Nullable Event e) {
+		TriggerFrame f = current.get();
+		while (f != null && f.event != e)
+			f = f.outer;
+		return f;
+	}
+	
+	/**
+	 * Suspends the execution of the given event so that it can be continued later, e.g. after a delay. The returned frame is {@link #isDelayed() delayed} and must be passed
+	 * to {@link TriggerItem#walk(TriggerItem, TriggerFrame)} to continue the execution with the same local variables and loops.
+	 * 
+	 * @param e The event being executed on this thread
+	 * @return The frame executing the event
+	 * @throws IllegalStateException If the event is not being executed on this thread
+	 */
+	public static TriggerFrame suspend(final Event e) {
+		final TriggerFrame f = of(e);
+		if (f == null)
+			throw new IllegalStateException("The event " + e + " is not being executed on this thread");
+		f.delayed = true;
+		return f;
+	}
+	
+	/**
+	 * Makes this frame the current frame of the calling thread. Must be followed by {@link #exit(TriggerFrame)} in a finally block.
+	 *
+	 * @return The previously current frame
+	 */
+	@Nullable
+	public TriggerFrame enter() {
+		final TriggerFrame previous = current.get();
+		if (previous != this) {
+			assert of(event) != this : "frame entered twice";
+			outer = previous;
+			current.set(this);
+		}
+		return previous;
+	}
+	
+	/**
+	 * @param previous The frame returned by {@link #enter()}
+	 */
+	public void exit(final @Nullable TriggerFrame previous) {
+		if (previous != this) {
+			assert current.get() == this;
+			current.set(previous);
+			outer = null;
+		}
+	}
+	
+	public Event getEvent() {
+		return event;
+	}
+	
+	@Nullable
+	public Object getSlot(final int slot) {
+		final Object[] slots = this.slots;
+		return slot < slots.length ? slots[slot] : null;
+	}
+	
+	/**
+	 * @param name A local variable's name in lower case
+	 * @return The slot holding the given local variable, or -1 if the variable is stored in {@link #getLocalVariables() the local variables map}
+	 */
+	public int getLocalSlot(final String name) {
+		final Integer slot = localSlots.get(name);
+		return slot == null ? -1 : slot;
+	}
+	
+	public void setSlot(final int slot, final @Nullable Object value) {
+		if (slot >= slots.length) // frames of items executed outside of triggers, e.g. effect commands
+			slots = Arrays.copyOf(slots, Math.max(slot + 1, 2 * slots.length));
+		slots[slot] = value;
+	}
+	
+	/**
+	 * @return Whether the execution has been delayed, i.e. whether the event has already passed
+	 */
+	public boolean isDelayed() {
+		return delayed;
+	}
+	
+	public void setDelayed() {
+		delayed = true;
+	}
+	
+	/**
+	 * @return The local variables as stored by {@link ch.njol.skript.variables.Variables}, or null if no local variable has been set yet
+	 */
+	@Nullable
+	public Object getLocalVariables() {
+		return localVariables;
+	}
+	
+	public void setLocalVariables(final Object localVariables) {
+		this.localVariables = localVariables;
+	}
+	
+}
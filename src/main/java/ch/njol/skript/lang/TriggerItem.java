@@ -79,30 +79,72 @@ public abstract class TriggerItem implements Debuggable {
 	protected abstract boolean run(Event e);
 	
 	/**
+	 * Executes the given item and the items following it in the frame currently executing the event, or in a new frame if the event is not being executed.
+	 * <p>
+	 * Use {@link #walk(TriggerItem, TriggerFrame)} with the frame returned by {@link TriggerFrame#suspend(Event)} to continue an execution later, e.g. after a delay.
+	 * 
 	 * @param start
 	 * @param e
 	 * @return false iff an exception occurred
 	 */
 	public final static boolean walk(final TriggerItem start, final Event e) {
 		assert start != null && e != null;
+		TriggerFrame frame = TriggerFrame.of(e);
+		if (frame == null)
+			frame = new TriggerFrame(e, start.getTrigger());
+		return walk(start, frame);
+	}
+	
+	/**
+	 * @param start
+	 * @param frame
+	 * @return false iff an exception occurred
+	 */
+	public final static boolean walk(final TriggerItem start, final TriggerFrame frame) {
+		assert start != null && frame != null;
+		final Trigger t = start.getTrigger();
+		final CompiledTrigger c = t == null ? null : t.getCompiled();
+		if (c != null) {
+			final int pc = c.indexOf(start);
+			if (pc != CompiledTrigger.NOT_COMPILED)
+				return c.execute(start, pc, frame);
+		}
+		final Event e = frame.getEvent();
 		TriggerItem i = start;
+		final TriggerFrame previous = frame.enter();
 		try {
 			while (i != null)
 				i = i.walk(e);
 			return true;
 		} catch (final StackOverflowError err) {
-			final Trigger t = start.getTrigger();
-			final File sc = t == null ? null : t.getScript();
-			Skript.adminBroadcast("<red>The script '<gold>" + (sc == null ? "<unknown>" : sc.getName()) + "<red>' infinitely (or excessively) repeated itself!");
-			if (Skript.debug())
-				err.printStackTrace();
+			walkFailed(start, i, err);
 		} catch (final Exception ex) {
-			if (ex.getStackTrace().length != 0) // empty exceptions have already been printed
-				Skript.exception(ex, i);
+			walkFailed(start, i, ex);
+		} finally {
+			frame.exit(previous);
 		}
 		return false;
 	}
 	
+	/**
+	 * Reports an error that stopped the execution of a trigger.
+	 * 
+	 * @param start The item the execution started at
+	 * @param current The item that was executing when the error occurred
+	 * @param t
+	 */
+	final static void walkFailed(final TriggerItem start, final @Nullable TriggerItem current, final Throwable t) {
+		if (t instanceof StackOverflowError) {
+			final Trigger tr = start.getTrigger();
+			final File sc = tr == null ? null : tr.getScript();
+			Skript.adminBroadcast("<red>The script '<gold>" + (sc == null ? "<unknown>" : sc.getName()) + "<red>' infinitely (or excessively) repeated itself!");
+			if (Skript.debug())
+				t.printStackTrace();
+		} else if (t.getStackTrace().length != 0) { // empty exceptions have already been printed
+			Skript.exception(t, current);
+		}
+	}
+	
 	/**
 	 * how much to indent each level
 	 */
@@ -51,11 +51,12 @@ public abstract class TriggerSection extends TriggerItem {
 	}
 	
 	protected TriggerSection(final SectionNode node) {
-		ScriptLoader.currentSections.add(this);
+		final List<TriggerSection> sections = ScriptLoader.getCurrentSections();
+		sections.add(this);
 		try {
 			setTriggerItems(ScriptLoader.loadItems(node));
 		} finally {
-			ScriptLoader.currentSections.remove(ScriptLoader.currentSections.size() - 1);
+			sections.remove(sections.size() - 1);
 		}
 	}
 	
@@ -65,12 +66,12 @@ public abstract class TriggerSection extends TriggerItem {
 	protected TriggerSection() {}
 	
 	/**
-	 * Remember to add this section to {@link ScriptLoader#currentSections} before parsing child elements!
+	 * Remember to add this section to {@link ScriptLoader#getCurrentSections()} before parsing child elements!
 	 * 
 	 * <pre>
-	 * ScriptLoader.currentSections.add(this);
+	 * ScriptLoader.getCurrentSections().add(this);
 	 * setTriggerItems(ScriptLoader.loadItems(node));
-	 * ScriptLoader.currentSections.remove(ScriptLoader.currentSections.size() - 1);
+	 * ScriptLoader.getCurrentSections().remove(ScriptLoader.getCurrentSections().size() - 1);
 	 * </pre>
 	 * 
 	 * @param items
@@ -86,6 +87,11 @@ public abstract class TriggerSection extends TriggerItem {
 		}
 	}
 	
+	@Nullable
+	TriggerItem getFirst() {
+		return first;
+	}
+	
 	@Override
 	public TriggerSection setNext(final @Nullable TriggerItem next) {
 		super.setNext(next);
@@ -30,11 +30,11 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
-import java.util.TreeMap;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 
+import ch.njol.skript.ScriptLoader;
 import ch.njol.skript.Skript;
 import ch.njol.skript.SkriptAPIException;
 import ch.njol.skript.SkriptConfig;
@@ -80,11 +80,27 @@ public class Variable<T> implements Expression<T> {
 	final boolean local;
 	private final boolean list;
 
+	/**
+	 * The {@link TriggerFrame} slot holding this variable if it is a local variable with a constant name that is not part of a list, -1 otherwise
+	 */
+	private final int slot;
+
+	/**
+	 * The name of the global variable used if this variable is not set, e.g. <tt>player::&lt;player&gt;</tt> for <tt>{player::%player%}</tt>
+	 */
+	private final String defaultName;
+
+	/**
+	 * Created when this variable is first accessed, i.e. after expressions in its name have been folded. May be created by several threads at once.
+	 */
+	@Nullable
+	private VariablePath variablePath = null;
+
 	@Nullable
 	private final Variable<?> source;
 
 	@SuppressWarnings("unchecked")
-	private Variable(final VariableString name, final Class<? extends T>[] types, final boolean local, final boolean list, final @Nullable Variable<?> source) {
+	private Variable(final VariableString name, final Class<? extends T>[] types, final boolean local, final boolean list, final int slot, final @Nullable Variable<?> source) {
 		assert name != null;
 		assert types != null && types.length > 0;
 
@@ -92,8 +108,10 @@ public class Variable<T> implements Expression<T> {
 
 		this.local = local;
 		this.list = list;
+		this.slot = slot;
 
 		this.name = name;
+		defaultName = (local ? LOCAL_VARIABLE_TOKEN : "") + name.getDefaultVariableName().toLowerCase(Locale.ENGLISH);
 
 		this.types = types;
 		this.superType = (Class<T>) Utils.getSuperType(types);
@@ -150,7 +168,11 @@ public class Variable<T> implements Expression<T> {
 		final VariableString vs = VariableString.newInstance(name.startsWith(LOCAL_VARIABLE_TOKEN) ? "" + name.substring(LOCAL_VARIABLE_TOKEN.length()).trim() : name, StringMode.VARIABLE_NAME);
 		if (vs == null)
 			return null;
-		return new Variable<T>(vs, types, name.startsWith(LOCAL_VARIABLE_TOKEN), name.endsWith(SEPARATOR + "*"), null);
+		final boolean local = name.startsWith(LOCAL_VARIABLE_TOKEN);
+		int slot = -1;
+		if (local && vs.isSimple() && !vs.getDefaultVariableName().contains(SEPARATOR)) // dynamic names and list elements are stored in the frame's variables map
+			slot = ScriptLoader.getLocalSlot("" + vs.getDefaultVariableName().toLowerCase(Locale.ENGLISH));
+		return new Variable<T>(vs, types, local, name.endsWith(SEPARATOR + "*"), slot, null);
 	}
 
 	@Override
@@ -190,7 +212,34 @@ public class Variable<T> implements Expression<T> {
 
 	@Override
 	public <R> Variable<R> getConvertedExpression(final Class<R>... to) {
-		return new Variable<R>(name, to, local, list, this);
+		return new Variable<R>(name, to, local, list, slot, this);
+	}
+
+	/**
+	 * @param e
+	 * @return This variable's name in lower case, split into the names of its lists. Must not be modified.
+	 */
+	private String[] getPath(final Event e) {
+		final String[] r = getVariablePath().get(e);
+		if (r != null)
+			return r;
+		return Variables.splitVariableName("" + name.toString(e).toLowerCase(Locale.ENGLISH));
+	}
+
+	private VariablePath getVariablePath() {
+		VariablePath p = variablePath;
+		if (p == null)
+			variablePath = p = new VariablePath(name);
+		return p;
+	}
+
+	/**
+	 * @param listPath The path of a list, see {@link #getPath(Event)}
+	 * @return A copy of the path, whose last element can be set to the list's elements' indices to get their paths
+	 */
+	private static String[] getElementPath(final String[] listPath) {
+		assert listPath.length > 1 && listPath[listPath.length - 1].equals("*");
+		return listPath.clone();
 	}
 
 	/**
@@ -198,12 +247,26 @@ public class Variable<T> implements Expression<T> {
 	 */
 	@Nullable
 	private Object getRaw(final Event e) {
-		final String n = name.toString(e).toLowerCase(Locale.ENGLISH);
-		if (n.endsWith(Variable.SEPARATOR + "*") != list) // prevents e.g. {%expr%} where "%expr%" ends with "::*" from returning a Map
-			return null;
-		final Object val = !list ? convertIfOldPlayer(n, e, Variables.getVariable(n, e, local)) : Variables.getVariable(n, e, local);
+		if (slot != -1) {
+			final Object val = Variables.getLocalVariable(slot, e);
+			if (val == null)
+				return Variables.getVariable(defaultName, e, false);
+			return convertIfOldPlayer(null, e, val);
+		}
+		final Object val;
+		final String[] p = getVariablePath().get(e);
+		if (p != null) {
+			if ((p.length > 1 && p[p.length - 1].equals("*")) != list) // prevents e.g. {%expr%} where "%expr%" is "*" from returning a Map
+				return null;
+			val = !list ? convertIfOldPlayer(p, e, Variables.getVariable(p, e, local)) : Variables.getVariable(p, e, local);
+		} else {
+			final String n = name.toString(e).toLowerCase(Locale.ENGLISH);
+			if (n.endsWith(Variable.SEPARATOR + "*") != list) // prevents e.g. {%expr%} where "%expr%" ends with "::*" from returning a Map
+				return null;
+			val = !list ? convertIfOldPlayer(null, e, Variables.getVariable(n, e, local)) : Variables.getVariable(n, e, local);
+		}
 		if (val == null)
-			return Variables.getVariable((local ? LOCAL_VARIABLE_TOKEN : "") + name.getDefaultVariableName().toLowerCase(Locale.ENGLISH), e, false);
+			return Variables.getVariable(defaultName, e, false);
 		return val;
 	}
 
@@ -216,7 +279,8 @@ public class Variable<T> implements Expression<T> {
 		if (val == null)
 			return Array.newInstance(types[0], 0);
 		final List<Object> l = new ArrayList<Object>();
-		final String name = StringUtils.substring(this.name.toString(e), 0, -1).toLowerCase(Locale.ENGLISH);
+		@Nullable
+		String[] elementPath = null;
 		for (final Entry<String, ?> v : ((Map<String, ?>) val).entrySet()) {
 			if (v.getKey() != null && v.getValue() != null) {
 				Object o;
@@ -224,7 +288,13 @@ public class Variable<T> implements Expression<T> {
 					o = ((Map<String, ?>) v.getValue()).get(null);
 				else
 					o = v.getValue();
-				l.add(convertIfOldPlayer(name + v.getKey(), e, o));
+				if (o instanceof Player) { // only needed to fix players
+					if (elementPath == null)
+						elementPath = getElementPath(getPath(e));
+					elementPath[elementPath.length - 1] = v.getKey();
+					o = convertIfOldPlayer(elementPath, e, o);
+				}
+				l.add(o);
 			}
 		}
 		return l.toArray();
@@ -240,12 +310,12 @@ public class Variable<T> implements Expression<T> {
 
 	//todo: is this needed with sponge???
 	@SuppressWarnings({"deprecation"})
-	@Nullable Object convertIfOldPlayer(String key, Event event, @Nullable Object t){
+	@Nullable Object convertIfOldPlayer(@Nullable String[] path, Event event, @Nullable Object t){
 		if(false && SkriptConfig.enablePlayerVariableFix.value() && t != null && t instanceof Player){
 			Player p = (Player) t;
 			/*if(!p.isValid() && p.isOnline()){
 				Player player = uuidSupported ? Bukkit.getPlayer(p.getUniqueId()) : Bukkit.getPlayerExact(p.getName());
-				Variables.setVariable(key, player, event, local);
+				Variables.setVariable(path != null ? path : getPath(event), player, event, local);
 				return player;
 			}*/
 		}
@@ -255,14 +325,10 @@ public class Variable<T> implements Expression<T> {
 	public Iterator<Pair<String, Object>> variablesIterator(final Event e) {
 		if (!list)
 			throw new SkriptAPIException("Looping a non-list variable");
-		final String name = StringUtils.substring(this.name.toString(e), 0, -1).toLowerCase(Locale.ENGLISH);
-		final Object val = Variables.getVariable(name + "*", e, local);
-		if (val == null)
+		final String[] path = getElementPath(getPath(e));
+		final Iterator<Entry<String, Object>> elements = Variables.getListIterator(path, e, local);
+		if (elements == null)
 			return new EmptyIterator<Pair<String, Object>>();
-		assert val instanceof TreeMap;
-		// temporary list to prevent CMEs
-		@SuppressWarnings("unchecked")
-		final Iterator<String> keys = new ArrayList<String>(((Map<String, Object>) val).keySet()).iterator();
 		return new Iterator<Pair<String, Object>>() {
 			@Nullable
 			private String key;
@@ -273,13 +339,13 @@ public class Variable<T> implements Expression<T> {
 			public boolean hasNext() {
 				if (next != null)
 					return true;
-				while (keys.hasNext()) {
-					key = keys.next();
-					if (key != null) {
-						next = convertIfOldPlayer(name + key, e, Variables.getVariable(name + key, e, local));
-						if (next != null && !(next instanceof TreeMap))
-							return true;
-					}
+				while (elements.hasNext()) {
+					final Entry<String, Object> element = elements.next();
+					key = element.getKey();
+					path[path.length - 1] = element.getKey();
+					next = convertIfOldPlayer(path, e, element.getValue());
+					if (next != null && !(next instanceof Map))
+						return true;
 				}
 				next = null;
 				return false;
@@ -305,17 +371,11 @@ public class Variable<T> implements Expression<T> {
 	public Iterator<T> iterator(final Event e) {
 		if (!list)
 			throw new SkriptAPIException("");
-		final String name = StringUtils.substring(this.name.toString(e), 0, -1).toLowerCase(Locale.ENGLISH);
-		final Object val = Variables.getVariable(name + "*", e, local);
-		if (val == null)
+		final String[] path = getElementPath(getPath(e));
+		final Iterator<Entry<String, Object>> elements = Variables.getListIterator(path, e, local);
+		if (elements == null)
 			return new EmptyIterator<T>();
-		assert val instanceof TreeMap;
-		// temporary list to prevent CMEs
-		@SuppressWarnings("unchecked")
-		final Iterator<String> keys = new ArrayList<String>(((Map<String, Object>) val).keySet()).iterator();
 		return new Iterator<T>() {
-			@Nullable
-			private String key;
 			@Nullable
 			private T next = null;
 
@@ -324,14 +384,13 @@ public class Variable<T> implements Expression<T> {
 			public boolean hasNext() {
 				if (next != null)
 					return true;
-				while (keys.hasNext()) {
-					key = keys.next();
-					if (key != null) {
-						next = Converters.convert(Variables.getVariable(name + key, e, local), types);
-						next = (T) convertIfOldPlayer(name + key, e, next);
-						if (next != null && !(next instanceof TreeMap))
-							return true;
-					}
+				while (elements.hasNext()) {
+					final Entry<String, Object> element = elements.next();
+					path[path.length - 1] = element.getKey();
+					next = Converters.convert(element.getValue(), types);
+					next = (T) convertIfOldPlayer(path, e, next);
+					if (next != null && !(next instanceof Map))
+						return true;
 				}
 				next = null;
 				return false;
@@ -366,7 +425,15 @@ public class Variable<T> implements Expression<T> {
 	}
 
 	private final void set(final Event e, final @Nullable Object value) {
-		Variables.setVariable("" + name.toString(e).toLowerCase(Locale.ENGLISH), value, e, local);
+		if (slot != -1) {
+			Variables.setLocalVariable(slot, value, e);
+			return;
+		}
+		final String[] p = getVariablePath().get(e);
+		if (p != null)
+			Variables.setVariable(p, value, e, local);
+		else
+			Variables.setVariable("" + name.toString(e).toLowerCase(Locale.ENGLISH), value, e, local);
 	}
 
 	private final void setIndex(final Event e, final String index, final @Nullable Object value) {
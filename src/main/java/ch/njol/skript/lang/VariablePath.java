@@ -0,0 +1,108 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.lang;
+
+import java.util.List;
+import java.util.Locale;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.spongepowered.api.event.Event;
+
+/**
+ * A variable's name split into the names of its lists, e.g. <tt>{data::%player%::coins}</tt> into <tt>data</tt>, <tt>%player%</tt> and <tt>coins</tt>.
+ * <p>
+ * Parts without expressions are converted to lower case once, and the variable is looked up by its path in the variables tree, i.e. without building, converting and
+ * splitting its whole name every time it is accessed.
+ *
+ * @see ch.njol.skript.variables.Variables#getVariable(String[], Event, boolean)
+ */
+final class VariablePath {
+	
+	/**
+	 * Each part is either a String in lower case or a {@link VariableString}
+	 */
+	private final Object[] parts;
+	
+	/**
+	 * The path if the name does not contain any expressions
+	 */
+	@Nullable
+	private final String[] constant;
+	
+	/**
+	 * Whether the name has an empty part, which would be removed or kept by splitting depending on its position
+	 */
+	private final boolean hasEmptyPart;
+	
+	VariablePath(final VariableString name) {
+		final List<Object> parts = name.split(Variable.SEPARATOR);
+		this.parts = new Object[parts.size()];
+		boolean constant = true, hasEmptyPart = false;
+		for (int i = 0; i < this.parts.length; i++) {
+			final Object p = parts.get(i);
+			if (p instanceof String) {
+				this.parts[i] = ((String) p).toLowerCase(Locale.ENGLISH).intern();
+				hasEmptyPart |= ((String) p).isEmpty();
+			} else {
+				this.parts[i] = p;
+				constant = false;
+			}
+		}
+		if (constant) {
+			final String[] c = new String[this.parts.length];
+			System.arraycopy(this.parts, 0, c, 0, c.length);
+			this.constant = c;
+		} else {
+			this.constant = null;
+		}
+		this.hasEmptyPart = hasEmptyPart;
+	}
+	
+	/**
+	 * @param e
+	 * @return The variable's path in lower case, or null if the path has to be found by splitting the whole name, e.g. if an expression's value contains the separator or
+	 *         is empty. Must not be modified.
+	 */
+	@Nullable
+	String[] get(final Event e) {
+		if (hasEmptyPart)
+			return null;
+		final String[] constant = this.constant;
+		if (constant != null)
+			return constant;
+		final Object[] parts = this.parts;
+		final String[] path = new String[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			final Object p = parts[i];
+			if (p instanceof String) {
+				path[i] = (String) p;
+			} else {
+				final String s = ((VariableString) p).toString(e).toLowerCase(Locale.ENGLISH);
+				if (s.isEmpty() || s.contains(Variable.SEPARATOR))
+					return null;
+				path[i] = s;
+			}
+		}
+		return path;
+	}
+	
+}
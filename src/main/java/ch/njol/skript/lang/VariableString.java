@@ -70,7 +70,7 @@ public class VariableString implements Expression<String> {
 			this.expr = expr;
 		}
 		
-		final Expression<?> expr;
+		Expression<?> expr;
 		int flags = 0;
 		boolean toChatStyle = false;
 	}
@@ -259,10 +259,18 @@ public class VariableString implements Expression<String> {
 	}
 	
 	private static void checkVariableConflicts(final String name, final StringMode mode, final @Nullable Iterable<Object> string) {
-		if (mode != StringMode.VARIABLE_NAME || variableNames.containsKey(name))
+		if (mode != StringMode.VARIABLE_NAME)
+			return;
+		synchronized (variableNames) { // scripts may be parsed in parallel
+			checkVariableConflicts_i(name, string);
+		}
+	}
+	
+	private static void checkVariableConflicts_i(final String name, final @Nullable Iterable<Object> string) {
+		if (variableNames.containsKey(name))
 			return;
 		if (name.startsWith("%")) {// inside the if to only print this message once per variable
-			final Config script = ScriptLoader.currentScript;
+			final Config script = ScriptLoader.getCurrentScript();
 			if (script != null)
 				Skript.warning("Starting a variable's name with an expression is discouraged ({" + name + "}). You could prefix it with the script's name: {" + StringUtils.substring(script.getFileName(), 0, -3) + "." + name + "}");
 		}
@@ -351,6 +359,22 @@ public class VariableString implements Expression<String> {
 		return strings;
 	}
 	
+	/**
+	 * The builder used by {@link #toString(Event)} on each thread. Strings built while another string is being built on the same thread (e.g. the name of a variable used
+	 * in a message) use a new builder.
+	 */
+	private final static ThreadLocal<StringBuilder> builders = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder();
+		}
+	};
+	
+	/**
+	 * Builders that grew larger than this are not kept
+	 */
+	private final static int MAX_BUILDER_CAPACITY = 1024;
+	
 	/**
 	 * Parses all expressions in the string and returns it.
 	 * 
@@ -362,45 +386,75 @@ public class VariableString implements Expression<String> {
 			assert simple != null;
 			return simple;
 		}
+		final StringBuilder b = builders.get();
+		if (b.length() != 0) // already in use
+			return build(e, new StringBuilder());
+		try {
+			return build(e, b);
+		} finally {
+			b.setLength(0);
+			if (b.capacity() > MAX_BUILDER_CAPACITY)
+				builders.remove();
+		}
+	}
+	
+	private String build(final Event e, final StringBuilder b) {
 		final Object[] string = this.string;
 		assert string != null;
-		final StringBuilder b = new StringBuilder();
+		@Nullable
+		ChatColor lastColor = null;
+		int colorsChecked = 0;
 		for (int i = 0; i < string.length; i++) {
 			final Object o = string[i];
 			if (o instanceof Expression<?>) {
 				assert mode != StringMode.MESSAGE;
-				b.append(Classes.toString(((Expression<?>) o).getArray(e), true, mode));
+				final Expression<?> expr = (Expression<?>) o;
+				if (expr.isSingle())
+					Classes.appendString(b, expr.getSingle(e), mode, 0);
+				else
+					Classes.appendString(b, expr.getArray(e), true, null, mode, 0);
 			} else if (o instanceof ExpressionInfo) {
 				assert mode == StringMode.MESSAGE;
 				final ExpressionInfo info = (ExpressionInfo) o;
 				int flags = info.flags;
 				if ((flags & Language.F_PLURAL) == 0 && b.length() > 0 && Math.abs(StringUtils.numberBefore(b, b.length() - 1)) != 1)
 					flags |= Language.F_PLURAL;
+				lastColor = getLastColor(b, colorsChecked, lastColor);
+				colorsChecked = b.length();
 				if (info.toChatStyle) {
-					final String s = Classes.toString(info.expr.getArray(e), flags, getLastColor(b));
+					final String s = Classes.toString(info.expr.getArray(e), flags, lastColor);
 					final String style = Utils.getChatStyle(s);
 					b.append(style == null ? "<" + s + ">" : style);
+				} else if (info.expr.isSingle()) {
+					Classes.appendString(b, info.expr.getSingle(e), StringMode.MESSAGE, flags);
 				} else {
-					b.append(Classes.toString(info.expr.getArray(e), flags, getLastColor(b)));
+					Classes.appendString(b, info.expr.getArray(e), true, lastColor, StringMode.MESSAGE, flags);
 				}
 			} else {
-				b.append(o);
+				b.append((String) o);
 			}
 		}
 		return "" + b.toString();
 	}
-
-	//todo
+	
+	/**
+	 * Finds the last color in the given string without checking the part of the string that has already been checked.
+	 * 
+	 * @param s
+	 * @param checked The length of the part of the string that has already been checked
+	 * @param lastColor The last color of that part
+	 * @return The last color or reset code in the given string
+	 */
 	@Nullable
-	private final static ChatColor getLastColor(final CharSequence s) {
-		for (int i = s.length() - 2; i >= 0; i--) {
+	private final static ChatColor getLastColor(final CharSequence s, final int checked, final @Nullable ChatColor lastColor) {
+		for (int i = s.length() - 2; i >= checked - 1 && i >= 0; i--) {
 			if (s.charAt(i) == ChatColor.COLOR_CHAR) {
 				final ChatColor c = ChatColor.getByChar(s.charAt(i + 1));
 				if (c != null && (c.isColor() || c == ChatColor.RESET))
 					return c;
 			}
 		}
-		return null;
+		return lastColor;
 	}
 	
 	@Override
@@ -585,9 +639,81 @@ public class VariableString implements Expression<String> {
 		return e;
 	}
 	
+	/**
+	 * Splits this string at each occurrence of the given separator outside of expressions, e.g. splits a variable's name into the names of its lists.
+	 * <p>
+	 * The returned variable strings share this string's expressions, and should only be used to build the parts' strings.
+	 * 
+	 * @param separator
+	 * @return The parts of this string, each either a String if it does not contain any expressions or a VariableString
+	 */
+	List<Object> split(final String separator) {
+		final List<Object> parts = new ArrayList<Object>();
+		final Object[] string = isSimple ? new Object[] {simple} : this.string;
+		assert string != null;
+		List<Object> part = new ArrayList<Object>();
+		for (final Object o : string) {
+			if (o instanceof String) {
+				final String s = (String) o;
+				int start = 0, i;
+				while ((i = s.indexOf(separator, start)) != -1) {
+					if (i != start)
+						part.add(s.substring(start, i));
+					parts.add(toPart(part));
+					part = new ArrayList<Object>();
+					start = i + separator.length();
+				}
+				if (start != s.length())
+					part.add(s.substring(start));
+			} else {
+				assert !(o instanceof ExpressionInfo) : this;
+				part.add(o);
+			}
+		}
+		parts.add(toPart(part));
+		return parts;
+	}
+	
+	private Object toPart(final List<Object> part) {
+		if (part.isEmpty())
+			return "";
+		if (part.size() == 1 && part.get(0) instanceof String)
+			return part.get(0);
+		final Object[] p = part.toArray();
+		assert p != null;
+		return new VariableString(orig, p, mode);
+	}
+	
+	/**
+	 * Folds the expressions in this string, see {@link ConstantFolder}.
+	 */
+	void foldParts(final ConstantFolder folder) {
+		final Object[] string = this.string;
+		if (string == null)
+			return;
+		for (int i = 0; i < string.length; i++) {
+			final Object o = string[i];
+			if (o instanceof Expression)
+				string[i] = folder.fold((Expression<?>) o);
+			else if (o instanceof ExpressionInfo)
+				((ExpressionInfo) o).expr = folder.fold(((ExpressionInfo) o).expr);
+		}
+	}
+	
+	/**
+	 * @return A simple string if all expressions in this string are literals, this string otherwise
+	 */
+	@SuppressWarnings("null")
 	@Override
 	public Expression<String> simplify() {
-		return this;
+		final Object[] string = this.string;
+		if (isSimple || string == null)
+			return this;
+		for (final Object o : string) {
+			if (o instanceof Expression && !(o instanceof Literal) || o instanceof ExpressionInfo && !(((ExpressionInfo) o).expr instanceof Literal))
+				return this;
+		}
+		return new VariableString(toString(null));
 	}
 	
 	/* REMIND allow special characters?
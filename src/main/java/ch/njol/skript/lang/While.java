@@ -58,6 +58,10 @@ public class While extends TriggerSection {
 	@Nullable
 	private TriggerItem actualNext;
 	
+	Condition getCondition() {
+		return c;
+	}
+	
 	@Override
 	public While setNext(final @Nullable TriggerItem next) {
 		actualNext = next;
@@ -61,8 +61,20 @@ public abstract class Functions {
 		}
 	}
 	
+	/**
+	 * The function that is currently being parsed on each thread
+	 */
+	final static ThreadLocal<ScriptFunction<?>> currentFunction = new ThreadLocal<ScriptFunction<?>>();
+	
+	/**
+	 * Replaces the former field <tt>currentFunction</tt>.
+	 * 
+	 * @return The function that is currently being parsed, or null if no function is being parsed
+	 */
 	@Nullable
-	public static ScriptFunction<?> currentFunction = null;
+	public static ScriptFunction<?> getCurrentFunction() {
+		return currentFunction.get();
+	}
 	
 	final static Map<String, JavaFunction<?>> javaFunctions = new HashMap<String, JavaFunction<?>>();
 	final static Map<String, FunctionData> functions = new HashMap<String, FunctionData>();
@@ -85,7 +97,9 @@ public abstract class Functions {
 	final static void registerCaller(final FunctionReference<?> r) {
 		final FunctionData d = functions.get(r.functionName);
 		assert d != null;
-		d.calls.add(r);
+		synchronized (d.calls) { // scripts that call functions are parsed in parallel
+			d.calls.add(r);
+		}
 	}
 	
 	public final static String functionNamePattern = "[\\p{IsAlphabetic}][\\p{IsAlphabetic}\\p{IsDigit}_]*";
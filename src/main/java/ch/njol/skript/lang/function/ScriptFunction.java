@@ -28,10 +28,10 @@ import ch.njol.skript.classes.ClassInfo;
 import ch.njol.skript.config.SectionNode;
 import ch.njol.skript.effects.EffReturn;
 import ch.njol.skript.lang.Trigger;
+import ch.njol.skript.lang.TriggerFrame;
 import ch.njol.skript.lang.function.Functions.FunctionData;
 import ch.njol.skript.lang.util.SimpleEvent;
 import ch.njol.skript.variables.Variables;
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.spongepowered.api.event.Event;
 
 /**
@@ -41,18 +41,17 @@ public class ScriptFunction<T> extends Function<T> {
 	
 	final Trigger trigger;
 	
-	@SuppressFBWarnings("ST_WRITE_TO_STATIC_FROM_INSTANCE_METHOD")
 	public ScriptFunction(final String name, final Parameter<?>[] parameters, final SectionNode node, @Nullable final ClassInfo<T> returnType, final boolean single) {
 		super(name, parameters, returnType, single);
 		
 		// here to allow recursion
 		Functions.functions.put(name, new FunctionData(this));
 		
-		Functions.currentFunction = this;
+		Functions.currentFunction.set(this);
 		try {
 			trigger = new Trigger(node.getConfig().getFile(), "function " + name, new SimpleEvent(), ScriptLoader.loadItems(node));
 		} finally {
-			Functions.currentFunction = null;
+			Functions.currentFunction.remove();
 		}
 	}
 	
@@ -77,18 +76,25 @@ public class ScriptFunction<T> extends Function<T> {
 	@Override
 	@Nullable
 	public T[] execute(final Event e, final Object[][] params) {
-		for (int i = 0; i < parameters.length; i++) {
-			final Parameter<?> p = parameters[i];
-			final Object[] val = params[i];
-			if (p.single) {
-				Variables.setVariable(p.name, val[0], e, true);
-			} else {
-				for (int j = 0; j < val.length; j++) {
-					Variables.setVariable(p.name + "::" + (j + 1), val[j], e, true);
+		// parameters are local variables of the frame the trigger will be executed in
+		final TriggerFrame frame = new TriggerFrame(e, trigger);
+		final TriggerFrame previous = frame.enter();
+		try {
+			for (int i = 0; i < parameters.length; i++) {
+				final Parameter<?> p = parameters[i];
+				final Object[] val = params[i];
+				if (p.single) {
+					Variables.setVariable(p.name, val[0], e, true);
+				} else {
+					for (int j = 0; j < val.length; j++) {
+						Variables.setVariable(p.name + "::" + (j + 1), val[j], e, true);
+					}
 				}
 			}
+			trigger.execute(frame);
+		} finally {
+			frame.exit(previous);
 		}
-		trigger.execute(e);
 		returnValueSet = false;
 		return returnValue;
 	}
@@ -22,7 +22,10 @@
 package ch.njol.skript.lang.util;
 
 import java.lang.reflect.Array;
+import java.lang.reflect.Method;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.jdt.annotation.Nullable;
 
@@ -58,12 +61,115 @@ public abstract class SimpleExpression<T> implements Expression<T> {
 	@Override
 	@Nullable
 	public final T getSingle(final Event e) {
-		final T[] all = getArray(e);
-		if (all.length == 0)
+		return getSingleValue(e);
+	}
+	
+	/**
+	 * Gets the single value of this expression, used by {@link #getSingle(Event)}.
+	 * <p>
+	 * The default implementation gets the value from {@link #get(Event)}. Expressions can override this method if they can determine their value without creating an array,
+	 * but must then call this implementation if they are not {@link #isSingle() single}.
+	 * 
+	 * @param e
+	 * @return The value of this expression, or null if it has no value
+	 * @throws SkriptAPIException If this expression is not single and has more than one value
+	 */
+	@Nullable
+	protected T getSingleValue(final Event e) {
+		final T[] all = get(e);
+		if (all == null)
 			return null;
-		if (all.length > 1)
-			throw new SkriptAPIException("Call to getSingle() on a non-single expression");
-		return all[0];
+		@Nullable
+		T single = null;
+		int numNonNull = 0;
+		for (final T t : all) {
+			if (t != null) {
+				if (single == null)
+					single = t;
+				numNonNull++;
+			}
+		}
+		if (numNonNull <= 1)
+			return single;
+		if (!getAnd()) {
+			int rand = Utils.random(0, numNonNull);
+			for (final T t : all) {
+				if (t != null && rand-- == 0)
+					return t;
+			}
+			assert false;
+		}
+		throw new SkriptAPIException("Call to getSingle() on a non-single expression");
+	}
+	
+	/**
+	 * Whether {@link #get(Event)} may return arrays that contain null elements. Expressions that never return nulls should return false to skip checking their values for nulls.
+	 * 
+	 * @return true by default
+	 */
+	protected boolean mayReturnNulls() {
+		return true;
+	}
+	
+	@Nullable
+	private T[] emptyArray = null;
+	
+	/**
+	 * @return An empty array of this expression's return type. The same array is returned on each call as long as the return type doesn't change.
+	 */
+	@SuppressWarnings("unchecked")
+	protected final T[] emptyArray() {
+		T[] r = emptyArray;
+		final Class<? extends T> type = getReturnType();
+		if (r == null || r.getClass().getComponentType() != type)
+			emptyArray = r = (T[]) Array.newInstance(type, 0);
+		assert r != null;
+		return r;
+	}
+	
+	/**
+	 * Results of {@link #declaresMethod(Class, String)} by expression class and base class and method name, as it is called for every new expression.
+	 */
+	private final static ConcurrentMap<Class<?>, ConcurrentMap<String, Boolean>> declaredMethods = new ConcurrentHashMap<Class<?>, ConcurrentMap<String, Boolean>>();
+	
+	/**
+	 * @param base A superclass of this expression's class
+	 * @param name
+	 * @return Whether this expression's class or any of its superclasses below the given class declares a method with the given name
+	 */
+	protected final boolean declaresMethod(final Class<?> base, final String name) {
+		ConcurrentMap<String, Boolean> results = declaredMethods.get(getClass());
+		if (results == null) {
+			results = new ConcurrentHashMap<String, Boolean>();
+			final ConcurrentMap<String, Boolean> old = declaredMethods.putIfAbsent(getClass(), results);
+			if (old != null)
+				results = old;
+		}
+		final String key = base.getName() + "#" + name;
+		Boolean r = results.get(key);
+		if (r == null) {
+			r = Boolean.FALSE;
+			outer: for (Class<?> c = getClass(); c != base && c != null; c = c.getSuperclass()) {
+				for (final Method m : c.getDeclaredMethods()) {
+					if (m.getName().equals(name)) {
+						r = Boolean.TRUE;
+						break outer;
+					}
+				}
+			}
+			results.put(key, r);
+		}
+		return r;
+	}
+	
+	private int countNonNull(final T[] all) {
+		if (!mayReturnNulls())
+			return all.length;
+		int numNonNull = 0;
+		for (final T t : all)
+			if (t != null)
+				numNonNull++;
+		return numNonNull;
 	}
 	
 	/**
@@ -75,17 +181,11 @@ public abstract class SimpleExpression<T> implements Expression<T> {
 	@Override
 	public T[] getAll(final Event e) {
 		final T[] all = get(e);
-		if (all == null) {
-			final T[] r = (T[]) Array.newInstance(getReturnType(), 0);
-			assert r != null;
-			return r;
-		}
+		if (all == null)
+			return emptyArray();
 		if (all.length == 0)
 			return all;
-		int numNonNull = 0;
-		for (final T t : all)
-			if (t != null)
-				numNonNull++;
+		final int numNonNull = countNonNull(all);
 		if (numNonNull == all.length)
 			return all;
 		final T[] r = (T[]) Array.newInstance(getReturnType(), numNonNull);
@@ -101,18 +201,12 @@ public abstract class SimpleExpression<T> implements Expression<T> {
 	@Override
 	public final T[] getArray(final Event e) {
 		final T[] all = get(e);
-		if (all == null) {
-			final T[] r = (T[]) Array.newInstance(getReturnType(), 0);
-			assert r != null;
-			return r;
-		}
+		if (all == null)
+			return emptyArray();
 		if (all.length == 0)
 			return all;
 		
-		int numNonNull = 0;
-		for (final T t : all)
-			if (t != null)
-				numNonNull++;
+		final int numNonNull = countNonNull(all);
 		
 		if (!getAnd()) {
 			if (all.length == 1 && all[0] != null)
@@ -245,7 +339,7 @@ public abstract class SimpleExpression<T> implements Expression<T> {
 	 */
 	@Override
 	public boolean setTime(final int time) {
-		if (ScriptLoader.hasDelayBefore == Kleenean.TRUE && time != 0) {
+		if (ScriptLoader.getHasDelayBefore() == Kleenean.TRUE && time != 0) {
 			Skript.error("Can't use time states after the event has already passed");
 			return false;
 		}
@@ -254,7 +348,7 @@ public abstract class SimpleExpression<T> implements Expression<T> {
 	}
 	
 	protected final boolean setTime(final int time, final Class<? extends Event> applicableEvent, final Expression<?>... mustbeDefaultVars) {
-		if (ScriptLoader.hasDelayBefore == Kleenean.TRUE && time != 0) {
+		if (ScriptLoader.getHasDelayBefore() == Kleenean.TRUE && time != 0) {
 			Skript.error("Can't use time states after the event has already passed");
 			return false;
 		}
@@ -270,7 +364,7 @@ public abstract class SimpleExpression<T> implements Expression<T> {
 	}
 	
 	protected final boolean setTime(final int time, final Expression<?> mustbeDefaultVar, final Class<? extends Event>... applicableEvents) {
-		if (ScriptLoader.hasDelayBefore == Kleenean.TRUE && time != 0) {
+		if (ScriptLoader.getHasDelayBefore() == Kleenean.TRUE && time != 0) {
 			Skript.error("Can't use time states after the event has already passed");
 			return false;
 		}
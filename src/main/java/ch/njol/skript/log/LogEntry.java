@@ -108,6 +108,13 @@ public class LogEntry {
 		return toString();
 	}
 	
+	/**
+	 * @return A new entry with the same contents as this one, to log a message again
+	 */
+	public LogEntry copy() {
+		return new LogEntry(level, quality, message, node, tracked);
+	}
+	
 	private boolean used = false;
 	
 	void discarded(final String info) {
@@ -148,6 +148,14 @@ public class RetainingLogHandler extends LogHandler {
 		SkriptLogger.logAll(log);
 	}
 	
+	/**
+	 * Stops retaining messages without printing the retained ones, which allows to print them later with {@link #printLog()} on another thread than the one that logged
+	 * them.
+	 */
+	public final void detach() {
+		SkriptLogger.removeHandler(this);
+	}
+	
 	public boolean hasErrors() {
 		return numErrors != 0;
 	}
@@ -39,8 +39,10 @@ public abstract class SkriptLogger {
 	@SuppressWarnings("null")
 	public final static Level SEVERE = Level.SEVERE;
 	
-	@Nullable
-	private static Node node = null;
+	/**
+	 * The node that is currently being parsed on each thread
+	 */
+	private final static ThreadLocal<Node> node = new ThreadLocal<Node>();
 	
 	private static Verbosity verbosity = Verbosity.NORMAL;
 	
@@ -55,7 +57,15 @@ public abstract class SkriptLogger {
 	@SuppressWarnings("null")
 	public final static Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME); // todo: use sponge logger
 	
-	private final static HandlerList handlers = new HandlerList();
+	/**
+	 * The log handlers of each thread, as each thread that parses scripts handles its own messages
+	 */
+	private final static ThreadLocal<HandlerList> handlers = new ThreadLocal<HandlerList>() {
+		@Override
+		protected HandlerList initialValue() {
+			return new HandlerList();
+		}
+	};
 	
 	/**
 	 * Shorthand for <tt>{@link #startLogHandler(LogHandler) startLogHandler}(new {@link RetainingLogHandler}());</tt>
@@ -100,11 +110,12 @@ public abstract class SkriptLogger {
 	 * @see RedirectingLogHandler
 	 */
 	public final static <T extends LogHandler> T startLogHandler(final T h) {
-		handlers.add(h);
+		handlers.get().add(h);
 		return h;
 	}
 	
 	final static void removeHandler(final LogHandler h) {
+		final HandlerList handlers = SkriptLogger.handlers.get();
 		if (!handlers.contains(h))
 			return;
 		if (!h.equals(handlers.remove())) {
@@ -116,7 +127,7 @@ public abstract class SkriptLogger {
 	}
 	
 	final static boolean isStopped(final LogHandler h) {
-		return !handlers.contains(h);
+		return !handlers.get().contains(h);
 	}
 	
 	@Nullable
@@ -135,12 +146,15 @@ public abstract class SkriptLogger {
 	}
 	
 	public static void setNode(final @Nullable Node node) {
-		SkriptLogger.node = node == null || node.getParent() == null ? null : node;
+		if (node == null || node.getParent() == null)
+			SkriptLogger.node.remove();
+		else
+			SkriptLogger.node.set(node);
 	}
 	
 	@Nullable
 	public static Node getNode() {
-		return node;
+		return node.get();
 	}
 	
 	/**
@@ -162,15 +176,16 @@ public abstract class SkriptLogger {
 	 * @see Skript#debug()
 	 */
 	public static void log(final Level level, final String message) {
-		log(new LogEntry(level, message, node));
+		log(new LogEntry(level, message, getNode()));
 	}
 	
 	public static void log(final @Nullable LogEntry entry) {
 		if (entry == null)
 			return;
+		final Node node = getNode();
 		if (Skript.testing() && node != null && node.debug())
 			System.out.print("---> " + entry.level + "/" + ErrorQuality.get(entry.quality) + ": " + entry.getMessage() + " ::" + LogEntry.findCaller());
-		for (final LogHandler h : handlers) {
+		for (final LogHandler h : handlers.get()) {
 			final LogResult r = h.log(entry);
 			switch (r) {
 				case CACHED:
@@ -195,7 +210,7 @@ public abstract class SkriptLogger {
 	}
 	
 	public static void logTracked(final Level level, final String message, final ErrorQuality quality) {
-		log(new LogEntry(level, quality.quality(), message, node, true));
+		log(new LogEntry(level, quality.quality(), message, getNode(), true));
 	}
 	
 	/**
@@ -0,0 +1,81 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.registrations;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Caches a value for each pair of classes, e.g. the comparator between two classes. Values are resolved with {@link #resolve(Class, Class)} on the first lookup of a pair,
+ * and can be null to denote that no value exists.
+ * <p>
+ * The cache is safe to use from multiple threads, and a lookup of a cached pair doesn't allocate any objects. A value may be resolved more than once if several threads
+ * look up the same pair at the same time, thus resolving must not have any side effects.
+ */
+abstract class ClassPairCache<V> {
+	
+	/**
+	 * Stored for pairs without a value, as the maps cannot contain null
+	 */
+	private final static Object NONE = new Object();
+	
+	private final ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, Object>> cache = new ConcurrentHashMap<Class<?>, ConcurrentMap<Class<?>, Object>>();
+	
+	/**
+	 * @param first
+	 * @param second
+	 * @return The value for the given classes, or null if none exists
+	 */
+	@Nullable
+	protected abstract V resolve(Class<?> first, Class<?> second);
+	
+	@SuppressWarnings("unchecked")
+	@Nullable
+	public final V get(final Class<?> first, final Class<?> second) {
+		ConcurrentMap<Class<?>, Object> values = cache.get(first);
+		if (values == null) {
+			values = new ConcurrentHashMap<Class<?>, Object>();
+			final ConcurrentMap<Class<?>, Object> old = cache.putIfAbsent(first, values);
+			if (old != null)
+				values = old;
+		}
+		Object v = values.get(second);
+		if (v == null) {
+			final V r = resolve(first, second);
+			v = r == null ? NONE : r;
+			final Object old = values.putIfAbsent(second, v);
+			if (old != null)
+				v = old;
+		}
+		return v == NONE ? null : (V) v;
+	}
+	
+	/**
+	 * Forgets all cached values. Must be called whenever a value that {@link #resolve(Class, Class)} might return is registered.
+	 */
+	public final void clear() {
+		cache.clear();
+	}
+	
+}
@@ -34,7 +34,9 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import org.bukkit.Bukkit;
@@ -78,9 +80,19 @@ public abstract class Classes {
 	private static ClassInfo<?>[] classInfos = null;
 	private final static List<ClassInfo<?>> tempClassInfos = new ArrayList<ClassInfo<?>>();
 	private final static HashMap<Class<?>, ClassInfo<?>> exactClassInfos = new HashMap<Class<?>, ClassInfo<?>>();
-	private final static HashMap<Class<?>, ClassInfo<?>> superClassInfos = new HashMap<Class<?>, ClassInfo<?>>();
+	/**
+	 * Filled lazily by {@link #getSuperClassInfo(Class)}, which is called while scripts are parsed on several threads
+	 */
+	private final static Map<Class<?>, ClassInfo<?>> superClassInfos = new ConcurrentHashMap<Class<?>, ClassInfo<?>>();
 	private final static HashMap<String, ClassInfo<?>> classInfosByCodeName = new HashMap<String, ClassInfo<?>>();
 	
+	/**
+	 * The class info used to convert instances of a class to strings, i.e. the first class info with a parser that the class is a subclass of, or {@link #NO_PARSER}.
+	 * Accessed concurrently as strings are built on any thread.
+	 */
+	private final static Map<Class<?>, Object> parserClassInfos = new ConcurrentHashMap<Class<?>, Object>();
+	private final static Object NO_PARSER = new Object();
+	
 	/**
 	 * @param info info about the class to register
 	 */
@@ -575,17 +587,38 @@ public abstract class Classes {
 			}
 			return "[" + b.toString() + "]";
 		}
+		final ClassInfo<?> ci = getParserClassInfo(o.getClass());
+		if (ci != null) {
+			@SuppressWarnings("unchecked")
+			final Parser<T> parser = (Parser<T>) ci.getParser();
+			assert parser != null;
+			final String s = mode == StringMode.MESSAGE ? parser.toString(o, flags)
+					: mode == StringMode.DEBUG ? "[" + ci.getCodeName() + ":" + parser.toString(o, mode) + "]"
+							: parser.toString(o, mode);
+			return s;
+		}
+		return mode == StringMode.VARIABLE_NAME ? "object:" + o : "" + o;
+	}
+	
+	/**
+	 * @param c
+	 * @return The first class info with a parser that the given class is a subclass of, or null if no such class info exists
+	 */
+	@Nullable
+	private final static ClassInfo<?> getParserClassInfo(final Class<?> c) {
+		final Object cached = parserClassInfos.get(c);
+		if (cached != null)
+			return cached == NO_PARSER ? null : (ClassInfo<?>) cached;
+		ClassInfo<?> r = null;
 		for (final ClassInfo<?> ci : getClassInfos()) {
-			final Parser<?> parser = ci.getParser();
-			if (parser != null && ci.getC().isInstance(o)) {
-				@SuppressWarnings("unchecked")
-				final String s = mode == StringMode.MESSAGE ? ((Parser<T>) parser).toString(o, flags)
-						: mode == StringMode.DEBUG ? "[" + ci.getCodeName() + ":" + ((Parser<T>) parser).toString(o, mode) + "]"
-								: ((Parser<T>) parser).toString(o, mode);
-				return s;
+			if (ci.getParser() != null && ci.getC().isAssignableFrom(c)) {
+				r = ci;
+				break;
 			}
 		}
-		return mode == StringMode.VARIABLE_NAME ? "object:" + o : "" + o;
+		if (!Skript.isAcceptRegistrations())
+			parserClassInfos.put(c, r == null ? NO_PARSER : r);
+		return r;
 	}
 	
 	public final static String toString(final Object[] os, final int flags, final boolean and) {
@@ -610,6 +643,27 @@ public abstract class Classes {
 		if (os.length == 1)
 			return toString(os[0], mode, flags);
 		final StringBuilder b = new StringBuilder();
+		appendString(b, os, and, c, mode, flags);
+		return "" + b.toString();
+	}
+	
+	/**
+	 * Appends the string representation of the given objects to the given builder, i.e. does the same as <tt>b.append(toString(os, and, mode))</tt> without creating an
+	 * intermediate string for the list.
+	 * 
+	 * @param b
+	 * @param os
+	 * @param and
+	 * @param c The color to reset to after every separator, only used in {@link StringMode#MESSAGE}
+	 * @param mode
+	 * @param flags Language flags, only used in {@link StringMode#MESSAGE}
+	 */
+	public final static void appendString(final StringBuilder b, final Object[] os, final boolean and, final @Nullable ChatColor c, final StringMode mode, final int flags) {
+		assert flags == 0 && c == null || mode == StringMode.MESSAGE;
+		if (os.length == 0) {
+			b.append("<none>");
+			return;
+		}
 		for (int i = 0; i < os.length; i++) {
 			if (i != 0) {
 				if (c != null)
@@ -621,7 +675,18 @@ public abstract class Classes {
 			}
 			b.append(toString(os[i], mode, flags));
 		}
-		return "" + b.toString();
+	}
+	
+	/**
+	 * Appends the string representation of the given object to the given builder, i.e. does the same as <tt>b.append(toString(o, mode))</tt>.
+	 * 
+	 * @param b
+	 * @param o
+	 * @param mode
+	 * @param flags Language flags, only used in {@link StringMode#MESSAGE}
+	 */
+	public final static void appendString(final StringBuilder b, final @Nullable Object o, final StringMode mode, final int flags) {
+		b.append(toString(o, mode, flags));
 	}
 	
 	/**
@@ -652,16 +717,35 @@ public abstract class Classes {
 	}
 	
 	/**
-	 * Must be called on the appropriate thread for the given value (i.e. the main thread currently)
+	 * Takes a snapshot of a value that can then be serialised with {@link #serialize(Object)} on any thread. See {@link Serializer#snapshot(Object)}.
+	 * <p>
+	 * Must be called on Bukkit's main thread.
+	 * 
+	 * @param o
+	 * @return The snapshot, or null if the value must be serialised on Bukkit's main thread (or cannot be serialised at all)
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	@Nullable
+	public final static Object snapshot(final Object o) {
+		assert Bukkit.isPrimaryThread();
+		@SuppressWarnings("null")
+		final ClassInfo<?> ci = getSuperClassInfo(o.getClass());
+		if (ci.getSerializeAs() != null) // converters are not necessarily thread-safe
+			return null;
+		final Serializer s = ci.getSerializer();
+		if (s == null || s.mustSyncDeserialization())
+			return null;
+		return s.snapshot(o);
+	}
+	
+	/**
+	 * Must be called on Bukkit's main thread, unless the value is a snapshot returned by {@link #snapshot(Object)}.
 	 */
 	@Nullable
 	public final static SerializedVariable.Value serialize(@Nullable Object o) {
 		if (o == null)
 			return null;
 		
-		// temporary
-		assert Bukkit.isPrimaryThread();
-		
 		@SuppressWarnings("null")
 		ClassInfo<?> ci = getSuperClassInfo(o.getClass());
 		if (ci.getSerializeAs() != null) {
@@ -23,8 +23,6 @@ package ch.njol.skript.registrations;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.eclipse.jdt.annotation.Nullable;
 
@@ -34,7 +32,6 @@ import ch.njol.skript.classes.Comparator.ComparatorInfo;
 import ch.njol.skript.classes.Comparator.Relation;
 import ch.njol.skript.classes.Converter;
 import ch.njol.skript.classes.InverseComparator;
-import ch.njol.util.Pair;
 
 /**
  * @author Peter Güttinger
@@ -58,6 +55,7 @@ public class Comparators {
 		if (t1 == Object.class && t2 == Object.class)
 			throw new IllegalArgumentException("You must not add a comparator for Objects");
 		comparators.add(new ComparatorInfo<T1, T2>(t1, t2, c));
+		comparatorsQuickAccess.clear(); // comparators might have been looked up already, e.g. by an addon while registering
 	}
 	
 	@SuppressWarnings({"rawtypes", "unchecked"})
@@ -82,17 +80,18 @@ public class Comparators {
 		return javaComparator;
 	}
 	
-	private final static Map<Pair<Class<?>, Class<?>>, Comparator<?, ?>> comparatorsQuickAccess = new HashMap<Pair<Class<?>, Class<?>>, Comparator<?, ?>>();
+	private final static ClassPairCache<Comparator<?, ?>> comparatorsQuickAccess = new ClassPairCache<Comparator<?, ?>>() {
+		@Override
+		@Nullable
+		protected Comparator<?, ?> resolve(final Class<?> first, final Class<?> second) {
+			return getComparator_i(first, second);
+		}
+	};
 	
 	@SuppressWarnings("unchecked")
 	@Nullable
 	public final static <F, S> Comparator<? super F, ? super S> getComparator(final Class<F> f, final Class<S> s) {
-		final Pair<Class<?>, Class<?>> p = new Pair<Class<?>, Class<?>>(f, s);
-		if (comparatorsQuickAccess.containsKey(p))
-			return (Comparator<? super F, ? super S>) comparatorsQuickAccess.get(p);
-		final Comparator<?, ?> comp = getComparator_i(f, s);
-		comparatorsQuickAccess.put(p, comp);
-		return (Comparator<? super F, ? super S>) comp;
+		return (Comparator<? super F, ? super S>) comparatorsQuickAccess.get(f, s);
 	}
 	
 	@SuppressWarnings("unchecked")
@@ -41,17 +41,17 @@ public class ScriptOptions {
 	}
 	
 	@SuppressWarnings("null")
-	public static ScriptOptions getInstance(){
+	public static synchronized ScriptOptions getInstance(){
 		return instance != null ? instance : new ScriptOptions();
 	}
 	
-	public boolean usesNewLoops(File file){
+	public synchronized boolean usesNewLoops(File file){
 		if(usesNewLoops.containsKey(file))
 			return usesNewLoops.get(file);
 		return true;
 	}
 	
-	public void setUsesNewLoops(File file, boolean b){
+	public synchronized void setUsesNewLoops(File file, boolean b){
 		usesNewLoops.put(file, b);
 	}
 }
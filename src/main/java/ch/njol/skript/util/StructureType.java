@@ -104,7 +104,7 @@ public enum StructureType {
 	}
 	
 	/**
-	 * lazy
+	 * lazy. Must be synchronised as scripts are parsed on several threads.
 	 */
 	final static Map<Pattern, StructureType> parseMap = new HashMap<Pattern, StructureType>();
 	
@@ -112,23 +112,27 @@ public enum StructureType {
 		Language.addListener(new LanguageChangeListener() {
 			@Override
 			public void onLanguageChange() {
-				parseMap.clear();
+				synchronized (parseMap) {
+					parseMap.clear();
+				}
 			}
 		});
 	}
 	
 	@Nullable
 	public static StructureType fromName(String s) {
-		if (parseMap.isEmpty()) {
-			for (final StructureType t : values()) {
-				final String pattern = Language.get("tree types." + t.name() + ".pattern");
-				parseMap.put(Pattern.compile(pattern, Pattern.CASE_INSENSITIVE), t);
-			}
-		}
 		s = "" + s.toLowerCase();
-		for (final Entry<Pattern, StructureType> e : parseMap.entrySet()) {
-			if (e.getKey().matcher(s).matches())
-				return e.getValue();
+		synchronized (parseMap) {
+			if (parseMap.isEmpty()) {
+				for (final StructureType t : values()) {
+					final String pattern = Language.get("tree types." + t.name() + ".pattern");
+					parseMap.put(Pattern.compile(pattern, Pattern.CASE_INSENSITIVE), t);
+				}
+			}
+			for (final Entry<Pattern, StructureType> e : parseMap.entrySet()) {
+				if (e.getKey().matcher(s).matches())
+					return e.getValue();
+			}
 		}
 		return null;
 	}
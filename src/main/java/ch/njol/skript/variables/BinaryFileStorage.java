@@ -0,0 +1,300 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.variables;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import ch.njol.skript.Skript;
+
+/**
+ * Stores variables in an append-only binary log. Like with {@link FlatFileStorage} changes are appended to the file, which is compacted every once in a while by rewriting it
+ * with only the current variables.
+ * <p>
+ * The file starts with a header of {@link #MAGIC} and the format's {@link #VERSION}, followed by records of the following form:
+ * <ul>
+ * <li>the length of the record's data (int)</li>
+ * <li>the CRC32 checksum of the record's data (int)</li>
+ * <li>the record's data: the length of the variable's name (int), the name in UTF-8, the length of the variable's type or -1 if the variable was deleted (int), the type in
+ * UTF-8, and the serialised value taking up the rest of the record</li>
+ * </ul>
+ * A record that is cut off (e.g. because the server crashed while writing it) or doesn't match its checksum ends the log, and causes the file to be rewritten after a backup of
+ * it has been made.
+ */
+public class BinaryFileStorage extends FlatFileStorage {
+	
+	/**
+	 * "SKVB"
+	 */
+	final static int MAGIC = 0x534B5642;
+	final static int VERSION = 1;
+	
+	/**
+	 * Records larger than this are considered to be corrupted.
+	 */
+	private final static int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+	
+	protected BinaryFileStorage(final String name) {
+		super(name);
+	}
+	
+	@Override
+	protected boolean loadFile(final File file) throws IOException {
+		if (file.length() == 0) // new file, the header is written by newChangesWriter
+			return false;
+		final ParallelDeserializer loader = new ParallelDeserializer(this) {
+			@Override
+			protected void failed(final String name, final String type) {
+				loadFailed(name);
+			}
+		};
+		final LogReader r = new LogReader(new FileInputStream(file));
+		try {
+			if (!r.readHeader()) {
+				Skript.error("The database file '" + file.getName() + "' is not a binary variables file. Use 'type: CSV' for text files.");
+				throw new IOException("invalid file header");
+			}
+			while (r.next())
+				loader.add(r.name, r.type, r.type == null ? null : r.value);
+			loader.finish();
+			if (r.corrupted) {
+				Skript.error("The database file '" + file.getName() + "' ends with an incomplete or corrupted record, which has been discarded.");
+				return true;
+			}
+		} finally {
+			r.close();
+		}
+		return false;
+	}
+	
+	@Override
+	protected int getHeaderLength() {
+		return 8;
+	}
+	
+	@Override
+	protected VariablesWriter newChangesWriter(final File f) throws IOException {
+		final boolean empty = f.length() == 0;
+		final LogWriter w = new LogWriter(new FileOutputStream(f, true));
+		if (empty)
+			w.writeHeader();
+		return w;
+	}
+	
+	@Override
+	protected VariablesWriter newSaveWriter(final File f) throws IOException {
+		final LogWriter w = new LogWriter(new FileOutputStream(f));
+		w.writeHeader();
+		return w;
+	}
+	
+	final static class LogWriter implements VariablesWriter {
+		
+		private final DataOutputStream out;
+		private final CRC32 crc = new CRC32();
+		
+		private byte[] buffer = new byte[256];
+		private int length;
+		
+		LogWriter(final OutputStream out) {
+			this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+		}
+		
+		void writeHeader() throws IOException {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+		}
+		
+		@Override
+		public void write(final String name, final @Nullable String type, final @Nullable byte[] value) throws IOException {
+			length = 0;
+			final byte[] n = name.getBytes(UTF_8);
+			putInt(n.length);
+			put(n, n.length);
+			if (type == null || value == null) {
+				putInt(-1);
+			} else {
+				final byte[] t = type.getBytes(UTF_8);
+				putInt(t.length);
+				put(t, t.length);
+				put(value, value.length);
+			}
+			crc.reset();
+			crc.update(buffer, 0, length);
+			out.writeInt(length);
+			out.writeInt((int) crc.getValue());
+			out.write(buffer, 0, length);
+		}
+		
+		private void ensureCapacity(final int additional) {
+			if (length + additional > buffer.length) {
+				final byte[] b = new byte[Math.max(buffer.length * 2, length + additional)];
+				System.arraycopy(buffer, 0, b, 0, length);
+				buffer = b;
+			}
+		}
+		
+		private void putInt(final int i) {
+			ensureCapacity(4);
+			buffer[length++] = (byte) (i >>> 24);
+			buffer[length++] = (byte) (i >>> 16);
+			buffer[length++] = (byte) (i >>> 8);
+			buffer[length++] = (byte) i;
+		}
+		
+		private void put(final byte[] b, final int len) {
+			ensureCapacity(len);
+			System.arraycopy(b, 0, buffer, length, len);
+			length += len;
+		}
+		
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+		
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+		
+	}
+	
+	/**
+	 * Reads a log record by record. The current record's fields are overwritten by each call to {@link #next()}.
+	 */
+	final static class LogReader {
+		
+		private final DataInputStream in;
+		private final CRC32 crc = new CRC32();
+		
+		private byte[] buffer = new byte[256];
+		
+		String name = "";
+		@Nullable
+		String type;
+		byte[] value = new byte[0];
+		
+		/**
+		 * Whether the log ended in a record that is cut off or doesn't match its checksum
+		 */
+		boolean corrupted = false;
+		
+		LogReader(final InputStream in) {
+			this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+		}
+		
+		/**
+		 * @return Whether the header is valid
+		 * @throws IOException
+		 */
+		boolean readHeader() throws IOException {
+			try {
+				return in.readInt() == MAGIC && in.readInt() == VERSION;
+			} catch (final EOFException e) {
+				return false;
+			}
+		}
+		
+		/**
+		 * Reads the next record.
+		 *
+		 * @return Whether a record was read, false if the end of the log has been reached
+		 * @throws IOException
+		 */
+		boolean next() throws IOException {
+			final int length, checksum;
+			final int first = in.read();
+			if (first == -1)
+				return false;
+			try {
+				length = first << 24 | in.readUnsignedByte() << 16 | in.readUnsignedByte() << 8 | in.readUnsignedByte();
+				checksum = in.readInt();
+				if (length < 4 || length > MAX_RECORD_LENGTH) {
+					corrupted = true;
+					return false;
+				}
+				if (buffer.length < length)
+					buffer = new byte[Math.max(buffer.length * 2, length)];
+				in.readFully(buffer, 0, length);
+			} catch (final EOFException e) {
+				corrupted = true;
+				return false;
+			}
+			crc.reset();
+			crc.update(buffer, 0, length);
+			if ((int) crc.getValue() != checksum) {
+				corrupted = true;
+				return false;
+			}
+			
+			int pos = 0;
+			final int nameLength = getInt(pos);
+			pos += 4;
+			if (nameLength < 0 || pos + nameLength + 4 > length) {
+				corrupted = true;
+				return false;
+			}
+			name = new String(buffer, pos, nameLength, UTF_8);
+			pos += nameLength;
+			final int typeLength = getInt(pos);
+			pos += 4;
+			if (typeLength == -1) {
+				type = null;
+				return true;
+			}
+			if (typeLength < 0 || pos + typeLength > length) {
+				corrupted = true;
+				return false;
+			}
+			type = new String(buffer, pos, typeLength, UTF_8);
+			pos += typeLength;
+			value = new byte[length - pos];
+			System.arraycopy(buffer, pos, value, 0, value.length);
+			return true;
+		}
+		
+		private int getInt(final int pos) {
+			return buffer[pos] << 24 | (buffer[pos + 1] & 0xFF) << 16 | (buffer[pos + 2] & 0xFF) << 8 | buffer[pos + 3] & 0xFF;
+		}
+		
+		void close() {
+			try {
+				in.close();
+			} catch (final IOException e) {}
+		}
+		
+	}
+	
+}
@@ -0,0 +1,203 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.variables;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decides when a {@link DatabaseStorage} checks its database for changes made by other servers sharing the database (i.e. with 'monitor changes' enabled).
+ * <p>
+ * The storage's monitor thread repeatedly calls {@link #await(int)} and then reads all rows changed since its last check.
+ */
+abstract class ChangeFeed {
+	
+	protected volatile boolean closed = false;
+	
+	/**
+	 * The time of the last check, initially the time the variables were loaded at
+	 */
+	protected long lastCheck = System.currentTimeMillis();
+	
+	/**
+	 * Blocks until the database should be checked for changes.
+	 *
+	 * @param changes The number of changed variables read by the last check
+	 * @return Whether the database should be checked, false if this feed has been closed
+	 */
+	abstract boolean await(int changes);
+	
+	/**
+	 * Called after this server has committed changes to the database.
+	 */
+	void committed() {}
+	
+	/**
+	 * Stops this feed and wakes up the thread waiting in {@link #await(int)}.
+	 */
+	synchronized void close() {
+		closed = true;
+		notifyAll();
+	}
+	
+	/**
+	 * Waits until the given time or until this feed is closed, and updates {@link #lastCheck}.
+	 *
+	 * @param time
+	 * @return Whether this feed is still open
+	 */
+	protected final synchronized boolean sleepUntil(final long time) {
+		long now;
+		while (!closed && (now = System.currentTimeMillis()) < time) {
+			try {
+				wait(time - now);
+			} catch (final InterruptedException e) {}
+		}
+		lastCheck = System.currentTimeMillis();
+		return !closed;
+	}
+	
+	/**
+	 * Checks the database in fixed intervals.
+	 */
+	final static class Polling extends ChangeFeed {
+		
+		private final long interval;
+		
+		Polling(final long interval) {
+			this.interval = interval;
+		}
+		
+		@Override
+		boolean await(final int changes) {
+			return sleepUntil(lastCheck + interval);
+		}
+		
+	}
+	
+	/**
+	 * Checks the database more often while other servers are changing variables: the interval is halved down to {@link #minInterval} whenever changes were found, and doubled
+	 * up to {@link #maxInterval} whenever none were found.
+	 */
+	final static class Adaptive extends ChangeFeed {
+		
+		private final long minInterval, maxInterval;
+		
+		long interval;
+		
+		Adaptive(final long minInterval, final long maxInterval) {
+			assert minInterval <= maxInterval;
+			this.minInterval = minInterval;
+			this.maxInterval = maxInterval;
+			interval = maxInterval;
+		}
+		
+		@Override
+		boolean await(final int changes) {
+			interval = changes > 0 ? Math.max(minInterval, interval / 2) : Math.min(maxInterval, interval * 2);
+			return sleepUntil(lastCheck + interval);
+		}
+		
+	}
+	
+	/**
+	 * Checks the database whenever another server notifies this one that it has committed changes, by sending a UDP packet to the port this feed listens on. As packets may
+	 * be lost the database is also checked at least once per interval.
+	 */
+	final static class Notifying extends ChangeFeed {
+		
+		private final DatagramSocket socket;
+		private final List<InetSocketAddress> servers;
+		
+		/**
+		 * The content of sent notifications, used to ignore notifications sent by this server
+		 */
+		private final byte[] id;
+		
+		private final long interval;
+		
+		/**
+		 * @param port The port to listen on, or 0 for any free port
+		 * @param servers The servers to notify when this server commits changes. May include this server.
+		 * @param id Identifies this server, e.g. its update GUID
+		 * @param interval The maximum time between checks
+		 * @throws SocketException If the port cannot be opened
+		 */
+		Notifying(final int port, final List<InetSocketAddress> servers, final String id, final long interval) throws SocketException {
+			socket = new DatagramSocket(port);
+			this.servers = servers;
+			this.id = id.getBytes(FlatFileStorage.UTF_8);
+			this.interval = interval;
+		}
+		
+		int getPort() {
+			return socket.getLocalPort();
+		}
+		
+		@Override
+		boolean await(final int changes) {
+			final DatagramPacket p = new DatagramPacket(new byte[id.length + 1], id.length + 1);
+			long timeout;
+			while (!closed && (timeout = lastCheck + interval - System.currentTimeMillis()) > 0) {
+				try {
+					socket.setSoTimeout((int) Math.min(timeout, Integer.MAX_VALUE));
+					p.setLength(id.length + 1);
+					socket.receive(p);
+					if (p.getLength() != id.length || !Arrays.equals(id, Arrays.copyOf(p.getData(), id.length)))
+						break;
+				} catch (final SocketTimeoutException e) {
+					break;
+				} catch (final IOException e) {
+					if (closed)
+						break;
+					// fall back to polling
+					return sleepUntil(lastCheck + interval);
+				}
+			}
+			lastCheck = System.currentTimeMillis();
+			return !closed;
+		}
+		
+		@Override
+		void committed() {
+			for (final InetSocketAddress server : servers) {
+				try {
+					socket.send(new DatagramPacket(id, id.length, server));
+				} catch (final IOException e) {}
+			}
+		}
+		
+		@Override
+		synchronized void close() {
+			super.close();
+			socket.close();
+		}
+		
+	}
+	
+}
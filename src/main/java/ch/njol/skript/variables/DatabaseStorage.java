@@ -22,9 +22,14 @@
 package ch.njol.skript.variables;
 
 import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
 import java.util.concurrent.Callable;
@@ -65,6 +70,16 @@ public class DatabaseStorage extends VariablesStorage {
 	
 	private final static String SELECT_ORDER = "name, type, value, rowid";
 	
+	/**
+	 * The maximum number of changed rows read at once when monitoring the database. If more rows have changed the remaining rows are read immediately afterwards.
+	 */
+	private final static int MONITOR_BATCH_SIZE = 1000;
+	
+	/**
+	 * The shortest interval used by the 'adaptive' monitor method in milliseconds
+	 */
+	private final static long MIN_MONITOR_INTERVAL = 1000;
+	
 	public static enum Type {
 		MYSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" +
 				"rowid        BIGINT  NOT NULL  AUTO_INCREMENT  PRIMARY KEY," +
@@ -83,7 +98,8 @@ public class DatabaseStorage extends VariablesStorage {
 				final String database = s.getValue(n, "database");
 				if (host == null || port == null || user == null || password == null || database == null)
 					return null;
-				return new MySQL(SkriptLogger.LOGGER, "[Skript]", host, port, database, user, password);
+				// Connector/J only sends a batch in one statement if this is set. SQLibrary appends the database to the connection URL, thus properties can be added to it.
+				return new MySQL(SkriptLogger.LOGGER, "[Skript]", host, port, database + (database.contains("?") ? "&" : "?") + "rewriteBatchedStatements=true", user, password);
 			}
 		},
 		SQLITE("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" +
@@ -119,15 +135,32 @@ public class DatabaseStorage extends VariablesStorage {
 	@SuppressWarnings("null")
 	final SynchronizedReference<Database> db = new SynchronizedReference<Database>(null);
 	
+	/**
+	 * The connection used to check for changes made by other servers. MySQL databases use a separate connection for this, so that checking for changes doesn't have to wait
+	 * for this server's changes to be written and vice versa. SQLite only allows one connection to write at a time, thus SQLite databases use {@link #db} for everything.
+	 */
+	SynchronizedReference<Database> monitorDb = db;
+	
 	private boolean monitor = false;
 	long monitor_interval;
 	
+	/**
+	 * Decides when to check for changes if monitoring changes, set with 'monitor method'
+	 */
+	@Nullable
+	private ChangeFeed feed;
+	
+	/**
+	 * Whether changes were written since the last commit. Must be synchronised on {@link #db}.
+	 */
+	private boolean uncommitted = false;
+	
 	private final static String guid = "" + UUID.randomUUID().toString();
 	
 	/**
-	 * The delay between transactions in milliseconds.
+	 * The delay between transactions in milliseconds, set with 'flush interval'.
 	 */
-	private final static long TRANSACTION_DELAY = 500;
+	private long transactionDelay = 500;
 	
 	DatabaseStorage(final String name, final Type type) {
 		super(name);
@@ -154,12 +187,36 @@ public class DatabaseStorage extends VariablesStorage {
 			monitor = monitor_changes;
 			this.monitor_interval = monitor_interval.getMilliSeconds();
 			
+			// optional, as they were added later
+			if (n.getValue("batch size") != null) {
+				final Integer batch_size = getValue(n, "batch size", Integer.class);
+				if (batch_size == null)
+					return false;
+				if (batch_size < 1) {
+					Skript.error("The batch size of the database '" + databaseName + "' must be at least 1");
+					return false;
+				}
+				batchSize = batch_size;
+			}
+			if (n.getValue("flush interval") != null) {
+				final Timespan flush_interval = getValue(n, "flush interval", Timespan.class);
+				if (flush_interval == null)
+					return false;
+				transactionDelay = flush_interval.getMilliSeconds();
+			}
+			
 			final Database db;
 			try {
 				final Object o = type.initialise(this, n);
 				if (o == null)
 					return false;
 				this.db.set(db = (Database) o);
+				if (monitor && type == Type.MYSQL) {
+					final Object m = type.initialise(this, n);
+					if (m == null)
+						return false;
+					monitorDb = new SynchronizedReference<Database>((Database) m);
+				}
 			} catch (final RuntimeException e) {
 				if (e instanceof DatabaseException) {// not in a catch clause to not produce a ClassNotFoundException when this class is loaded and SQLibrary is not present
 					Skript.error(e.getLocalizedMessage());
@@ -172,6 +229,8 @@ public class DatabaseStorage extends VariablesStorage {
 			
 			if (!connect(true))
 				return false;
+			if (monitorDb != this.db && !connectMonitor())
+				return false;
 			
 			try {
 				final boolean hasOldTable = db.isTable(OLD_TABLE_NAME);
@@ -213,20 +272,16 @@ public class DatabaseStorage extends VariablesStorage {
 				if (hasOldTable) {
 					if (!hadNewTable) {
 						Skript.info("[2.1] Updating the database '" + databaseName + "' to the new format...");
-						try {
-							Variables.getReadLock().lock();
-							for (final Entry<String, Object> v : Variables.getVariablesHashMap().entrySet()) {
-								if (accept(v.getKey())) {// only one database was possible, so only checking this database is correct
-									@SuppressWarnings("null")
-									final SerializedVariable var = Variables.serialize(v.getKey(), v.getValue());
-									final SerializedVariable.Value d = var.value;
-									save(var.name, d == null ? null : d.type, d == null ? null : d.data);
-								}
+						final Map<String, Object> variables = Variables.getVariablesFlat();
+						for (final Entry<String, Object> v : variables.entrySet()) {
+							if (accept(v.getKey())) {// only one database was possible, so only checking this database is correct
+								@SuppressWarnings("null")
+								final SerializedVariable var = Variables.serialize(v.getKey(), v.getValue());
+								final SerializedVariable.Value d = var.value;
+								save(var.name, d == null ? null : d.type, d == null ? null : d.data);
 							}
-							Skript.info("Updated and transferred " + Variables.getVariablesHashMap().size() + " variables to the new table.");
-						} finally {
-							Variables.getReadLock().unlock();
 						}
+						Skript.info("Updated and transferred " + variables.size() + " variables to the new table.");
 					}
 					db.query("DELETE FROM " + OLD_TABLE_NAME + " WHERE value IS NULL");
 					db.query("DELETE FROM old USING " + OLD_TABLE_NAME + " AS old, " + TABLE_NAME + " AS new WHERE old.name = new.name");
@@ -260,18 +315,21 @@ public class DatabaseStorage extends VariablesStorage {
 				return false;
 			}
 			
+			if (monitor) {
+				final ChangeFeed feed = createChangeFeed(n);
+				if (feed == null)
+					return false;
+				this.feed = feed;
+			}
+			
 			// periodically executes queries to keep the collection alive
 			Skript.newThread(new Runnable() {
 				@Override
 				public void run() {
 					while (!closed) {
-						synchronized (DatabaseStorage.this.db) {
-							try {
-								final Database db = DatabaseStorage.this.db.get();
-								if (db != null)
-									db.query("SELECT * FROM " + TABLE_NAME + " LIMIT 1");
-							} catch (final SQLException e) {}
-						}
+						keepAlive(DatabaseStorage.this.db);
+						if (monitorDb != DatabaseStorage.this.db)
+							keepAlive(monitorDb);
 						try {
 							Thread.sleep(1000 * 10);
 						} catch (final InterruptedException e) {}
@@ -283,6 +341,62 @@ public class DatabaseStorage extends VariablesStorage {
 		}
 	}
 	
+	/**
+	 * Creates the change feed selected with 'monitor method'.
+	 * 
+	 * @param n
+	 * @return The change feed or null if the configuration is invalid
+	 */
+	@Nullable
+	private ChangeFeed createChangeFeed(final SectionNode n) {
+		final String method = n.getValue("monitor method");
+		if (method == null || method.equalsIgnoreCase("polling"))
+			return new ChangeFeed.Polling(monitor_interval);
+		if (method.equalsIgnoreCase("adaptive"))
+			return new ChangeFeed.Adaptive(Math.min(MIN_MONITOR_INTERVAL, monitor_interval), monitor_interval);
+		if (!method.equalsIgnoreCase("notify")) {
+			Skript.error("Invalid monitor method '" + method + "' in the database '" + databaseName + "'. Allowed values are 'polling', 'adaptive' and 'notify'.");
+			return null;
+		}
+		final Integer port = getValue(n, "notify port", Integer.class);
+		final String servers = getValue(n, "notify servers");
+		if (port == null || servers == null)
+			return null;
+		final List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+		for (final String s : servers.split(",")) {
+			final String server = s.trim();
+			if (server.isEmpty())
+				continue;
+			final int c = server.lastIndexOf(':');
+			final InetSocketAddress address;
+			try {
+				address = c == -1 ? new InetSocketAddress(server, port) : new InetSocketAddress(server.substring(0, c), Integer.parseInt(server.substring(c + 1)));
+			} catch (final IllegalArgumentException e) { // also thrown for invalid numbers
+				Skript.error("Invalid server '" + server + "' in the database '" + databaseName + "'. Servers to notify must be written as 'host' or 'host:port'.");
+				return null;
+			}
+			if (address.isUnresolved())
+				Skript.warning("The server '" + server + "' to notify about changes to the database '" + databaseName + "' cannot be found");
+			addresses.add(address);
+		}
+		try {
+			return new ChangeFeed.Notifying(port, addresses, guid, monitor_interval);
+		} catch (final SocketException e) {
+			Skript.error("Cannot listen for change notifications on port " + port + " for the database '" + databaseName + "': " + e.getLocalizedMessage());
+			return null;
+		}
+	}
+	
+	static void keepAlive(final SynchronizedReference<Database> db) {
+		synchronized (db) {
+			try {
+				final Database d = db.get();
+				if (d != null)
+					d.query("SELECT * FROM " + TABLE_NAME + " LIMIT 1");
+			} catch (final SQLException e) {}
+		}
+	}
+	
 	@Override
 	protected void allLoaded() {
 		Skript.debug("Database " + databaseName + " loaded. Queue size = " + changesQueue.size());
@@ -293,50 +407,54 @@ public class DatabaseStorage extends VariablesStorage {
 			public void run() {
 				long lastCommit;
 				while (!closed) {
+					boolean committed = false;
 					synchronized (db) {
 						final Database db = DatabaseStorage.this.db.get();
 						try {
-							if (db != null)
+							if (db != null) {
 								db.getConnection().commit();
+								committed = uncommitted;
+								uncommitted = false;
+							}
 						} catch (final SQLException e) {
 							sqlException(e);
 						}
 						lastCommit = System.currentTimeMillis();
 					}
+					final ChangeFeed feed = DatabaseStorage.this.feed;
+					if (committed && feed != null)
+						feed.committed();
 					try {
-						Thread.sleep(Math.max(0, lastCommit + TRANSACTION_DELAY - System.currentTimeMillis()));
+						Thread.sleep(Math.max(0, lastCommit + transactionDelay - System.currentTimeMillis()));
 					} catch (final InterruptedException e) {}
 				}
 			}
 		}, "Skript database '" + databaseName + "' transaction committing thread").start();
 		
-		if (monitor) {
+		final ChangeFeed feed = this.feed;
+		if (feed != null) {
 			Skript.newThread(new Runnable() {
 				@Override
 				public void run() {
-					try { // variables were just downloaded, not need to check for modifications straight away
-						Thread.sleep(monitor_interval);
-					} catch (final InterruptedException e1) {}
-					
 					long lastWarning = Long.MIN_VALUE;
 					final int WARING_INTERVAL = 10;
 					
+					int changes = 0;
 					while (!closed) {
-						final long next = System.currentTimeMillis() + monitor_interval;
-						checkDatabase();
+						// the feed doesn't check for modifications straight away as variables were just downloaded,
+						// but if the last check read a full batch there are more changes waiting to be read
+						if (changes < MONITOR_BATCH_SIZE && !feed.await(changes))
+							break;
+						final long start = System.currentTimeMillis();
+						changes = checkDatabase();
 						final long now = System.currentTimeMillis();
-						if (next < now && lastWarning + WARING_INTERVAL * 1000 < now) {
+						if (now - start > monitor_interval && lastWarning + WARING_INTERVAL * 1000 < now) {
 							// TODO don't print this message when Skript loads (because scripts are loaded after variables and take some time)
-							Skript.warning("Cannot load variables from the database fast enough (loading took " + ((now - next + monitor_interval) / 1000.) + "s, monitor interval = " + (monitor_interval / 1000.) + "s). " +
+							Skript.warning("Cannot load variables from the database fast enough (loading took " + ((now - start) / 1000.) + "s, monitor interval = " + (monitor_interval / 1000.) + "s). " +
 									"Please increase your monitor interval or reduce usage of variables. " +
 									"(this warning will be repeated at most once every " + WARING_INTERVAL + " seconds)");
 							lastWarning = now;
 						}
-						while (System.currentTimeMillis() < next) {
-							try {
-								Thread.sleep(next - System.currentTimeMillis());
-							} catch (final InterruptedException e) {}
-						}
 					}
 				}
 			}, "Skript database '" + databaseName + "' monitor thread").start();
@@ -384,6 +502,29 @@ public class DatabaseStorage extends VariablesStorage {
 		}
 	}
 	
+	/**
+	 * Opens the separate {@link #monitorDb monitor connection}. It uses auto-commit, as an open transaction would not see changes made by other servers with MySQL's default
+	 * isolation level.
+	 * 
+	 * @return Whether the connection could be opened
+	 */
+	private final boolean connectMonitor() {
+		synchronized (monitorDb) {
+			final Database db = monitorDb.get();
+			if (db == null || !db.open()) {
+				Skript.error("Cannot open a second connection to the database '" + databaseName + "' to monitor it for changes!");
+				return false;
+			}
+			try {
+				db.getConnection().setAutoCommit(true);
+			} catch (final SQLException e) {
+				sqlException(e);
+				return false;
+			}
+			return true;
+		}
+	}
+	
 	/**
 	 * (Re)creates prepared statements as they get closed as well when closing the connection
 	 * 
@@ -394,23 +535,25 @@ public class DatabaseStorage extends VariablesStorage {
 			final Database db = this.db.get();
 			assert db != null;
 			try {
-				try {
-					if (writeQuery != null)
-						writeQuery.close();
-				} catch (final SQLException e) {}
-				writeQuery = db.prepare("REPLACE INTO " + TABLE_NAME + " (name, type, value, update_guid) VALUES (?, ?, ?, ?)");
-				
-				try {
-					if (deleteQuery != null)
-						deleteQuery.close();
-				} catch (final SQLException e) {}
-				deleteQuery = db.prepare("DELETE FROM " + TABLE_NAME + " WHERE name = ?");
-				
+				final DatabaseWriter writer = this.writer;
+				if (writer != null)
+					writer.close();
+				this.writer = new DatabaseWriter(db.prepare("REPLACE INTO " + TABLE_NAME + " (name, type, value, update_guid) VALUES (?, ?, ?, ?)"),
+						db.prepare("DELETE FROM " + TABLE_NAME + " WHERE name = ?"), guid, batchSize);
+			} catch (final SQLException e) {
+				Skript.exception(e, "Could not prepare queries for the database '" + databaseName + "': " + e.getLocalizedMessage());
+				return false;
+			}
+		}
+		synchronized (monitorDb) {
+			final Database db = monitorDb.get();
+			assert db != null;
+			try {
 				try {
 					if (monitorQuery != null)
 						monitorQuery.close();
 				} catch (final SQLException e) {}
-				monitorQuery = db.prepare("SELECT " + SELECT_ORDER + " FROM " + TABLE_NAME + " WHERE rowid > ? AND update_guid != ?");
+				monitorQuery = db.prepare("SELECT " + SELECT_ORDER + " FROM " + TABLE_NAME + " WHERE rowid > ? AND update_guid != ? ORDER BY rowid LIMIT " + MONITOR_BATCH_SIZE);
 				try {
 					if (monitorCleanUpQuery != null)
 						monitorCleanUpQuery.close();
@@ -436,23 +579,14 @@ public class DatabaseStorage extends VariablesStorage {
 	}
 	
 	/**
-	 * Params: name, type, value, GUID
-	 * <p>
-	 * Writes a variable to the database
-	 */
-	@Nullable
-	private PreparedStatement writeQuery;
-	/**
-	 * Params: name
-	 * <p>
-	 * Deletes a variable from the database
+	 * Writes and deletes variables. Must be synchronised on {@link #db}.
 	 */
 	@Nullable
-	private PreparedStatement deleteQuery;
+	private DatabaseWriter writer;
 	/**
 	 * Params: rowID, GUID
 	 * <p>
-	 * Selects changed rows. values in order: {@value #SELECT_ORDER}
+	 * Selects up to {@value #MONITOR_BATCH_SIZE} changed rows ordered by their rowid. values in order: {@value #SELECT_ORDER}
 	 */
 	@Nullable
 	private PreparedStatement monitorQuery;
@@ -464,31 +598,24 @@ public class DatabaseStorage extends VariablesStorage {
 	@Nullable
 	PreparedStatement monitorCleanUpQuery;
 	
+	private final void checkSize(final String name, final @Nullable byte[] value) {
+		// REMIND get the actual maximum size from the database
+		if (name.length() > MAX_VARIABLE_NAME_LENGTH)
+			Skript.error("The name of the variable {" + name + "} is too long to be saved in a database (length: " + name.length() + ", maximum allowed: " + MAX_VARIABLE_NAME_LENGTH + ")! It will be truncated and won't bet available under the same name again when loaded.");
+		if (value != null && value.length > MAX_VALUE_SIZE)
+			Skript.error("The variable {" + name + "} cannot be saved in the database as its value's size (" + value.length + ") exceeds the maximum allowed size of " + MAX_VALUE_SIZE + "! An attempt to save the variable will be made nonetheless.");
+	}
+	
 	@Override
 	protected boolean save(final String name, final @Nullable String type, final @Nullable byte[] value) {
 		synchronized (db) {
-			// REMIND get the actual maximum size from the database
-			if (name.length() > MAX_VARIABLE_NAME_LENGTH)
-				Skript.error("The name of the variable {" + name + "} is too long to be saved in a database (length: " + name.length() + ", maximum allowed: " + MAX_VARIABLE_NAME_LENGTH + ")! It will be truncated and won't bet available under the same name again when loaded.");
-			if (value != null && value.length > MAX_VALUE_SIZE)
-				Skript.error("The variable {" + name + "} cannot be saved in the database as its value's size (" + value.length + ") exceeds the maximum allowed size of " + MAX_VALUE_SIZE + "! An attempt to save the variable will be made nonetheless.");
+			checkSize(name, value);
+			final DatabaseWriter writer = this.writer;
+			assert writer != null;
+			uncommitted = true;
 			try {
-				if (type == null) {
-					assert value == null;
-					final PreparedStatement deleteQuery = this.deleteQuery;
-					assert deleteQuery != null;
-					deleteQuery.setString(1, name);
-					deleteQuery.executeUpdate();
-				} else {
-					int i = 1;
-					final PreparedStatement writeQuery = this.writeQuery;
-					assert writeQuery != null;
-					writeQuery.setString(i++, name);
-					writeQuery.setString(i++, type);
-					writeQuery.setBytes(i++, value); // SQLite desn't support setBlob
-					writeQuery.setString(i++, guid);
-					writeQuery.executeUpdate();
-				}
+				writer.write(name, type, value);
+				writer.flush();
 			} catch (final SQLException e) {
 				sqlException(e);
 				return false;
@@ -497,9 +624,44 @@ public class DatabaseStorage extends VariablesStorage {
 		return true;
 	}
 	
+	/**
+	 * Sends the variables to the database in JDBC batches instead of one by one. The changes are committed by the transaction committing thread.
+	 */
+	@Override
+	protected void save(final List<SerializedVariable> vars) {
+		synchronized (db) {
+			final DatabaseWriter writer = this.writer;
+			assert writer != null;
+			uncommitted = true;
+			// only the failed changes are lost, the rest of the list is still written. The queries are only recreated afterwards as this discards the current batch.
+			SQLException error = null;
+			for (final SerializedVariable var : vars) {
+				final SerializedVariable.Value d = var.value;
+				checkSize(var.name, d == null ? null : d.data);
+				try {
+					writer.write(var.name, d == null ? null : d.type, d == null ? null : d.data);
+				} catch (final SQLException e) {
+					if (error == null)
+						error = e;
+				}
+			}
+			try {
+				writer.flush();
+			} catch (final SQLException e) {
+				if (error == null)
+					error = e;
+			}
+			if (error != null)
+				sqlException(error);
+		}
+	}
+	
 	@SuppressWarnings("null")
 	@Override
 	public void close() {
+		final ChangeFeed feed = this.feed;
+		if (feed != null)
+			feed.close();
 		synchronized (db) {
 			super.close();
 			final Database db = this.db.get();
@@ -512,19 +674,39 @@ public class DatabaseStorage extends VariablesStorage {
 				db.close();
 				this.db.set(null);
 			}
+			if (monitorDb != this.db) {
+				synchronized (monitorDb) {
+					final Database m = monitorDb.get();
+					if (m != null) {
+						m.close();
+						monitorDb.set(null);
+					}
+				}
+			}
 		}
 	}
 	
 	long lastRowID = -1;
 	
-	protected void checkDatabase() {
+	/**
+	 * Only accessed by the monitor thread
+	 */
+	private long lastCleanUp = 0;
+	
+	/**
+	 * Reads the rows changed by other servers since the last check and applies the changes.
+	 * 
+	 * @return The number of read rows, at most {@link #MONITOR_BATCH_SIZE}
+	 */
+	protected int checkDatabase() {
+		int changes = 0;
 		try {
 			final long lastRowID; // local variable as this is used to clean the database below
 			ResultSet r = null;
 			try {
-				synchronized (db) {
-					if (closed || db.get() == null)
-						return;
+				synchronized (monitorDb) {
+					if (closed || monitorDb.get() == null)
+						return 0;
 					lastRowID = this.lastRowID;
 					final PreparedStatement monitorQuery = this.monitorQuery;
 					assert monitorQuery != null;
@@ -535,19 +717,21 @@ public class DatabaseStorage extends VariablesStorage {
 					assert r != null;
 				}
 				if (!closed)
-					loadVariables(r);
+					changes = loadChanges(r);
 			} finally {
 				if (r != null)
 					r.close();
 			}
 			
-			if (!closed) { // Skript may have been disabled in the meantime // TODO not fixed
+			// change feeds can check more often than once per monitor interval, but the database doesn't have to be cleaned more often
+			if (!closed && System.currentTimeMillis() - lastCleanUp >= monitor_interval) { // Skript may have been disabled in the meantime // TODO not fixed
+				lastCleanUp = System.currentTimeMillis();
 				new Task(Skript.getInstance(), (long) Math.ceil(2. * monitor_interval / 50) + 100, true) { // 2 times the interval + 5 seconds
 					@Override
 					public void run() {
 						try {
-							synchronized (db) {
-								if (closed || db.get() == null)
+							synchronized (monitorDb) {
+								if (closed || monitorDb.get() == null)
 									return;
 								final PreparedStatement monitorCleanUpQuery = DatabaseStorage.this.monitorCleanUpQuery;
 								assert monitorCleanUpQuery != null;
@@ -563,6 +747,7 @@ public class DatabaseStorage extends VariablesStorage {
 		} catch (final SQLException e) {
 			sqlException(e);
 		}
+		return changes;
 	}
 	
 //	private final static class VariableInfo {
@@ -590,39 +775,14 @@ public class DatabaseStorage extends VariablesStorage {
 			@Override
 			@Nullable
 			public SQLException call() throws Exception {
-				try {
-					while (r.next()) {
-						int i = 1;
-						final String name = r.getString(i++);
-						if (name == null) {
-							Skript.error("Variable with NULL name found in the database '" + databaseName + "', ignoring it");
-							continue;
-						}
-						final String type = r.getString(i++);
-						final byte[] value = r.getBytes(i++); // Blob not supported by SQLite
-						lastRowID = r.getLong(i++);
-						if (value == null) {
-							Variables.variableLoaded(name, null, DatabaseStorage.this);
-						} else {
-							final ClassInfo<?> c = Classes.getClassInfoNoError(type);
-							@SuppressWarnings("unused")
-							Serializer<?> s;
-							if (c == null || (s = c.getSerializer()) == null) {
-								Skript.error("Cannot load the variable {" + name + "} from the database '" + databaseName + "', because the type '" + type + "' cannot be recognised or cannot be stored in variables");
-								continue;
-							}
-//					if (s.mustSyncDeserialization()) {
-//						syncDeserializing.add(new VariableInfo(name, value, c));
-//					} else {
-							final Object d = Classes.deserialize(c, value);
-							if (d == null) {
-								Skript.error("Cannot load the variable {" + name + "} from the database '" + databaseName + "', because it cannot be loaded as " + c.getName().withIndefiniteArticle());
-								continue;
-							}
-							Variables.variableLoaded(name, d, DatabaseStorage.this);
-//					}
-						}
+				final ParallelDeserializer loader = new ParallelDeserializer(DatabaseStorage.this) {
+					@Override
+					protected void failed(final String name, final String type) {
+						loadFailed(name, type);
 					}
+				};
+				try {
+					readRows(r, loader);
 				} catch (final SQLException e) {
 					return e;
 				}
@@ -669,6 +829,74 @@ public class DatabaseStorage extends VariablesStorage {
 	
 //	final static LinkedList<OldVariableInfo> oldSyncDeserializing = new LinkedList<OldVariableInfo>();
 	
+	/**
+	 * Reads variables changed by other servers and applies them on Bukkit's main thread in batches, i.e. the main thread isn't blocked while the rows are fetched.
+	 * 
+	 * @param r
+	 * @return The number of read rows
+	 * @throws SQLException
+	 */
+	private int loadChanges(final ResultSet r) throws SQLException {
+		final ParallelDeserializer loader = new ParallelDeserializer(this) {
+			@Override
+			protected void failed(final String name, final String type) {
+				loadFailed(name, type);
+			}
+			
+			@Override
+			protected void loaded(final String[] names, final Object[] values, final int size) {
+				Task.callSync(new Callable<Void>() {
+					@Override
+					@Nullable
+					public Void call() throws Exception {
+						Variables.variablesChanged(names, values, size, DatabaseStorage.this);
+						return null;
+					}
+				});
+			}
+		};
+		return readRows(r, loader);
+	}
+	
+	/**
+	 * Passes all rows of the given result set to the given loader and {@link ParallelDeserializer#finish() finishes} it.
+	 * 
+	 * @param r
+	 * @param loader
+	 * @return The number of read rows
+	 * @throws SQLException
+	 */
+	private int readRows(final ResultSet r, final ParallelDeserializer loader) throws SQLException {
+		int n = 0;
+		try {
+			while (r.next()) {
+				n++;
+				int i = 1;
+				final String name = r.getString(i++);
+				if (name == null) {
+					Skript.error("Variable with NULL name found in the database '" + databaseName + "', ignoring it");
+					continue;
+				}
+				final String type = r.getString(i++);
+				final byte[] value = r.getBytes(i++); // Blob not supported by SQLite
+				lastRowID = Math.max(lastRowID, r.getLong(i++)); // rows are only ordered when monitoring
+				// values are deserialised in parallel while further rows are fetched
+				loader.add(name, value == null ? null : "" + type, value);
+			}
+		} finally {
+			loader.finish();
+		}
+		return n;
+	}
+	
+	private void loadFailed(final String name, final String type) {
+		final ClassInfo<?> c = Classes.getClassInfoNoError(type);
+		if (c == null || c.getSerializer() == null)
+			Skript.error("Cannot load the variable {" + name + "} from the database '" + databaseName + "', because the type '" + type + "' cannot be recognised or cannot be stored in variables");
+		else
+			Skript.error("Cannot load the variable {" + name + "} from the database '" + databaseName + "', because it cannot be loaded as " + c.getName().withIndefiniteArticle());
+	}
+	
 	@Deprecated
 	private void oldLoadVariables(final ResultSet r, final boolean hadNewTable) throws SQLException {
 //		synchronized (oldSyncDeserializing) {
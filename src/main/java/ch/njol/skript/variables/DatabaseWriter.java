@@ -0,0 +1,209 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.variables;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Writes variables to a database in JDBC batches, i.e. sends up to {@link #batchSize} changes to the database at once instead of executing one statement per variable.
+ * <p>
+ * Changes are executed in the order they were added in: a deletion executes all pending writes first and vice versa, thus a variable that is written and deleted in the same
+ * batch is always deleted in the end.
+ * <p>
+ * If a batch fails, its changes are executed again one by one, so that only the changes that fail by themselves are lost. Executing a change twice does no harm if the
+ * driver has executed part of the batch before failing, as changes replace or delete a row by its name.
+ * <p>
+ * This class is not thread-safe, it must be synchronised on the connection the statements belong to.
+ */
+final class DatabaseWriter {
+	
+	/**
+	 * Params: name, type, value, GUID
+	 */
+	private final PreparedStatement writeQuery;
+	/**
+	 * Params: name
+	 */
+	private final PreparedStatement deleteQuery;
+	
+	private final String guid;
+	
+	private final int batchSize;
+	
+	/**
+	 * The parameters of the changes in the current batches, used to execute them one by one if a batch fails
+	 */
+	private final List<Object[]> writes = new ArrayList<Object[]>();
+	private final List<String> deletes = new ArrayList<String>();
+	
+	DatabaseWriter(final PreparedStatement writeQuery, final PreparedStatement deleteQuery, final String guid, final int batchSize) {
+		assert batchSize > 0;
+		this.writeQuery = writeQuery;
+		this.deleteQuery = deleteQuery;
+		this.guid = guid;
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	 * Adds a change to the current batch, and executes the batch if it is full.
+	 * <p>
+	 * The change is added even if executing a previous batch fails.
+	 *
+	 * @param name
+	 * @param type The variable's type, or null to delete the variable
+	 * @param value The variable's serialised value, or null to delete the variable
+	 * @throws SQLException If any change could not be executed. Further exceptions are {@link SQLException#getNextException() chained} to it.
+	 */
+	void write(final String name, final @Nullable String type, final @Nullable byte[] value) throws SQLException {
+		SQLException error = null;
+		if (type == null || value == null) {
+			if (!writes.isEmpty())
+				error = executeWrites();
+			setDelete(name);
+			deleteQuery.addBatch();
+			deletes.add(name);
+			if (deletes.size() >= batchSize)
+				error = chain(error, executeDeletes());
+		} else {
+			if (!deletes.isEmpty())
+				error = executeDeletes();
+			final Object[] params = {name, type, value};
+			setWrite(params);
+			writeQuery.addBatch();
+			writes.add(params);
+			if (writes.size() >= batchSize)
+				error = chain(error, executeWrites());
+		}
+		if (error != null)
+			throw error;
+	}
+	
+	/**
+	 * Executes all pending changes. This does not commit them.
+	 *
+	 * @throws SQLException If any change could not be executed. Further exceptions are {@link SQLException#getNextException() chained} to it.
+	 */
+	void flush() throws SQLException {
+		SQLException error = null;
+		if (!writes.isEmpty())
+			error = executeWrites();
+		if (!deletes.isEmpty())
+			error = chain(error, executeDeletes());
+		if (error != null)
+			throw error;
+	}
+	
+	private void setWrite(final Object[] params) throws SQLException {
+		int i = 1;
+		writeQuery.setString(i++, (String) params[0]);
+		writeQuery.setString(i++, (String) params[1]);
+		writeQuery.setBytes(i++, (byte[]) params[2]); // SQLite desn't support setBlob
+		writeQuery.setString(i++, guid);
+	}
+	
+	private void setDelete(final String name) throws SQLException {
+		deleteQuery.setString(1, name);
+	}
+	
+	/**
+	 * @return The exception of the first change that failed, or null if all changes were executed
+	 */
+	@Nullable
+	private SQLException executeWrites() {
+		try {
+			writeQuery.executeBatch();
+			return null;
+		} catch (final SQLException e) {
+			clearBatch(writeQuery);
+			SQLException error = null;
+			for (final Object[] params : writes) {
+				try {
+					setWrite(params);
+					writeQuery.executeUpdate();
+				} catch (final SQLException e2) {
+					error = chain(error, e2);
+				}
+			}
+			return error;
+		} finally {
+			writes.clear();
+		}
+	}
+	
+	/**
+	 * @return The exception of the first change that failed, or null if all changes were executed
+	 */
+	@Nullable
+	private SQLException executeDeletes() {
+		try {
+			deleteQuery.executeBatch();
+			return null;
+		} catch (final SQLException e) {
+			clearBatch(deleteQuery);
+			SQLException error = null;
+			for (final String name : deletes) {
+				try {
+					setDelete(name);
+					deleteQuery.executeUpdate();
+				} catch (final SQLException e2) {
+					error = chain(error, e2);
+				}
+			}
+			return error;
+		} finally {
+			deletes.clear();
+		}
+	}
+	
+	private static void clearBatch(final PreparedStatement s) {
+		try {
+			s.clearBatch();
+		} catch (final SQLException e) {}
+	}
+	
+	@Nullable
+	private static SQLException chain(final @Nullable SQLException first, final @Nullable SQLException next) {
+		if (first == null)
+			return next;
+		if (next != null)
+			first.setNextException(next);
+		return first;
+	}
+	
+	/**
+	 * Discards all pending changes and closes the statements.
+	 */
+	void close() {
+		try {
+			writeQuery.close();
+		} catch (final SQLException e) {}
+		try {
+			deleteQuery.close();
+		} catch (final SQLException e) {}
+	}
+	
+}
@@ -22,19 +22,23 @@
 package ch.njol.skript.variables;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.Flushable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map.Entry;
-import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -48,7 +52,6 @@ import ch.njol.skript.registrations.Classes;
 import ch.njol.skript.util.ExceptionUtils;
 import ch.njol.skript.util.FileUtils;
 import ch.njol.skript.util.Task;
-import ch.njol.skript.util.Utils;
 import ch.njol.skript.util.Version;
 import ch.njol.util.NotifyingReference;
 
@@ -65,9 +68,24 @@ public class FlatFileStorage extends VariablesStorage {
 	public final static Charset UTF_8 = Charset.forName("UTF-8");
 	
 	/**
-	 * A Lock on this object must be acquired after connectionLock (if that lock is used) (and thus also after {@link Variables#getReadLock()}).
+	 * Writes variables to a file in the format of a specific storage.
 	 */
-	private final NotifyingReference<PrintWriter> changesWriter = new NotifyingReference<PrintWriter>();
+	protected static interface VariablesWriter extends Closeable, Flushable {
+		
+		/**
+		 * @param name
+		 * @param type The variable's type, or null if it was deleted
+		 * @param value The variable's serialised value, or null if it was deleted
+		 * @throws IOException
+		 */
+		public void write(String name, @Nullable String type, @Nullable byte[] value) throws IOException;
+		
+	}
+	
+	/**
+	 * A Lock on this object must be acquired after connectionLock (if that lock is used) (and thus also after any variable segment's lock).
+	 */
+	private final NotifyingReference<VariablesWriter> changesWriter = new NotifyingReference<VariablesWriter>();
 	
 	private volatile boolean loaded = false;
 	
@@ -79,95 +97,59 @@ public class FlatFileStorage extends VariablesStorage {
 	
 	private boolean loadError = false;
 	
+	/**
+	 * Set while loading if the file has to be rewritten once all variables are loaded
+	 */
+	private boolean rewriteAfterLoad = false;
+	
+	/**
+	 * The file changes are appended to while the variables are being {@link #compact() compacted}, or null if changes are appended to the database file itself. Guarded by
+	 * connectionLock.
+	 */
+	@Nullable
+	private File sideLog = null;
+	
+	// only used while loading
+	private int unsuccessful = 0;
+	private final StringBuilder invalid = new StringBuilder();
+	
 	protected FlatFileStorage(final String name) {
 		super(name);
 	}
 	
+	@Override
+	protected boolean canLoadInParallel() {
+		return true;
+	}
+	
 	/**
 	 * Doesn'ts lock the connection as required by {@link Variables#variableLoaded(String, Object, VariablesStorage)}.
 	 */
-	@SuppressWarnings({"deprecation"})
 	@Override
 	protected boolean load_i(final SectionNode n) {
 		SkriptLogger.setNode(null);
 		
-		IOException ioEx = null;
-		int unsuccessful = 0;
-		final StringBuilder invalid = new StringBuilder();
-		
-		Version varVersion = Skript.getVersion(); // will be set later
-		
-		final Version v2_0_beta3 = new Version(2, 0, "beta 3");
-		boolean update2_0_beta3 = false;
-		final Version v2_1 = new Version(2, 1);
-		boolean update2_1 = false;
+		final File file = this.file;
+		if (file == null) {
+			assert false : this;
+			return false;
+		}
 		
-		BufferedReader r = null;
+		IOException ioEx = null;
+		boolean update = false;
 		try {
-			r = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
-			String line = null;
-			int lineNum = 0;
-			while ((line = r.readLine()) != null) {
-				lineNum++;
-				line = line.trim();
-				if (line.isEmpty() || line.startsWith("#")) {
-					if (line.startsWith("# version:")) {
-						try {
-							varVersion = new Version("" + line.substring("# version:".length()).trim());
-							update2_0_beta3 = varVersion.isSmallerThan(v2_0_beta3);
-							update2_1 = varVersion.isSmallerThan(v2_1);
-						} catch (final IllegalArgumentException e) {}
-					}
-					continue;
-				}
-				final String[] split = splitCSV(line);
-				if (split == null || split.length != 3) {
-					Skript.error("invalid amount of commas in line " + lineNum + " ('" + line + "')");
-					if (invalid.length() != 0)
-						invalid.append(", ");
-					invalid.append(split == null ? "<unknown>" : split[0]);
-					unsuccessful++;
-					continue;
-				}
-				if (split[1].equals("null")) {
-					Variables.variableLoaded("" + split[0], null, this);
-				} else {
-					Object d;
-					if (update2_1)
-						d = Classes.deserialize("" + split[1], "" + split[2]);
-					else
-						d = Classes.deserialize("" + split[1], decode("" + split[2]));
-					if (d == null) {
-						if (invalid.length() != 0)
-							invalid.append(", ");
-						invalid.append(split[0]);
-						unsuccessful++;
-						continue;
-					}
-					if (d instanceof String && update2_0_beta3) {
-						d = Utils.replaceChatStyles((String) d);
-					}
-					Variables.variableLoaded("" + split[0], d, this);
-				}
+			update = loadFile(file);
+			final File log = getSideLogFile(file);
+			if (log.exists()) { // the server stopped while the variables were being compacted
+				loadFile(log);
+				update = true;
 			}
 		} catch (final IOException e) {
 			loadError = true;
 			ioEx = e;
-		} finally {
-			if (r != null) {
-				try {
-					r.close();
-				} catch (final IOException e) {}
-			}
 		}
 		
-		final File file = this.file;
-		if (file == null) {
-			assert false : this;
-			return false;
-		}
-		
-		if (ioEx != null || unsuccessful > 0 || update2_1) {
+		if (ioEx != null || unsuccessful > 0 || update) {
 			if (unsuccessful > 0) {
 				Skript.error(unsuccessful + " variable" + (unsuccessful == 1 ? "" : "s") + " could not be loaded!");
 				Skript.error("Affected variables: " + invalid.toString());
@@ -177,8 +159,8 @@ public class FlatFileStorage extends VariablesStorage {
 				Skript.error("This means that some to all variables could not be loaded!");
 			}
 			try {
-				if (update2_1) {
-					Skript.info("[2.1] updating " + file.getName() + " to the new format...");
+				if (update) {
+					Skript.info("Rewriting " + file.getName() + "...");
 				}
 				final File bu = FileUtils.backup(file);
 				Skript.info("Created a backup of " + file.getName() + " as " + bu.getName());
@@ -188,23 +170,21 @@ public class FlatFileStorage extends VariablesStorage {
 			}
 		}
 		
-		if (update2_1) {
-			saveVariables(false);
-			Skript.info(file.getName() + " successfully updated.");
-		}
+		// the variables are only available once all databases have been loaded
+		rewriteAfterLoad = update;
 		
 		connect();
 		
 		saveTask = new Task(Skript.getInstance(), 5 * 60 * 20, 5 * 60 * 20, true) {
 			@Override
 			public void run() {
-				if (changes.get() >= REQUIRED_CHANGES_FOR_RESAVE) {
-					try {
-						Variables.getReadLock().lock();
+				final int c = changes.get();
+				if (c >= REQUIRED_CHANGES_FOR_RESAVE) {
+					if (loadError) { // backs up the file, which cannot be compacted until then
 						saveVariables(false);
 						changes.set(0);
-					} finally {
-						Variables.getReadLock().unlock();
+					} else if (compact()) {
+						changes.addAndGet(-c);
 					}
 				}
 			}
@@ -213,9 +193,93 @@ public class FlatFileStorage extends VariablesStorage {
 		return ioEx == null;
 	}
 	
+	/**
+	 * Records a variable that could not be loaded.
+	 * 
+	 * @param name The variable's name, or null if it is not known
+	 */
+	protected final void loadFailed(final @Nullable String name) {
+		if (invalid.length() != 0)
+			invalid.append(", ");
+		invalid.append(name == null ? "<unknown>" : name);
+		unsuccessful++;
+	}
+	
+	/**
+	 * Reads all variables from the given file and passes them to {@link Variables#variableLoaded(String, Object, VariablesStorage)}, usually through a
+	 * {@link ParallelDeserializer}. Variables that cannot be loaded must be reported with {@link #loadFailed(String)}.
+	 * <p>
+	 * Called on a loading thread if several databases are loaded in parallel.
+	 * 
+	 * @param file
+	 * @return Whether the file must be rewritten (e.g. because it is in an outdated format)
+	 * @throws IOException
+	 */
+	protected boolean loadFile(final File file) throws IOException {
+		Version varVersion = Skript.getVersion(); // will be set later
+		
+		final Version v2_0_beta3 = new Version(2, 0, "beta 3");
+		boolean update2_0_beta3 = false;
+		final Version v2_1 = new Version(2, 1);
+		boolean update2_1 = false;
+		
+		final ParallelDeserializer loader = new ParallelDeserializer(this) {
+			@Override
+			protected void failed(final String name, final String type) {
+				loadFailed(name);
+			}
+		};
+		final BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+		try {
+			String line = null;
+			int lineNum = 0;
+			while ((line = r.readLine()) != null) {
+				lineNum++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					if (line.startsWith("# version:")) {
+						try {
+							varVersion = new Version("" + line.substring("# version:".length()).trim());
+							update2_0_beta3 = varVersion.isSmallerThan(v2_0_beta3);
+							update2_1 = varVersion.isSmallerThan(v2_1);
+						} catch (final IllegalArgumentException e) {}
+					}
+					continue;
+				}
+				final String[] split = splitCSV(line);
+				if (split == null || split.length != 3) {
+					Skript.error("invalid amount of commas in line " + lineNum + " ('" + line + "')");
+					loadFailed(split == null ? null : split[0]);
+					continue;
+				}
+				if (split[1].equals("null")) {
+					loader.add("" + split[0], null, null);
+				} else if (update2_1) { // old files are deserialised on the main thread
+					loader.finish();
+					Variables.variableLoaded("" + split[0], new Variables.DeferredValue("" + split[1], "" + split[2], update2_0_beta3), this);
+				} else {
+					loader.add("" + split[0], split[1], decode("" + split[2]));
+				}
+			}
+			loader.finish();
+		} finally {
+			try {
+				r.close();
+			} catch (final IOException e) {}
+		}
+		return update2_1;
+	}
+	
 	@Override
 	protected void allLoaded() {
 		// no transaction support
+		if (rewriteAfterLoad) {
+			rewriteAfterLoad = false;
+			saveVariables(false);
+			final File file = this.file;
+			if (file != null)
+				Skript.info(file.getName() + " successfully rewritten.");
+		}
 	}
 	
 	@Override
@@ -268,6 +332,21 @@ public class FlatFileStorage extends VariablesStorage {
 		return r.toArray(new String[r.size()]);
 	}
 	
+	/**
+	 * Must be called while holding the lock on {@link #changesWriter}.
+	 */
+	private final VariablesWriter getChangesWriter() {
+		VariablesWriter cw;
+		while ((cw = changesWriter.get()) == null) {
+			try {
+				changesWriter.wait();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return cw;
+	}
+	
 	@SuppressWarnings("resource")
 	@Override
 	protected boolean save(final String name, final @Nullable String type, final @Nullable byte[] value) {
@@ -275,22 +354,43 @@ public class FlatFileStorage extends VariablesStorage {
 			synchronized (changesWriter) {
 				if (!loaded && type == null)
 					return true; // deleting variables is not really required for this kind of storage, as it will be completely rewritten every once in a while, and at least once when the server stops.
-				PrintWriter cw;
-				while ((cw = changesWriter.get()) == null) {
-					try {
-						changesWriter.wait();
-					} catch (final InterruptedException e) {
-						Thread.currentThread().interrupt();
-					}
+				final VariablesWriter cw = getChangesWriter();
+				try {
+					cw.write(name, type, value);
+					cw.flush();
+				} catch (final IOException e) {
+					Skript.error("Unable to write to the database '" + databaseName + "': " + ExceptionUtils.toString(e));
+					return false;
 				}
-				writeCSV(cw, name, type, value == null ? "" : encode(value));
-				cw.flush();
 				changes.incrementAndGet();
 			}
 		}
 		return true;
 	}
 	
+	/**
+	 * Writes all variables before flushing the file once.
+	 */
+	@SuppressWarnings("resource")
+	@Override
+	protected void save(final List<SerializedVariable> vars) {
+		synchronized (connectionLock) {
+			synchronized (changesWriter) {
+				final VariablesWriter cw = getChangesWriter();
+				try {
+					for (final SerializedVariable var : vars) {
+						final SerializedVariable.Value value = var.value;
+						cw.write(var.name, value == null ? null : value.type, value == null ? null : value.data);
+					}
+					cw.flush();
+				} catch (final IOException e) {
+					Skript.error("Unable to write to the database '" + databaseName + "': " + ExceptionUtils.toString(e));
+				}
+				changes.addAndGet(vars.size());
+			}
+		}
+	}
+	
 	/**
 	 * Use with find()
 	 */
@@ -310,33 +410,104 @@ public class FlatFileStorage extends VariablesStorage {
 		pw.println();
 	}
 	
-	@SuppressWarnings("null")
+	private final static class CSVWriter implements VariablesWriter {
+		
+		private final PrintWriter pw;
+		
+		CSVWriter(final PrintWriter pw) {
+			this.pw = pw;
+		}
+		
+		@Override
+		public void write(final String name, final @Nullable String type, final @Nullable byte[] value) {
+			writeCSV(pw, name, type, value == null ? "" : encode(value));
+		}
+		
+		@Override
+		public void flush() {
+			pw.flush();
+		}
+		
+		@Override
+		public void close() {
+			pw.close();
+		}
+		
+	}
+	
+	/**
+	 * Opens a writer that appends changed variables to the given file.
+	 * 
+	 * @param f
+	 * @return A new writer
+	 * @throws IOException
+	 */
+	protected VariablesWriter newChangesWriter(final File f) throws IOException {
+		return new CSVWriter(new PrintWriter(new OutputStreamWriter(new FileOutputStream(f, true), UTF_8)));
+	}
+	
+	/**
+	 * Opens a writer that writes all variables to a new file, replacing the given file if it exists.
+	 * 
+	 * @param f
+	 * @return A new writer
+	 * @throws IOException
+	 */
+	protected VariablesWriter newSaveWriter(final File f) throws IOException {
+		final PrintWriter pw = new PrintWriter(f, "UTF-8");
+		pw.println("# === Skript's variable storage ===");
+		pw.println("# Please do not modify this file manually!");
+		pw.println("#");
+		pw.println("# version: " + Skript.getVersion());
+		pw.println();
+		return new CSVWriter(pw);
+	}
+	
+	/**
+	 * @return The number of bytes at the start of a file that must be skipped when appending one file of this format to another
+	 */
+	protected int getHeaderLength() {
+		return 0;
+	}
+	
 	@Override
 	protected final void disconnect() {
 		synchronized (connectionLock) {
 			clearChangesQueue();
-			synchronized (changesWriter) {
-				final PrintWriter cw = changesWriter.get();
-				if (cw != null) {
+			closeChangesWriter();
+		}
+	}
+	
+	private final void closeChangesWriter() {
+		synchronized (changesWriter) {
+			final VariablesWriter cw = changesWriter.get();
+			if (cw != null) {
+				try {
 					cw.close();
-					changesWriter.set(null);
+				} catch (final IOException e) {
+					Skript.error("Unable to close the database '" + databaseName + "': " + ExceptionUtils.toString(e));
 				}
+				changesWriter.set(null);
 			}
 		}
 	}
 	
-	@SuppressWarnings("unused")
 	@Override
 	protected final boolean connect() {
 		synchronized (connectionLock) {
 			synchronized (changesWriter) {
 				if (changesWriter.get() != null)
 					return true;
+				final File f = sideLog != null ? sideLog : file;
+				if (f == null) {
+					assert false : this;
+					return false;
+				}
 				try {
-					changesWriter.set(new PrintWriter(new OutputStreamWriter(new FileOutputStream(file, true), UTF_8)));
+					changesWriter.set(newChangesWriter(f));
 					loaded = true;
 					return true;
-				} catch (final FileNotFoundException e) {
+				} catch (final IOException e) {
 					Skript.exception(e);
 					return false;
 				}
@@ -351,6 +522,122 @@ public class FlatFileStorage extends VariablesStorage {
 		saveVariables(true); // also closes the writer
 	}
 	
+	final static File getSideLogFile(final File f) {
+		return new File(f.getParentFile(), f.getName() + ".changes");
+	}
+	
+	/**
+	 * Appends the contents of one file to another, skipping the header of the appended file.
+	 */
+	private final void appendLog(final File from, final File to) throws IOException {
+		final InputStream in = new FileInputStream(from);
+		try {
+			final OutputStream out = new FileOutputStream(to, true);
+			try {
+				long skip = getHeaderLength();
+				while (skip > 0) {
+					final long s = in.skip(skip);
+					if (s <= 0)
+						return; // empty log
+					skip -= s;
+				}
+				final byte[] buffer = new byte[1 << 16];
+				int n;
+				while ((n = in.read(buffer)) != -1)
+					out.write(buffer, 0, n);
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Rewrites the file with only the current variables like {@link #saveVariables(boolean)}, but without blocking: changes made while the file is being rewritten are appended to
+	 * a side log, which is then appended to the new file before it atomically replaces the old one.
+	 * <p>
+	 * The variables are not locked while they are being written, as the variables tree is safe to traverse concurrently. Every change that is missed by the traversal is written
+	 * to the side log as it has to be made after the side log has been opened.
+	 * 
+	 * @return Whether the file has been compacted. If not, the file still contains all changes, but is not smaller.
+	 */
+	final boolean compact() {
+		final File f = file;
+		if (f == null) {
+			assert false : this;
+			return false;
+		}
+		final File log = getSideLogFile(f);
+		final File tempFile = new File(f.getParentFile(), f.getName() + ".compact");
+		synchronized (connectionLock) {
+			if (sideLog != null || loadError) // the file must be backed up by saveVariables after a load error
+				return false;
+			synchronized (changesWriter) {
+				closeChangesWriter();
+				if (log.exists() && !log.delete()) {
+					Skript.error("Unable to delete the old " + log.getName() + ", thus the database '" + databaseName + "' cannot be compacted");
+					connect();
+					return false;
+				}
+				sideLog = log;
+				connect();
+			}
+		}
+		
+		boolean success = false;
+		VariablesWriter w = null;
+		try {
+			w = newSaveWriter(tempFile);
+			final VariablesMap.Node root = Variables.getVariables();
+			for (final Entry<String, Object> e : root.children.entrySet()) {
+				final String segment = e.getKey();
+				assert segment != null;
+				save(w, segment, e.getValue());
+			}
+			w.close();
+			w = null;
+			success = true;
+		} catch (final IOException e) {
+			Skript.error("Unable to compact the database '" + databaseName + "': " + ExceptionUtils.toString(e));
+		} finally {
+			if (w != null) {
+				try {
+					w.close();
+				} catch (final IOException e) {}
+			}
+		}
+		
+		synchronized (connectionLock) {
+			synchronized (changesWriter) {
+				if (sideLog != log) { // the variables have been completely saved in the meantime
+					tempFile.delete();
+					return true;
+				}
+				closeChangesWriter();
+				try {
+					if (success) {
+						appendLog(log, tempFile);
+						FileUtils.move(tempFile, f, true);
+					} else {
+						tempFile.delete();
+						appendLog(log, f);
+					}
+					sideLog = null;
+					if (!log.delete())
+						Skript.error("Unable to delete " + log.getName() + ". Please delete it manually before restarting the server, otherwise old values of variables may be loaded.");
+					return success;
+				} catch (final IOException e) {
+					// changes continue to be appended to the side log, which will be merged by the next complete save
+					Skript.error("Unable to finish compacting the database '" + databaseName + "': " + ExceptionUtils.toString(e));
+					return false;
+				} finally {
+					connect();
+				}
+			}
+		}
+	}
+	
 	/**
 	 * Completely rewrites the while file
 	 * 
@@ -365,86 +652,93 @@ public class FlatFileStorage extends VariablesStorage {
 			if (bt != null)
 				bt.cancel();
 		}
-		try {
-			Variables.getReadLock().lock();
-			synchronized (connectionLock) {
-				try {
-					final File f = file;
-					if (f == null) {
-						assert false : this;
+		synchronized (connectionLock) {
+			try {
+				final File f = file;
+				if (f == null) {
+					assert false : this;
+					return;
+				}
+				disconnect();
+				if (loadError) {
+					try {
+						final File backup = FileUtils.backup(f);
+						Skript.info("Created a backup of the old " + f.getName() + " as " + backup.getName());
+						loadError = false;
+					} catch (final IOException e) {
+						Skript.error("Could not backup the old " + f.getName() + ": " + ExceptionUtils.toString(e));
+						Skript.error("No variables are saved!");
 						return;
 					}
-					disconnect();
-					if (loadError) {
+				}
+				final File tempFile = new File(f.getParentFile(), f.getName() + ".temp");
+				VariablesWriter pw = null;
+				try {
+					pw = newSaveWriter(tempFile);
+					final VariablesMap.Node root = Variables.getVariables();
+					for (final String segment : root.children.keySet()) {
+						assert segment != null;
+						final Lock lock = Variables.getSegmentLock(segment).readLock();
+						lock.lock();
 						try {
-							final File backup = FileUtils.backup(f);
-							Skript.info("Created a backup of the old " + f.getName() + " as " + backup.getName());
-							loadError = false;
-						} catch (final IOException e) {
-							Skript.error("Could not backup the old " + f.getName() + ": " + ExceptionUtils.toString(e));
-							Skript.error("No variables are saved!");
-							return;
+							save(pw, segment, root.children.get(segment));
+						} finally {
+							lock.unlock();
 						}
 					}
-					final File tempFile = new File(Skript.getInstance().getDataFolder(), "variables.csv.temp");
-					PrintWriter pw = null;
-					try {
-						pw = new PrintWriter(tempFile, "UTF-8");
-						pw.println("# === Skript's variable storage ===");
-						pw.println("# Please do not modify this file manually!");
-						pw.println("#");
-						pw.println("# version: " + Skript.getVersion());
-						pw.println();
-						save(pw, "", Variables.getVariables());
-						pw.println();
-						pw.flush();
-						pw.close();
-						FileUtils.move(tempFile, f, true);
-					} catch (final IOException e) {
-						Skript.error("Unable to make a final save of the database '" + databaseName + "' (no variables are lost): " + ExceptionUtils.toString(e)); // FIXME happens at random - check locks/threads
-					} finally {
-						if (pw != null)
-							pw.close();
-					}
+					pw.flush();
+					pw.close();
+					pw = null;
+					FileUtils.move(tempFile, f, true);
+					// the side log of a running compaction is obsolete now. The compaction will notice this and discard its file.
+					sideLog = null;
+					final File log = getSideLogFile(f);
+					if (log.exists() && !log.delete())
+						Skript.error("Unable to delete " + log.getName() + ". Please delete it manually before restarting the server, otherwise old values of variables may be loaded.");
+				} catch (final IOException e) {
+					Skript.error("Unable to make a final save of the database '" + databaseName + "' (no variables are lost): " + ExceptionUtils.toString(e)); // FIXME happens at random - check locks/threads
 				} finally {
-					if (!finalSave) {
-						connect();
+					if (pw != null) {
+						try {
+							pw.close();
+						} catch (final IOException e) {}
 					}
 				}
+			} finally {
+				if (!finalSave) {
+					connect();
+				}
 			}
-		} finally {
-			Variables.getReadLock().unlock();
 		}
 	}
 	
 	/**
-	 * Saves the variables.
+	 * Saves a variable or a list variable including all its elements.
 	 * <p>
-	 * This method uses the sorted variables map to save the variables in order.
+	 * The variable tree is sorted, thus the variables are saved in order.
 	 * 
 	 * @param pw
-	 * @param parent The parent's name with {@link Variable#SEPARATOR} at the end
-	 * @param map
+	 * @param name The name of the variable or list variable (without {@link Variable#SEPARATOR} at the end)
+	 * @param value The variable's value or a {@link VariablesMap.Node}
+	 * @throws IOException
 	 */
-	@SuppressWarnings("unchecked")
-	private final void save(final PrintWriter pw, final String parent, final TreeMap<String, Object> map) {
-		outer: for (final Entry<String, Object> e : map.entrySet()) {
-			final Object val = e.getValue();
-			if (val == null)
-				continue;
-			if (val instanceof TreeMap) {
-				save(pw, parent + e.getKey() + Variable.SEPARATOR, (TreeMap<String, Object>) val);
-			} else {
-				final String name = (e.getKey() == null ? parent.substring(0, parent.length() - Variable.SEPARATOR.length()) : parent + e.getKey());
-				for (final VariablesStorage s : Variables.storages) {
-					if (s != this && s.accept(name))
-						continue outer;
-				}
-				final SerializedVariable.Value value = Classes.serialize(val);
-				if (value != null)
-					writeCSV(pw, name, value.type, encode(value.data));
-			}
+	private final void save(final VariablesWriter pw, final String name, final @Nullable Object value) throws IOException {
+		if (value == null)
+			return;
+		if (value instanceof VariablesMap.Node) {
+			final VariablesMap.Node node = (VariablesMap.Node) value;
+			save(pw, name, node.value);
+			for (final Entry<String, Object> e : node.children.entrySet())
+				save(pw, name + Variable.SEPARATOR + e.getKey(), e.getValue());
+			return;
+		}
+		for (final VariablesStorage s : Variables.storages) {
+			if (s != this && s.accept(name))
+				return;
 		}
+		final SerializedVariable.Value v = Classes.serialize(value);
+		if (v != null)
+			pw.write(name, v.type, v.data);
 	}
 	
 }
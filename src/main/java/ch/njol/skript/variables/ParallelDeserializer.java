@@ -0,0 +1,175 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.variables;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import ch.njol.skript.Skript;
+
+/**
+ * Deserialises the variables read by a storage in batches on {@link Variables#getLoadExecutor() the loading threads}, and passes them to
+ * {@link #loaded(String[], Object[], int)} in the order they were read in, on the thread that reads them. Once all storages have been loaded the variables are deserialised
+ * on the reading thread.
+ * <p>
+ * Values of types that must be deserialised on Bukkit's main thread are passed as {@link Variables.DeferredValue}s.
+ */
+abstract class ParallelDeserializer {
+	
+	private final static int BATCH_SIZE = 1000;
+	
+	private final static class Batch implements Callable<Batch> {
+		final String[] names = new String[BATCH_SIZE];
+		// elements are null for deleted variables
+		final String[] types = new String[BATCH_SIZE];
+		final byte[][] data = new byte[BATCH_SIZE][];
+		final Object[] values = new Object[BATCH_SIZE];
+		int size = 0;
+		
+		@Override
+		public Batch call() {
+			for (int i = 0; i < size; i++) {
+				final String type = types[i];
+				final byte[] d = data[i];
+				values[i] = type == null || d == null ? null : Variables.deserialize(type, d);
+			}
+			return this;
+		}
+	}
+	
+	private final VariablesStorage storage;
+	
+	@Nullable
+	private final ExecutorService executor;
+	
+	/**
+	 * Limits the number of batches held in memory
+	 */
+	private final int maxPending;
+	
+	private final LinkedList<Future<Batch>> pending = new LinkedList<Future<Batch>>();
+	
+	private Batch batch = new Batch();
+	
+	ParallelDeserializer(final VariablesStorage storage) {
+		this.storage = storage;
+		executor = Variables.getLoadExecutor();
+		maxPending = 2 * Variables.getLoadThreads();
+	}
+	
+	/**
+	 * Called for each variable that could not be deserialised, in order with the loaded variables.
+	 *
+	 * @param name
+	 * @param type
+	 */
+	protected abstract void failed(String name, String type);
+	
+	/**
+	 * Adds a read variable.
+	 *
+	 * @param name
+	 * @param type The variable's type, or null if the variable was deleted
+	 * @param data The variable's serialised value, or null if the variable was deleted
+	 */
+	public final void add(final String name, final @Nullable String type, final @Nullable byte[] data) {
+		final Batch b = batch;
+		b.names[b.size] = name;
+		b.types[b.size] = type;
+		b.data[b.size] = data;
+		if (++b.size == BATCH_SIZE)
+			submit();
+	}
+	
+	private final void submit() {
+		final Batch b = batch;
+		batch = new Batch();
+		final ExecutorService executor = this.executor;
+		if (executor == null) {
+			process(b.call());
+			return;
+		}
+		if (pending.size() >= maxPending)
+			process(pending.removeFirst());
+		pending.add(executor.submit(b));
+	}
+	
+	/**
+	 * Waits for all added variables to be deserialised and passes them on. Must be called after the last variable has been added.
+	 */
+	public final void finish() {
+		if (batch.size != 0)
+			submit();
+		while (!pending.isEmpty())
+			process(pending.removeFirst());
+	}
+	
+	private final void process(final Future<Batch> f) {
+		Batch b;
+		while (true) {
+			try {
+				b = f.get();
+				break;
+			} catch (final InterruptedException e) {} catch (final ExecutionException e) {
+				Skript.exception(e.getCause(), "Error while loading variables from the database '" + storage.databaseName + "'");
+				return;
+			}
+		}
+		process(b);
+	}
+	
+	private final void process(final Batch b) {
+		// variables that could not be deserialised are reported and removed from the batch
+		int n = 0;
+		for (int i = 0; i < b.size; i++) {
+			final String name = b.names[i], type = b.types[i];
+			final Object value = b.values[i];
+			if (type != null && value == null) {
+				failed(name, type);
+				continue;
+			}
+			b.names[n] = name;
+			b.values[n] = value;
+			n++;
+		}
+		loaded(b.names, b.values, n);
+	}
+	
+	/**
+	 * Called with each batch of deserialised variables. The default implementation passes the variables to {@link Variables#variableLoaded(String, Object, VariablesStorage)}
+	 * one by one.
+	 * 
+	 * @param names
+	 * @param values The deserialised values, null for deleted variables
+	 * @param size The number of variables in the batch
+	 */
+	protected void loaded(final String[] names, final Object[] values, final int size) {
+		for (int i = 0; i < size; i++)
+			Variables.variableLoaded(names[i], values[i], storage);
+	}
+	
+}
@@ -0,0 +1,121 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.variables;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import ch.njol.skript.lang.Variable;
+
+/**
+ * The store for global variables. The namespace is split into segments by the variable's top-level name (i.e. the part before the first {@link Variable#SEPARATOR}), each of
+ * which is locked separately when changing variables. Reading variables doesn't lock at all.
+ */
+final class SegmentedVariablesMap {
+	
+	final VariablesMap map = new VariablesMap();
+	
+	/**
+	 * Segments' locks are never removed, even if the segment becomes empty.
+	 */
+	private final ConcurrentHashMap<String, ReadWriteLock> locks = new ConcurrentHashMap<String, ReadWriteLock>();
+	
+	final static String getSegmentName(final String name) {
+		final int i = name.indexOf(Variable.SEPARATOR);
+		return i == -1 ? name : "" + name.substring(0, i);
+	}
+	
+	/**
+	 * Changes to the segment are only made while holding its write lock, i.e. holding the read lock guarantees that the segment doesn't change.
+	 * 
+	 * @param segmentName The top-level name of the segment
+	 * @return The segment's lock
+	 */
+	final ReadWriteLock getLock(final String segmentName) {
+		ReadWriteLock lock = locks.get(segmentName);
+		if (lock == null) {
+			final ReadWriteLock newLock = new ReentrantReadWriteLock();
+			lock = locks.putIfAbsent(segmentName, newLock);
+			if (lock == null)
+				lock = newLock;
+		}
+		return lock;
+	}
+	
+	/**
+	 * Returns the internal value of the requested variable.
+	 * <p>
+	 * <b>Do not modify the returned value!</b>
+	 * 
+	 * @param name
+	 * @return an Object for a normal Variable or a Map<String, Object> for a list variable, or null if the variable is not set.
+	 */
+	@Nullable
+	final Object getVariable(final String name) {
+		return map.getVariable(name);
+	}
+	
+	/**
+	 * @param split The variable's name split at the separators
+	 * @return an Object for a normal Variable or a Map<String, Object> for a list variable, or null if the variable is not set.
+	 */
+	@Nullable
+	final Object getVariable(final String[] split) {
+		return map.getVariable(split);
+	}
+	
+	/**
+	 * @param split The list's name split at the separators
+	 * @return An iterator over the list's elements, or null if the list doesn't exist
+	 */
+	@Nullable
+	final Iterator<Entry<String, Object>> listIterator(final String[] split) {
+		return map.listIterator(split);
+	}
+	
+	/**
+	 * Sets a variable. Only locks the variable's segment.
+	 * 
+	 * @param name The variable's name. Can be a "list variable::*" (<tt>value</tt> must be <tt>null</tt> in this case)
+	 * @param value The variable's value. Use <tt>null</tt> to delete the variable.
+	 */
+	final void setVariable(final String name, final @Nullable Object value) {
+		final Lock lock = getLock(getSegmentName(name)).writeLock();
+		lock.lock();
+		try {
+			map.setVariable(name, value);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	final int size() {
+		return map.size();
+	}
+	
+}
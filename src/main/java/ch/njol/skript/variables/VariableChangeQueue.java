@@ -0,0 +1,180 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.variables;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import ch.njol.skript.registrations.Classes;
+
+/**
+ * Holds changed variables until they are saved. Pending changes of the same variable are coalesced, i.e. if a variable is changed several times before it is saved, only its
+ * last value will be saved.
+ * <p>
+ * Variables are taken from the queue in the order they were first changed in.
+ * <p>
+ * Values can either be queued already serialised, or as a {@link Classes#snapshot(Object) snapshot} which is then only serialised by the thread that takes it from the queue.
+ * A snapshot that is replaced before being taken is thus never serialised.
+ */
+final class VariableChangeQueue {
+	
+	/**
+	 * A value that still has to be serialised
+	 */
+	private final static class Snapshot {
+		final Object value;
+		
+		Snapshot(final Object value) {
+			this.value = value;
+		}
+	}
+	
+	/**
+	 * Maps variable names to either a {@link SerializedVariable.Value}, a {@link Snapshot}, or <tt>null</tt> if the variable was deleted.
+	 * <p>
+	 * Must be synchronised on this queue.
+	 */
+	private final LinkedHashMap<String, Object> pending = new LinkedHashMap<String, Object>();
+	
+	private long added = 0, coalesced = 0;
+	
+	/**
+	 * The number of variables that have been taken from this queue but not yet been {@link #saved(int) saved}
+	 */
+	private int saving = 0;
+	
+	/**
+	 * Adds a changed variable, replacing any pending change of the same variable.
+	 *
+	 * @param var
+	 */
+	void add(final SerializedVariable var) {
+		put(var.name, var.value);
+	}
+	
+	/**
+	 * Adds a changed variable whose value will be serialised when it is taken from this queue, replacing any pending change of the same variable.
+	 * 
+	 * @param name
+	 * @param snapshot A snapshot as returned by {@link Classes#snapshot(Object)}
+	 */
+	void addSnapshot(final String name, final Object snapshot) {
+		put(name, new Snapshot(snapshot));
+	}
+	
+	private synchronized void put(final String name, final @Nullable Object value) {
+		added++;
+		if (pending.containsKey(name))
+			coalesced++;
+		pending.put(name, value);
+		notifyAll();
+	}
+	
+	/**
+	 * Waits until at least one variable is pending and removes up to <tt>max</tt> variables from this queue. Snapshots are serialised by the calling thread after the variables
+	 * have been removed, i.e. without blocking threads that add changes.
+	 * <p>
+	 * The variables count as being saved until {@link #saved(int)} is called for them.
+	 *
+	 * @param max The maximum number of variables to take
+	 * @return A non-empty list of changed variables
+	 * @throws InterruptedException
+	 */
+	List<SerializedVariable> take(final int max) throws InterruptedException {
+		final String[] names;
+		final Object[] values;
+		synchronized (this) {
+			while (pending.isEmpty())
+				wait();
+			final int n = Math.min(max, pending.size());
+			names = new String[n];
+			values = new Object[n];
+			final Iterator<Entry<String, Object>> iter = pending.entrySet().iterator();
+			for (int i = 0; i < n; i++) {
+				final Entry<String, Object> e = iter.next();
+				names[i] = e.getKey();
+				values[i] = e.getValue();
+				iter.remove();
+			}
+			saving += n;
+		}
+		final List<SerializedVariable> batch = new ArrayList<SerializedVariable>(names.length);
+		boolean serialised = false;
+		try {
+			for (int i = 0; i < names.length; i++) {
+				final Object v = values[i];
+				final SerializedVariable.Value value = v instanceof Snapshot ? Classes.serialize(((Snapshot) v).value) : (SerializedVariable.Value) v;
+				batch.add(new SerializedVariable("" + names[i], value));
+			}
+			serialised = true;
+		} finally {
+			if (!serialised)
+				saved(names.length);
+		}
+		return batch;
+	}
+	
+	/**
+	 * Must be called after variables taken from this queue have been handed to the storages.
+	 * 
+	 * @param n The number of saved variables
+	 */
+	synchronized void saved(final int n) {
+		assert saving >= n;
+		saving -= n;
+		notifyAll();
+	}
+	
+	/**
+	 * @return The number of variables waiting to be saved
+	 */
+	synchronized int size() {
+		return pending.size();
+	}
+	
+	synchronized boolean isEmpty() {
+		return pending.isEmpty();
+	}
+	
+	/**
+	 * Waits until no variables are pending or being saved.
+	 * 
+	 * @throws InterruptedException
+	 */
+	synchronized void awaitSaved() throws InterruptedException {
+		while (!pending.isEmpty() || saving != 0)
+			wait();
+	}
+	
+	/**
+	 * @return The fraction of changes that were replaced by a later change of the same variable before being saved, between 0 and 1.
+	 */
+	synchronized double getCoalesceRatio() {
+		return added == 0 ? 0 : (double) coalesced / added;
+	}
+	
+}
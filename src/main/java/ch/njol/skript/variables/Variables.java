@@ -22,19 +22,17 @@
 package ch.njol.skript.variables;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.TreeMap;
-import java.util.WeakHashMap;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.regex.Pattern;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -44,18 +42,20 @@ import ch.njol.skript.SkriptAPIException;
 import ch.njol.skript.SkriptConfig;
 import ch.njol.skript.classes.ClassInfo;
 import ch.njol.skript.classes.ConfigurationSerializer;
+import ch.njol.skript.classes.Serializer;
 import ch.njol.skript.config.Config;
 import ch.njol.skript.config.Node;
 import ch.njol.skript.config.SectionNode;
+import ch.njol.skript.lang.TriggerFrame;
 import ch.njol.skript.lang.Variable;
 import ch.njol.skript.registrations.Classes;
 import ch.njol.skript.registrations.Converters;
+import ch.njol.skript.util.Utils;
 import ch.njol.skript.variables.DatabaseStorage.Type;
 import ch.njol.skript.variables.SerializedVariable.Value;
 import ch.njol.util.Closeable;
 import ch.njol.util.Kleenean;
 import ch.njol.util.NonNullPair;
-import ch.njol.util.SynchronizedReference;
 import ch.njol.yggdrasil.Yggdrasil;
 import org.spongepowered.api.event.Event;
 
@@ -105,8 +105,7 @@ public abstract class Variables {
 	static List<VariablesStorage> storages = new ArrayList<VariablesStorage>();
 	
 	public static boolean load() {
-		assert variables.treeMap.isEmpty();
-		assert variables.hashMap.isEmpty();
+		assert variables.size() == 0;
 		assert storages.isEmpty();
 		
 		final Config c = SkriptConfig.getConfig();
@@ -133,20 +132,32 @@ public abstract class Variables {
 					try {
 						Thread.sleep(Skript.logNormal() ? 1000 : 5000); // low verbosity won't disable these messages, but makes them more rare
 					} catch (final InterruptedException e) {}
-					synchronized (tempVars) {
-						final Map<String, NonNullPair<Object, VariablesStorage>> tvs = tempVars.get();
-						if (tvs != null)
-							Skript.info("Loaded " + tvs.size() + " variables so far...");
-						else
-							break;
-					}
+					if (loadingVariables == null)
+						break;
+					Skript.info("Loaded " + loadedVariables.get() + " variables so far...");
 				}
 			}
 		};
 		loadingLoggerThread.start();
 		
+		final long start = System.currentTimeMillis();
+		long readTime = 0;
+		final ExecutorService loadExecutor = Executors.newFixedThreadPool(LOAD_THREADS, new ThreadFactory() {
+			private int n = 0;
+			
+			@Override
+			public Thread newThread(final @Nullable Runnable r) {
+				assert r != null;
+				final Thread t = Skript.newThread(r, "Skript variable loading thread " + ++n);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		Variables.loadExecutor = loadExecutor;
 		try {
 			boolean successful = true;
+			final List<VariablesStorage> loading = new ArrayList<VariablesStorage>();
+			final List<SectionNode> loadingNodes = new ArrayList<SectionNode>();
 			for (final Node node : (SectionNode) databases) {
 				if (node instanceof SectionNode) {
 					final SectionNode n = (SectionNode) node;
@@ -162,6 +173,8 @@ public abstract class Variables {
 					final VariablesStorage s;
 					if (type.equalsIgnoreCase("csv") || type.equalsIgnoreCase("file") || type.equalsIgnoreCase("flatfile")) {
 						s = new FlatFileStorage(name);
+					} else if (type.equalsIgnoreCase("binary")) {
+						s = new BinaryFileStorage(name);
 					} else if (type.equalsIgnoreCase("mysql")) {
 						s = new DatabaseStorage(name, Type.MYSQL);
 					} else if (type.equalsIgnoreCase("sqlite")) {
@@ -174,34 +187,62 @@ public abstract class Variables {
 						continue;
 					}
 					
-					final int x;
-					synchronized (tempVars) {
-						final Map<String, NonNullPair<Object, VariablesStorage>> tvs = tempVars.get();
-						assert tvs != null;
-						x = tvs.size();
-					}
-					final long start = System.currentTimeMillis();
-					if (Skript.logVeryHigh())
-						Skript.info("Loading database '" + node.getKey() + "'...");
-					
-					if (s.load(n))
-						storages.add(s);
-					else
+					if (!s.loadConfig(n)) {
 						successful = false;
-					
-					final int d;
-					synchronized (tempVars) {
-						final Map<String, NonNullPair<Object, VariablesStorage>> tvs = tempVars.get();
-						assert tvs != null;
-						d = tvs.size() - x;
+						continue;
 					}
-					if (Skript.logVeryHigh())
-						Skript.info("Loaded " + d + " variables from the database '" + n.getKey() + "' in " + ((System.currentTimeMillis() - start) / 100) / 10.0 + " seconds");
+					final Map<VariablesStorage, Map<String, Object>> lv = loadingVariables;
+					assert lv != null;
+					lv.put(s, new HashMap<String, Object>());
+					loading.add(s);
+					loadingNodes.add(n);
 				} else {
 					Skript.error("Invalid line in databases: databases must be defined as sections");
 					successful = false;
 				}
 			}
+			
+			// storages that can be loaded in parallel get their own thread, while the others are loaded one after another on this thread in the meantime
+			final boolean[] loaded = new boolean[loading.size()];
+			final List<Thread> threads = new ArrayList<Thread>();
+			for (int i = 0; i < loading.size(); i++) {
+				final VariablesStorage s = loading.get(i);
+				final SectionNode n = loadingNodes.get(i);
+				if (!s.canLoadInParallel())
+					continue;
+				final int index = i;
+				final Thread t = Skript.newThread(new Runnable() {
+					@Override
+					public void run() {
+						loaded[index] = loadStorage(s, n);
+					}
+				}, "Skript database '" + s.databaseName + "' loading thread");
+				t.start();
+				threads.add(t);
+			}
+			for (int i = 0; i < loading.size(); i++) {
+				final VariablesStorage s = loading.get(i);
+				if (!s.canLoadInParallel())
+					loaded[i] = loadStorage(s, loadingNodes.get(i));
+			}
+			for (final Thread t : threads) {
+				while (true) {
+					try {
+						t.join();
+						break;
+					} catch (final InterruptedException e) {}
+				}
+			}
+			for (int i = 0; i < loading.size(); i++) {
+				if (loaded[i]) {
+					storages.add(loading.get(i));
+					Skript.closeOnDisable(loading.get(i));
+				} else {
+					successful = false;
+				}
+			}
+			readTime = System.currentTimeMillis() - start;
+			
 			if (!successful)
 				return false;
 			
@@ -210,8 +251,11 @@ public abstract class Variables {
 				return false;
 			}
 		} finally {
+			Variables.loadExecutor = null;
+			loadExecutor.shutdown();
+			
 			// make sure to put the loaded variables into the variables map
-			final int n = onStoragesLoaded();
+			final int n = onStoragesLoaded(readTime == 0 ? System.currentTimeMillis() - start : readTime);
 			if (n != 0) {
 				Skript.warning(n + " variables were possibly discarded due to not belonging to any database (SQL databases keep such variables and will continue to generate this warning, while CSV discards them).");
 			}
@@ -223,42 +267,166 @@ public abstract class Variables {
 		return true;
 	}
 	
-	@SuppressWarnings("null")
-	private final static Pattern variableNameSplitPattern = Pattern.compile(Pattern.quote(Variable.SEPARATOR));
+	/**
+	 * Loads the variables of a storage. Called on the storage's loading thread if it {@link VariablesStorage#canLoadInParallel() can load in parallel}.
+	 * 
+	 * @return Whether the storage was loaded successfully
+	 */
+	static boolean loadStorage(final VariablesStorage s, final SectionNode n) {
+		final long start = System.currentTimeMillis();
+		if (Skript.logVeryHigh())
+			Skript.info("Loading database '" + s.databaseName + "'...");
+		
+		final boolean r = s.loadVariables(n);
+		
+		if (Skript.logVeryHigh()) {
+			final Map<VariablesStorage, Map<String, Object>> lv = loadingVariables;
+			assert lv != null;
+			final Map<String, Object> vars = lv.get(s);
+			Skript.info("Loaded " + (vars == null ? 0 : vars.size()) + " variables from the database '" + s.databaseName + "' in " + ((System.currentTimeMillis() - start) / 100) / 10.0 + " seconds");
+		}
+		return r;
+	}
 	
-	@SuppressWarnings("null")
-	public final static String[] splitVariableName(final String name) {
-		return variableNameSplitPattern.split(name);
+	/**
+	 * The number of threads that deserialise variables while they are loaded
+	 */
+	private final static int LOAD_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+	
+	@Nullable
+	private static volatile ExecutorService loadExecutor = null;
+	
+	/**
+	 * @return The executor that deserialises variables while storages are loading, or null if the variables have been loaded
+	 */
+	@Nullable
+	static ExecutorService getLoadExecutor() {
+		return loadExecutor;
+	}
+	
+	static int getLoadThreads() {
+		return LOAD_THREADS;
 	}
 	
-	private final static ReadWriteLock variablesLock = new ReentrantReadWriteLock(true);
 	/**
-	 * must be locked with {@link #variablesLock}.
+	 * A loaded value that must be deserialised on Bukkit's main thread. Such values are deserialised after all storages have been loaded.
 	 */
-	private final static VariablesMap variables = new VariablesMap();
+	final static class DeferredValue {
+		
+		private final String type;
+		@Nullable
+		private final byte[] data;
+		@Nullable
+		private final String oldData;
+		private final boolean replaceChatStyles;
+		
+		DeferredValue(final String type, final byte[] data) {
+			this.type = type;
+			this.data = data;
+			oldData = null;
+			replaceChatStyles = false;
+		}
+		
+		/**
+		 * A value saved by a version of Skript older than 2.1
+		 */
+		DeferredValue(final String type, final String oldData, final boolean replaceChatStyles) {
+			this.type = type;
+			data = null;
+			this.oldData = oldData;
+			this.replaceChatStyles = replaceChatStyles;
+		}
+		
+		/**
+		 * @return The deserialised value, or null if it is invalid
+		 */
+		@SuppressWarnings("deprecation")
+		@Nullable
+		Object deserialize() {
+			assert Bukkit.isPrimaryThread();
+			final byte[] data = this.data;
+			final String oldData = this.oldData;
+			Object d = data != null ? Classes.deserialize(type, data) : oldData != null ? Classes.deserialize(type, oldData) : null;
+			if (d instanceof String && replaceChatStyles)
+				d = Utils.replaceChatStyles((String) d);
+			return d;
+		}
+		
+	}
+	
 	/**
-	 * Not accessed concurrently
+	 * Deserialises a loaded value. May be called from any thread.
+	 * 
+	 * @param type
+	 * @param data
+	 * @return The deserialised value, a {@link DeferredValue} if the value has to be deserialised on Bukkit's main thread, or null if the value is invalid
 	 */
-	private final static WeakHashMap<Event, VariablesMap> localVariables = new WeakHashMap<Event, VariablesMap>();
+	@Nullable
+	static Object deserialize(final String type, final byte[] data) {
+		final ClassInfo<?> ci = Classes.getClassInfoNoError(type);
+		if (ci == null)
+			return null;
+		final Serializer<?> s = ci.getSerializer();
+		if (s == null)
+			return null;
+		if (s.mustSyncDeserialization() && !Bukkit.isPrimaryThread())
+			return new DeferredValue(type, data);
+		return Classes.deserialize(ci, data);
+	}
 	
 	/**
-	 * Remember to lock with {@link #getReadLock()} and to not make any changes!
+	 * Splits a variable's name at the separators. Like {@link String#split(String)}, trailing empty strings are removed.
+	 * 
+	 * @param name
+	 * @return The parts of the name
 	 */
-	static TreeMap<String, Object> getVariables() {
-		return variables.treeMap;
+	public final static String[] splitVariableName(final String name) {
+		int i = name.indexOf(Variable.SEPARATOR);
+		if (i == -1)
+			return new String[] {name};
+		final List<String> r = new ArrayList<String>();
+		int start = 0;
+		do {
+			r.add(name.substring(start, i));
+			start = i + Variable.SEPARATOR.length();
+		} while ((i = name.indexOf(Variable.SEPARATOR, start)) != -1);
+		r.add(name.substring(start));
+		int n = r.size();
+		while (n > 0 && r.get(n - 1).isEmpty())
+			n--;
+		return r.subList(0, n).toArray(new String[n]);
 	}
 	
 	/**
-	 * Remember to lock with {@link #getReadLock()}!
+	 * Locks itself per segment, see {@link SegmentedVariablesMap}.
 	 */
-	@SuppressWarnings("null")
-	static Map<String, Object> getVariablesHashMap() {
-		return Collections.unmodifiableMap(variables.hashMap);
+	private final static SegmentedVariablesMap variables = new SegmentedVariablesMap();
+	/**
+	 * Remember to not make any changes! Lock the segments with {@link #getSegmentLock(String)} to prevent changes while accessing them.
+	 * 
+	 * @return The root of the variable tree
+	 */
+	static VariablesMap.Node getVariables() {
+		return variables.map.root;
 	}
 	
-	@SuppressWarnings("null")
-	static Lock getReadLock() {
-		return variablesLock.readLock();
+	/**
+	 * @param segmentName A top-level variable name
+	 * @return The lock of the given segment of the variables map
+	 */
+	static ReadWriteLock getSegmentLock(final String segmentName) {
+		return variables.getLock(segmentName);
+	}
+	
+	/**
+	 * Copies all variables into a new map. Doesn't lock, i.e. variables may change while this method is running.
+	 * 
+	 * @return A map of all variables by their full name
+	 */
+	static Map<String, Object> getVariablesFlat() {
+		final Map<String, Object> r = new HashMap<String, Object>(variables.size());
+		VariablesMap.flatten(null, variables.map.root, r);
+		return r;
 	}
 	
 	/**
@@ -272,17 +440,69 @@ public abstract class Variables {
 	@Nullable
 	public final static Object getVariable(final String name, final @Nullable Event e, final boolean local) {
 		if (local) {
-			final VariablesMap map = localVariables.get(e);
+			final TriggerFrame frame = TriggerFrame.of(e);
+			if (frame == null)
+				return null;
+			final int slot = frame.getLocalSlot(name);
+			if (slot != -1)
+				return frame.getSlot(slot);
+			final VariablesMap map = (VariablesMap) frame.getLocalVariables();
 			if (map == null)
 				return null;
 			return map.getVariable(name);
 		} else {
-			try {
-				variablesLock.readLock().lock();
-				return variables.getVariable(name);
-			} finally {
-				variablesLock.readLock().unlock();
-			}
+			return variables.getVariable(name);
+		}
+	}
+	
+	/**
+	 * Like {@link #getVariable(String, Event, boolean)}, but takes the variable's name split at the separators, which saves splitting the name again.
+	 * <p>
+	 * <b>Do not modify the returned value!</b>
+	 * 
+	 * @param path The variable's name in lower case as returned by {@link #splitVariableName(String)}. Not modified.
+	 * @param e
+	 * @param local
+	 * @return an Object for a normal Variable or a Map<String, Object> for a list variable, or null if the variable is not set.
+	 */
+	@Nullable
+	public final static Object getVariable(final String[] path, final @Nullable Event e, final boolean local) {
+		if (path.length == 1) // may be stored in a slot
+			return getVariable(path[0], e, local);
+		if (local) {
+			final TriggerFrame frame = TriggerFrame.of(e);
+			if (frame == null)
+				return null;
+			final VariablesMap map = (VariablesMap) frame.getLocalVariables();
+			if (map == null)
+				return null;
+			return map.getVariable(path);
+		} else {
+			return variables.getVariable(path);
+		}
+	}
+	
+	/**
+	 * Iterates over a list variable without copying it. The iterator returns the elements of the list at the time it was created, and can be used while the list is being
+	 * changed: elements added later are not returned, deleted elements are skipped, and changed elements are returned with their new value.
+	 * 
+	 * @param path The list's name in lower case as returned by {@link #splitVariableName(String)}, i.e. ending in <tt>*</tt>. Not modified.
+	 * @param e
+	 * @param local
+	 * @return An iterator over the indices and values of the list's elements, or null if the list is not set
+	 */
+	@Nullable
+	public final static Iterator<Entry<String, Object>> getListIterator(final String[] path, final @Nullable Event e, final boolean local) {
+		if (local) {
+			final TriggerFrame frame = TriggerFrame.of(e);
+			if (frame == null)
+				return null;
+			final VariablesMap map = (VariablesMap) frame.getLocalVariables();
+			if (map == null)
+				return null;
+			return map.listIterator(path);
+		} else {
+			return variables.listIterator(path);
 		}
 	}
 	
@@ -295,49 +515,144 @@ public abstract class Variables {
 	public final static void setVariable(final String name, @Nullable Object value, final @Nullable Event e, final boolean local) {
 		if (value != null) {
 			assert !name.endsWith("::*");
-			@SuppressWarnings("null")
-			final ClassInfo<?> ci = Classes.getSuperClassInfo(value.getClass());
-			final Class<?> sas = ci.getSerializeAs();
-			if (sas != null) {
-				value = Converters.convert(value, sas);
-				assert value != null : ci + ", " + sas;
-			}
+			value = convertValue(value);
 		}
 		if (local) {
 			assert e != null : name;
-			VariablesMap map = localVariables.get(e);
+			final TriggerFrame frame = TriggerFrame.of(e);
+			if (frame == null) {
+				assert false : name; // local variables can only be set while a trigger is executing
+				return;
+			}
+			final int slot = frame.getLocalSlot(name);
+			if (slot != -1) {
+				frame.setSlot(slot, value);
+				return;
+			}
+			VariablesMap map = (VariablesMap) frame.getLocalVariables();
 			if (map == null)
-				localVariables.put(e, map = new VariablesMap());
+				frame.setLocalVariables(map = new VariablesMap());
 			map.setVariable(name, value);
 		} else {
 			setVariable(name, value);
 		}
 	}
 	
-	final static void setVariable(final String name, @Nullable final Object value) {
-		try {
-			variablesLock.writeLock().lock();
-			variables.setVariable(name, value);
-		} finally {
-			variablesLock.writeLock().unlock();
+	/**
+	 * Like {@link #setVariable(String, Object, Event, boolean)}, but takes the variable's name split at the separators. Only local variables are set without joining the name
+	 * again, as global variables are saved by their full name.
+	 * 
+	 * @param path The variable's name in lower case as returned by {@link #splitVariableName(String)}. Not modified.
+	 * @param value The variable's value. Use <tt>null</tt> to delete the variable.
+	 * @param e
+	 * @param local
+	 */
+	public final static void setVariable(final String[] path, @Nullable Object value, final @Nullable Event e, final boolean local) {
+		if (!local || path.length == 1) {
+			setVariable(joinVariableName(path), value, e, local);
+			return;
+		}
+		if (value != null) {
+			assert !path[path.length - 1].equals("*");
+			value = convertValue(value);
 		}
+		assert e != null;
+		final TriggerFrame frame = TriggerFrame.of(e);
+		if (frame == null) {
+			assert false : joinVariableName(path); // local variables can only be set while a trigger is executing
+			return;
+		}
+		VariablesMap map = (VariablesMap) frame.getLocalVariables();
+		if (map == null)
+			frame.setLocalVariables(map = new VariablesMap());
+		map.setVariable(path, value);
+	}
+	
+	/**
+	 * @param path
+	 * @return The variable name the given path has been split from
+	 */
+	public final static String joinVariableName(final String[] path) {
+		if (path.length == 1)
+			return path[0];
+		final StringBuilder b = new StringBuilder();
+		for (int i = 0; i < path.length; i++) {
+			if (i != 0)
+				b.append(Variable.SEPARATOR);
+			b.append(path[i]);
+		}
+		return "" + b.toString();
+	}
+	
+	/**
+	 * Gets a local variable that has been assigned a slot while parsing, see {@link ch.njol.skript.ScriptLoader#getLocalSlot(String)}.
+	 * 
+	 * @param slot
+	 * @param e
+	 * @return The variable's value, or null if the variable is not set
+	 */
+	@Nullable
+	public final static Object getLocalVariable(final int slot, final @Nullable Event e) {
+		final TriggerFrame frame = TriggerFrame.of(e);
+		return frame == null ? null : frame.getSlot(slot);
+	}
+	
+	/**
+	 * Sets a local variable that has been assigned a slot while parsing, see {@link ch.njol.skript.ScriptLoader#getLocalSlot(String)}.
+	 * 
+	 * @param slot
+	 * @param value The variable's value. Use <tt>null</tt> to delete the variable.
+	 * @param e
+	 */
+	public final static void setLocalVariable(final int slot, final @Nullable Object value, final Event e) {
+		final TriggerFrame frame = TriggerFrame.of(e);
+		if (frame == null) {
+			assert false : slot; // local variables can only be set while a trigger is executing
+			return;
+		}
+		frame.setSlot(slot, value == null ? null : convertValue(value));
+	}
+	
+	/**
+	 * @return The value converted to the class its class info is serialised as, if any
+	 */
+	@Nullable
+	private final static Object convertValue(final Object value) {
+		@SuppressWarnings("null")
+		final ClassInfo<?> ci = Classes.getSuperClassInfo(value.getClass());
+		final Class<?> sas = ci.getSerializeAs();
+		if (sas == null)
+			return value;
+		final Object converted = Converters.convert(value, sas);
+		assert converted != null : ci + ", " + sas;
+		return converted;
+	}
+	
+	final static void setVariable(final String name, @Nullable final Object value) {
+		variables.setVariable(name, value);
 		saveVariableChange(name, value);
 	}
 	
 	/**
-	 * Stores loaded variables while variable storages are loaded.
+	 * The variables loaded by each storage while the storages are loading in the order the storages are defined in, or null if all storages have been loaded.
 	 * <p>
-	 * Access must be synchronised.
+	 * The map itself is not modified while storages are loading, and each storage's variables are only accessed by the thread loading the storage.
 	 */
-	final static SynchronizedReference<Map<String, NonNullPair<Object, VariablesStorage>>> tempVars = new SynchronizedReference<Map<String, NonNullPair<Object, VariablesStorage>>>(new HashMap<String, NonNullPair<Object, VariablesStorage>>());
+	@Nullable
+	static volatile Map<VariablesStorage, Map<String, Object>> loadingVariables = new LinkedHashMap<VariablesStorage, Map<String, Object>>();
+	
+	/**
+	 * The number of variables loaded so far, for progress messages
+	 */
+	private final static AtomicInteger loadedVariables = new AtomicInteger();
 	
 	private static final int MAX_CONFLICT_WARNINGS = 50;
-	private static int loadConflicts = 0;
 	
 	/**
 	 * Sets a variable and moves it to the appropriate database if the config was changed. Must only be used while variables are loaded when Skript is starting.
 	 * <p>
-	 * Must be called on Bukkit's main thread.
+	 * While storages are loading this only records the variable for its storage, and may be called from the thread loading the storage. Afterwards it must be called on Bukkit's
+	 * main thread.
 	 * <p>
 	 * This method directly invokes {@link VariablesStorage#save(String, String, byte[])}, i.e. you should not be holding any database locks or such when calling this!
 	 * 
@@ -347,33 +662,23 @@ public abstract class Variables {
 	 * @return Whether the variable was stored somewhere. Not valid while storages are loading.
 	 */
 	final static boolean variableLoaded(final String name, final @Nullable Object value, final VariablesStorage source) {
-		assert Bukkit.isPrimaryThread(); // required by serialisation
-		
-		synchronized (tempVars) {
-			final Map<String, NonNullPair<Object, VariablesStorage>> tvs = tempVars.get();
-			if (tvs != null) {
-				if (value == null)
-					return false;
-				final NonNullPair<Object, VariablesStorage> v = tvs.get(name);
-				if (v != null && v.getSecond() != source) {// variable already loaded from another database
-					loadConflicts++;
-					if (loadConflicts <= MAX_CONFLICT_WARNINGS)
-						Skript.warning("The variable {" + name + "} was loaded twice from different databases (" + v.getSecond().databaseName + " and " + source.databaseName + "), only the one from " + source.databaseName + " will be kept.");
-					else if (loadConflicts == MAX_CONFLICT_WARNINGS + 1)
-						Skript.warning("[!] More than " + MAX_CONFLICT_WARNINGS + " variables were loaded more than once from different databases, no more warnings will be printed.");
-					v.getSecond().save(name, null, null);
-				}
-				tvs.put(name, new NonNullPair<Object, VariablesStorage>(value, source));
-				return false;
+		final Map<VariablesStorage, Map<String, Object>> lv = loadingVariables;
+		if (lv != null) {
+			final Map<String, Object> vars = lv.get(source);
+			assert vars != null : source;
+			if (value == null) {
+				if (vars.remove(name) != null)
+					loadedVariables.decrementAndGet();
+			} else if (vars.put(name, value) == null) {
+				loadedVariables.incrementAndGet();
 			}
+			return false;
 		}
 		
-		variablesLock.writeLock().lock();
-		try {
-			variables.setVariable(name, value);
-		} finally {
-			variablesLock.writeLock().unlock();
-		}
+		assert Bukkit.isPrimaryThread(); // required by serialisation
+		assert !(value instanceof DeferredValue) : name;
+		
+		variables.setVariable(name, value);
 		
 		for (final VariablesStorage s : storages) {
 			if (s.accept(name)) {
@@ -390,38 +695,101 @@ public abstract class Variables {
 	}
 	
 	/**
-	 * Stores loaded variables into the variables map and the appropriate databases.
+	 * Applies a batch of changes that other servers made to the given storage's database. Must be called on Bukkit's main thread.
 	 * 
+	 * @param names
+	 * @param values The new values, null for deleted variables. May contain {@link DeferredValue}s.
+	 * @param size The number of changed variables
+	 * @param source
+	 */
+	final static void variablesChanged(final String[] names, final Object[] values, final int size, final VariablesStorage source) {
+		assert Bukkit.isPrimaryThread();
+		assert loadingVariables == null;
+		for (int i = 0; i < size; i++) {
+			Object value = values[i];
+			if (value instanceof DeferredValue) {
+				value = ((DeferredValue) value).deserialize();
+				if (value == null) {
+					Skript.error("Cannot load the variable {" + names[i] + "} from the database '" + source.databaseName + "', because its value is invalid");
+					continue;
+				}
+			}
+			variableLoaded(names[i], value, source);
+		}
+	}
+	
+	/**
+	 * Merges the variables of all storages, deserialises {@link DeferredValue}s, and stores the variables into the variables map and the appropriate databases.
+	 * 
+	 * @param readTime How long the storages took to load in milliseconds
 	 * @return How many variables were not stored anywhere
 	 */
 	@SuppressWarnings("null")
-	private static int onStoragesLoaded() {
+	private static int onStoragesLoaded(final long readTime) {
+		final Map<VariablesStorage, Map<String, Object>> lv = loadingVariables;
+		loadingVariables = null;
+		assert lv != null;
+		
+		// databases defined later override databases defined earlier
+		long start = System.currentTimeMillis();
+		final Map<String, NonNullPair<Object, VariablesStorage>> merged = new HashMap<String, NonNullPair<Object, VariablesStorage>>(loadedVariables.get());
+		int loadConflicts = 0;
+		for (final Entry<VariablesStorage, Map<String, Object>> e : lv.entrySet()) {
+			final VariablesStorage source = e.getKey();
+			for (final Entry<String, Object> v : e.getValue().entrySet()) {
+				final String name = v.getKey();
+				final NonNullPair<Object, VariablesStorage> old = merged.put(name, new NonNullPair<Object, VariablesStorage>(v.getValue(), source));
+				if (old != null) { // variable loaded from several databases
+					loadConflicts++;
+					if (loadConflicts <= MAX_CONFLICT_WARNINGS)
+						Skript.warning("The variable {" + name + "} was loaded twice from different databases (" + old.getSecond().databaseName + " and " + source.databaseName + "), only the one from " + source.databaseName + " will be kept.");
+					else if (loadConflicts == MAX_CONFLICT_WARNINGS + 1)
+						Skript.warning("[!] More than " + MAX_CONFLICT_WARNINGS + " variables were loaded more than once from different databases, no more warnings will be printed.");
+					old.getSecond().save(name, null, null);
+				}
+			}
+			e.getValue().clear();
+		}
 		if (loadConflicts > MAX_CONFLICT_WARNINGS)
 			Skript.warning("A total of " + loadConflicts + " variables were loaded more than once from different databases");
-		Skript.debug("Databases loaded, setting variables...");
+		final long mergeTime = System.currentTimeMillis() - start;
 		
-		synchronized (tempVars) {
-			final Map<String, NonNullPair<Object, VariablesStorage>> tvs = tempVars.get();
-			tempVars.set(null);
-			assert tvs != null;
-			variablesLock.writeLock().lock();
-			try {
-				int n = 0;
-				for (final Entry<String, NonNullPair<Object, VariablesStorage>> tv : tvs.entrySet()) {
-					if (!variableLoaded(tv.getKey(), tv.getValue().getFirst(), tv.getValue().getSecond()))
-						n++;
-				}
-				
-				for (final VariablesStorage s : storages)
-					s.allLoaded();
-				
-				Skript.debug("Variables set. Queue size = " + queue.size());
-				
-				return n;
-			} finally {
-				variablesLock.writeLock().unlock();
+		start = System.currentTimeMillis();
+		int deferred = 0;
+		for (final Iterator<Entry<String, NonNullPair<Object, VariablesStorage>>> i = merged.entrySet().iterator(); i.hasNext();) {
+			final Entry<String, NonNullPair<Object, VariablesStorage>> e = i.next();
+			final NonNullPair<Object, VariablesStorage> v = e.getValue();
+			if (!(v.getFirst() instanceof DeferredValue))
+				continue;
+			deferred++;
+			final Object d = ((DeferredValue) v.getFirst()).deserialize();
+			if (d == null) {
+				Skript.error("Cannot load the variable {" + e.getKey() + "} from the database '" + v.getSecond().databaseName + "', because its value is invalid");
+				i.remove();
+				continue;
 			}
+			v.setFirst(d);
 		}
+		final long deserializeTime = System.currentTimeMillis() - start;
+		
+		Skript.debug("Databases loaded, setting variables...");
+		start = System.currentTimeMillis();
+		int n = 0;
+		for (final Entry<String, NonNullPair<Object, VariablesStorage>> tv : merged.entrySet()) {
+			if (!variableLoaded(tv.getKey(), tv.getValue().getFirst(), tv.getValue().getSecond()))
+				n++;
+		}
+		
+		for (final VariablesStorage s : storages)
+			s.allLoaded();
+		final long storeTime = System.currentTimeMillis() - start;
+		
+		Skript.debug("Variables set. Queue size = " + queue.size());
+		if (Skript.logNormal())
+			Skript.info("Variable loading times: reading " + (readTime / 100) / 10.0 + "s, merging " + (mergeTime / 100) / 10.0 + "s, "
+					+ "main thread deserialisation of " + deferred + " variables " + (deserializeTime / 100) / 10.0 + "s, storing " + (storeTime / 100) / 10.0 + "s");
+		
+		return n;
 	}
 	
 	public final static SerializedVariable serialize(final String name, final @Nullable Object value) {
@@ -436,11 +804,27 @@ public abstract class Variables {
 		return Classes.serialize(value);
 	}
 	
+	/**
+	 * Queues a variable change to be saved. Values that can be {@link Classes#snapshot(Object) snapshotted} are serialised on the save thread, all others are serialised
+	 * immediately.
+	 */
 	private final static void saveVariableChange(final String name, final @Nullable Object value) {
+		if (value != null) {
+			final Object snapshot = Classes.snapshot(value);
+			if (snapshot != null) {
+				queue.addSnapshot(name, snapshot);
+				return;
+			}
+		}
 		queue.add(serialize(name, value));
 	}
 	
-	final static BlockingQueue<SerializedVariable> queue = new LinkedBlockingQueue<SerializedVariable>();
+	/**
+	 * The maximum number of changed variables handed to the storages at once
+	 */
+	private final static int SAVE_BATCH_SIZE = 500;
+	
+	final static VariableChangeQueue queue = new VariableChangeQueue();
 	
 	static volatile boolean closed = false;
 	
@@ -449,22 +833,62 @@ public abstract class Variables {
 		public void run() {
 			while (!closed) {
 				try {
-					final SerializedVariable v = queue.take();
-					for (final VariablesStorage s : storages) {
-						if (s.accept(v.name)) {
-							s.save(v);
-							break;
+					final List<SerializedVariable> batch = queue.take(SAVE_BATCH_SIZE);
+					try {
+						outer: for (final SerializedVariable v : batch) {
+							for (final VariablesStorage s : storages) {
+								if (s.accept(v.name)) {
+									s.save(v);
+									continue outer;
+								}
+							}
 						}
+					} finally {
+						queue.saved(batch.size());
 					}
 				} catch (final InterruptedException e) {}
 			}
 		}
 	}, "Skript variable save thread");
 	
+	/**
+	 * @return The number of changed variables waiting to be handed to the storages
+	 */
+	public static int getSaveQueueSize() {
+		return queue.size();
+	}
+	
+	/**
+	 * @return The fraction of variable changes that were not saved at all because the same variable was changed again before it could be saved, between 0 and 1
+	 */
+	public static double getSaveCoalesceRatio() {
+		return queue.getCoalesceRatio();
+	}
+	
+	/**
+	 * @return The average time in milliseconds the storages took to write a batch of variables, or 0 if nothing has been written yet
+	 */
+	public static double getSaveBatchTime() {
+		double time = 0;
+		int n = 0;
+		for (final VariablesStorage s : storages) {
+			if (s.getBatchCount() == 0)
+				continue;
+			time += s.getAverageBatchTime();
+			n++;
+		}
+		return n == 0 ? 0 : time / n;
+	}
+	
+	/**
+	 * Waits until all changed variables have been handed to the storages, including the ones the save thread is currently serialising or saving, and then stops the save
+	 * thread.
+	 */
 	public static void close() {
-		while (queue.size() > 0) {
+		while (true) {
 			try {
-				Thread.sleep(10);
+				queue.awaitSaved();
+				break;
 			} catch (final InterruptedException e) {}
 		}
 		closed = true;
@@ -472,12 +896,7 @@ public abstract class Variables {
 	}
 	
 	public static int numVariables() {
-		try {
-			variablesLock.readLock().lock();
-			return variables.hashMap.size();
-		} finally {
-			variablesLock.readLock().unlock();
-		}
+		return variables.size();
 	}
 	
 }
@@ -21,20 +21,30 @@
 
 package ch.njol.skript.variables;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.TreeMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jdt.annotation.Nullable;
 
 import ch.njol.skript.lang.Variable;
-import ch.njol.skript.util.Utils;
 import ch.njol.util.StringUtils;
 
 final class VariablesMap {
 	
+	/**
+	 * Compares variable names naturally, i.e. numbers in the names are compared by their values. Numbers are compared digit by digit without parsing them, thus they can be
+	 * arbitrarily long and no objects are created. Numbers with the same value but a different amount of leading zeros (e.g. '1' and '01') are only told apart if the names
+	 * are otherwise equal, in which case the one with less leading zeros comes first.
+	 */
 	final static Comparator<String> variableNameComparator = new Comparator<String>() {
 		@Override
 		public int compare(final @Nullable String s1, final @Nullable String s2) {
@@ -43,15 +53,26 @@ final class VariablesMap {
 			if (s2 == null)
 				return 1;
 			int i = 0, j = 0;
+			int leadingZeros = 0;
 			while (i < s1.length() && j < s2.length()) {
 				final char c1 = s1.charAt(i), c2 = s2.charAt(j);
 				if ('0' <= c1 && c1 <= '9' && '0' <= c2 && c2 <= '9') { // TODO negative numbers? what about {blah-%number%}? // '-' < '0'
 					final int i2 = StringUtils.findLastDigit(s1, i), j2 = StringUtils.findLastDigit(s2, j);
-					final long n1 = Utils.parseLong("" + s1.substring(i, i2)), n2 = Utils.parseLong("" + s2.substring(j, j2));
-					if (n1 > n2)
-						return 1;
-					if (n1 < n2)
-						return -1;
+					int z1 = i, z2 = j;
+					while (z1 < i2 - 1 && s1.charAt(z1) == '0')
+						z1++;
+					while (z2 < j2 - 1 && s2.charAt(z2) == '0')
+						z2++;
+					// without leading zeros, a longer number is a larger number
+					if (i2 - z1 != j2 - z2)
+						return i2 - z1 > j2 - z2 ? 1 : -1;
+					for (int k = 0; k < i2 - z1; k++) {
+						final char d1 = s1.charAt(z1 + k), d2 = s2.charAt(z2 + k);
+						if (d1 != d2)
+							return d1 > d2 ? 1 : -1;
+					}
+					if (leadingZeros == 0 && z1 - i != z2 - j)
+						leadingZeros = z1 - i > z2 - j ? 1 : -1;
 					i = i2;
 					j = j2;
 					continue;
@@ -68,12 +89,246 @@ final class VariablesMap {
 				return -1;
 			if (j < s2.length())
 				return 1;
-			return 0;
+			return leadingZeros;
 		}
 	};
 	
-	final HashMap<String, Object> hashMap = new HashMap<String, Object>();
-	final TreeMap<String, Object> treeMap = new TreeMap<String, Object>();
+	/**
+	 * A node of the variable tree, i.e. a list variable. There is only a single tree, which serves both lookups of single variables and iteration over list variables.
+	 * <p>
+	 * The children are either the variables' values or nested nodes, and are kept in a concurrent map, thus the tree can be read without locking while it is modified (as long
+	 * as modifications of the same list are not concurrent). The node also implements the map view that has always been returned for list variables, i.e. the value of the
+	 * variable with the list's name itself is mapped to the key <tt>null</tt>. This view cannot be modified.
+	 */
+	final static class Node extends AbstractMap<String, Object> {
+		
+		@Nullable
+		volatile Object value;
+		
+		final ConcurrentSkipListMap<String, Object> children;
+		
+		/**
+		 * The record of the last key added to this node, see {@link Insertion}
+		 */
+		private volatile Insertion lastInsertion = new Insertion(null);
+		
+		/**
+		 * Set when this list is deleted, which ends all iterations over it
+		 */
+		volatile boolean deleted = false;
+		
+		Node() {
+			children = new ConcurrentSkipListMap<String, Object>(variableNameComparator);
+		}
+		
+		Node(final ConcurrentSkipListMap<String, Object> children) {
+			this.children = children;
+		}
+		
+		@Override
+		@Nullable
+		public Object get(final @Nullable Object key) {
+			if (key == null)
+				return value;
+			if (!(key instanceof String))
+				return null;
+			return children.get(key);
+		}
+		
+		@Override
+		public boolean containsKey(final @Nullable Object key) {
+			return get(key) != null;
+		}
+		
+		@Override
+		public boolean isEmpty() {
+			return value == null && children.isEmpty();
+		}
+		
+		/**
+		 * Takes linear time, prefer {@link #isEmpty()} where possible.
+		 */
+		@Override
+		public int size() {
+			return children.size() + (value == null ? 0 : 1);
+		}
+		
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			return new AbstractSet<Entry<String, Object>>() {
+				@Override
+				public Iterator<Entry<String, Object>> iterator() {
+					final Object v = value;
+					final Iterator<Entry<String, Object>> iter = children.entrySet().iterator();
+					return new Iterator<Entry<String, Object>>() {
+						private boolean first = v != null;
+						
+						@Override
+						public boolean hasNext() {
+							return first || iter.hasNext();
+						}
+						
+						@SuppressWarnings("null")
+						@Override
+						public Entry<String, Object> next() {
+							if (first) {
+								first = false;
+								return new SimpleImmutableEntry<String, Object>(null, v);
+							}
+							return iter.next(); // entries of a ConcurrentSkipListMap's iterator are immutable
+						}
+						
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+				}
+				
+				@Override
+				public int size() {
+					return Node.this.size();
+				}
+			};
+		}
+		
+		/**
+		 * Must be called before a new key is added to the children, so that iterators that encounter the key know that it has been added.
+		 * 
+		 * @param key
+		 */
+		final synchronized void adding(final String key) {
+			final Insertion i = new Insertion(key);
+			lastInsertion.next = i;
+			lastInsertion = i;
+		}
+		
+		/**
+		 * @return The number of variables in this list and all nested lists, excluding the variable with the list's name itself
+		 */
+		final int countVariables() {
+			int n = 0;
+			for (final Object o : children.values()) {
+				if (o instanceof Node)
+					n += (((Node) o).value == null ? 0 : 1) + ((Node) o).countVariables();
+				else
+					n++;
+			}
+			return n;
+		}
+		
+	}
+	
+	/**
+	 * Records a key added to a node. Each record only references the next one, i.e. records are only kept as long as an iterator created before them exists.
+	 */
+	private final static class Insertion {
+		
+		@Nullable
+		final String key;
+		
+		@Nullable
+		volatile Insertion next = null;
+		
+		Insertion(final @Nullable String key) {
+			this.key = key;
+		}
+		
+	}
+	
+	/**
+	 * Iterates over the elements of a list without copying it or looking up each element by its name. The iterator is consistent with the list at the time it was created:
+	 * elements added to the list later are not returned, elements that are deleted before they are reached are skipped, changed elements are returned with their new
+	 * value, and the iteration ends if the list or any list containing it is deleted.
+	 * <p>
+	 * Returns the elements' indices and values. Elements that are only lists themselves are skipped, elements that are lists with a value are returned with that value.
+	 */
+	private final static class ListIterator implements Iterator<Entry<String, Object>> {
+		
+		/**
+		 * The iterated list and the lists containing it, excluding the root
+		 */
+		private final Node[] nodes;
+		private final Node node;
+		private final Iterator<String> keys;
+		
+		/**
+		 * The last insertion that has been added to {@link #added}
+		 */
+		private Insertion lastInsertion;
+		/**
+		 * Keys added to the list since this iterator was created, only created if keys have been added
+		 */
+		@Nullable
+		private Set<String> added = null;
+		
+		@Nullable
+		private Entry<String, Object> next = null;
+		
+		ListIterator(final Node[] nodes) {
+			this.nodes = nodes;
+			node = nodes[nodes.length - 1];
+			lastInsertion = node.lastInsertion;
+			keys = node.children.keySet().iterator();
+		}
+		
+		@Override
+		public boolean hasNext() {
+			if (next != null)
+				return true;
+			while (keys.hasNext()) {
+				final String key = keys.next();
+				for (final Node n : nodes) {
+					if (n.deleted)
+						return false;
+				}
+				Object value = node.children.get(key);
+				if (value instanceof Node)
+					value = ((Node) value).value;
+				if (value == null || isAdded(key))
+					continue;
+				next = new AbstractMap.SimpleImmutableEntry<String, Object>(key, value);
+				return true;
+			}
+			return false;
+		}
+		
+		private boolean isAdded(final String key) {
+			Insertion i;
+			while ((i = lastInsertion.next) != null) {
+				Set<String> added = this.added;
+				if (added == null)
+					this.added = added = new HashSet<String>();
+				added.add(i.key);
+				lastInsertion = i;
+			}
+			final Set<String> added = this.added;
+			return added != null && added.contains(key);
+		}
+		
+		@Override
+		public Entry<String, Object> next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			final Entry<String, Object> n = next;
+			assert n != null;
+			next = null;
+			return n;
+		}
+		
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+	}
+	
+	/**
+	 * The top-level variables are sorted by their natural order.
+	 */
+	final Node root = new Node(new ConcurrentSkipListMap<String, Object>());
+	
+	private final AtomicInteger size = new AtomicInteger();
 	
 	/**
 	 * Returns the internal value of the requested variable.
@@ -83,97 +338,136 @@ final class VariablesMap {
 	 * @param name
 	 * @return an Object for a normal Variable or a Map<String, Object> for a list variable, or null if the variable is not set.
 	 */
-	@SuppressWarnings("unchecked")
 	@Nullable
 	final Object getVariable(final String name) {
-		if (!name.endsWith("*")) {
-			return hashMap.get(name);
-		} else {
-			final String[] split = Variables.splitVariableName(name);
-			Map<String, Object> current = treeMap;
-			for (int i = 0; i < split.length; i++) {
-				final String n = split[i];
-				if (n.equals("*")) {
-					assert i == split.length - 1;
-					return current;
-				}
-				final Object o = current.get(n);
-				if (o == null)
-					return null;
-				if (o instanceof Map) {
-					current = (Map<String, Object>) o;
-					assert i != split.length - 1;
-					continue;
-				} else {
-					return null;
-				}
+		return getVariable(Variables.splitVariableName(name));
+	}
+	
+	/**
+	 * Like {@link #getVariable(String)}, but takes the variable's name split at the separators.
+	 * 
+	 * @param split The variable's name as returned by {@link Variables#splitVariableName(String)}. Not modified.
+	 * @return an Object for a normal Variable or a Map<String, Object> for a list variable, or null if the variable is not set.
+	 */
+	@Nullable
+	final Object getVariable(final String[] split) {
+		Node current = root;
+		for (int i = 0; i < split.length; i++) {
+			final String n = split[i];
+			if (n.equals("*")) {
+				assert i == split.length - 1;
+				return current;
 			}
-			return null;
+			final Object o = current.children.get(n);
+			if (o == null)
+				return null;
+			if (i == split.length - 1)
+				return o instanceof Node ? ((Node) o).value : o;
+			if (!(o instanceof Node))
+				return null;
+			current = (Node) o;
 		}
+		return null;
+	}
+	
+	/**
+	 * Iterates over a list variable, see {@link ListIterator} for how changes to the list during the iteration are handled.
+	 * 
+	 * @param split The list's name as returned by {@link Variables#splitVariableName(String)}, i.e. ending in <tt>*</tt>. Not modified.
+	 * @return An iterator over the indices and values of the list's elements, or null if the list doesn't exist
+	 */
+	@Nullable
+	final Iterator<Entry<String, Object>> listIterator(final String[] split) {
+		assert split.length > 1 && split[split.length - 1].equals("*");
+		final Node[] nodes = new Node[split.length - 1];
+		Node current = root;
+		for (int i = 0; i < nodes.length; i++) {
+			final Object o = current.children.get(split[i]);
+			if (!(o instanceof Node))
+				return null;
+			nodes[i] = current = (Node) o;
+		}
+		return new ListIterator(nodes);
 	}
 	
 	/**
 	 * Sets a variable.
+	 * <p>
+	 * Changes to variables of the same top-level list must not happen concurrently.
 	 * 
 	 * @param name The variable's name. Can be a "list variable::*" (<tt>value</tt> must be <tt>null</tt> in this case)
 	 * @param value The variable's value. Use <tt>null</tt> to delete the variable.
 	 */
-	@SuppressWarnings("unchecked")
 	final void setVariable(final String name, final @Nullable Object value) {
-		if (!name.endsWith("*")) {
-			if (value == null)
-				hashMap.remove(name);
-			else
-				hashMap.put(name, value);
-		}
-		final String[] split = Variables.splitVariableName(name);
-		TreeMap<String, Object> parent = treeMap;
+		setVariable(Variables.splitVariableName(name), value);
+	}
+	
+	/**
+	 * Like {@link #setVariable(String, Object)}, but takes the variable's name split at the separators.
+	 * 
+	 * @param split The variable's name as returned by {@link Variables#splitVariableName(String)}. Not modified.
+	 * @param value The variable's value. Use <tt>null</tt> to delete the variable.
+	 */
+	final void setVariable(final String[] split, final @Nullable Object value) {
+		Node parent = root;
 		for (int i = 0; i < split.length; i++) {
 			final String n = split[i];
-			Object current = parent.get(n);
+			final Object current = parent.children.get(n);
 			if (current == null) {
 				if (i == split.length - 1) {
-					if (value != null)
-						parent.put(n, value);
+					if (value != null) {
+						parent.adding(n);
+						parent.children.put(n.intern(), value);
+						size.incrementAndGet();
+					}
 					break;
 				} else if (value != null) {
-					parent.put(n, current = new TreeMap<String, Object>(variableNameComparator));
-					parent = (TreeMap<String, Object>) current;
+					final Node c = new Node();
+					parent.adding(n);
+					parent.children.put(n.intern(), c);
+					parent = c;
 					continue;
 				} else {
 					break;
 				}
-			} else if (current instanceof TreeMap) {
+			} else if (current instanceof Node) {
+				final Node c = (Node) current;
 				if (i == split.length - 1) {
-					if (value == null)
-						((TreeMap<String, Object>) current).remove(null);
-					else
-						((TreeMap<String, Object>) current).put(null, value);
+					final Object old = c.value;
+					c.value = value;
+					if (old == null && value != null)
+						size.incrementAndGet();
+					else if (old != null && value == null)
+						size.decrementAndGet();
 					break;
 				} else if (i == split.length - 2 && split[i + 1].equals("*")) {
 					assert value == null;
-					deleteFromHashMap(StringUtils.join(split, Variable.SEPARATOR, 0, i + 1), (TreeMap<String, Object>) current);
-					final Object v = ((TreeMap<String, Object>) current).get(null);
+					// the node itself is left untouched for anyone still reading it
+					c.deleted = true;
+					size.addAndGet(-c.countVariables());
+					final Object v = c.value;
 					if (v == null)
-						parent.remove(n);
+						parent.children.remove(n);
 					else
-						parent.put(n, v);
+						parent.children.put(n, v);
 					break;
 				} else {
-					parent = (TreeMap<String, Object>) current;
+					parent = c;
 					continue;
 				}
 			} else {
 				if (i == split.length - 1) {
-					if (value == null)
-						parent.remove(n);
-					else
-						parent.put(n, value);
+					if (value == null) {
+						parent.children.remove(n);
+						size.decrementAndGet();
+					} else {
+						parent.children.put(n, value);
+					}
 					break;
 				} else if (value != null) {
-					final TreeMap<String, Object> c = new TreeMap<String, Object>(variableNameComparator);
-					c.put(null, current);
-					parent.put(n, c);
+					final Node c = new Node();
+					c.value = current;
+					parent.children.put(n, c);
 					parent = c;
 					continue;
 				} else {
@@ -183,16 +477,32 @@ final class VariablesMap {
 		}
 	}
 	
-	@SuppressWarnings("unchecked")
-	void deleteFromHashMap(final String parent, final TreeMap<String, Object> current) {
-		for (final Entry<String, Object> e : current.entrySet()) {
-			if (e.getKey() == null)
-				continue;
-			hashMap.remove(parent + Variable.SEPARATOR + e.getKey());
-			final Object val = e.getValue();
-			if (val instanceof TreeMap) {
-				deleteFromHashMap(parent + Variable.SEPARATOR + e.getKey(), (TreeMap<String, Object>) val);
-			}
+	/**
+	 * @return The number of variables in this map. Takes constant time.
+	 */
+	final int size() {
+		return size.get();
+	}
+	
+	/**
+	 * Adds all variables in the given tree to the given map.
+	 * 
+	 * @param name The name of the variable or list, or null for the root
+	 * @param value A variable's value or a {@link Node}
+	 * @param map
+	 */
+	final static void flatten(final @Nullable String name, final @Nullable Object value, final Map<String, Object> map) {
+		if (value == null)
+			return;
+		if (value instanceof Node) {
+			final Node node = (Node) value;
+			final Object v = node.value;
+			if (v != null && name != null)
+				map.put(name, v);
+			for (final Entry<String, Object> e : node.children.entrySet())
+				flatten(name == null ? e.getKey() : name + Variable.SEPARATOR + e.getKey(), e.getValue(), map);
+		} else if (name != null) {
+			map.put(name, value);
 		}
 	}
 	
@@ -23,7 +23,10 @@ package ch.njol.skript.variables;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -50,8 +53,18 @@ public abstract class VariablesStorage implements Closeable {
 	
 	private final static int QUEUE_SIZE = 1000, FIRST_WARNING = 300;
 	
+	/**
+	 * The maximum number of variables passed to {@link #save(List)} at once. Can be changed by subclasses in {@link #load_i(SectionNode)}.
+	 */
+	protected int batchSize = 200;
+	
 	final LinkedBlockingQueue<SerializedVariable> changesQueue = new LinkedBlockingQueue<SerializedVariable>(QUEUE_SIZE);
 	
+	/**
+	 * The number of variables that are in the {@link #changesQueue} or are being written by the {@link #writeThread}
+	 */
+	private final AtomicInteger unsaved = new AtomicInteger();
+	
 	protected volatile boolean closed = false;
 	
 	protected final String databaseName;
@@ -73,15 +86,23 @@ public abstract class VariablesStorage implements Closeable {
 		writeThread = Skript.newThread(new Runnable() {
 			@Override
 			public void run() {
+				final List<SerializedVariable> batch = new ArrayList<SerializedVariable>(batchSize);
 				while (!closed) {
 					try {
-						final SerializedVariable var = changesQueue.take();
-						final Value d = var.value;
-						if (d != null)
-							save(var.name, d.type, d.data);
-						else
-							save(var.name, null, null);
-					} catch (final InterruptedException e) {}
+						batch.add(changesQueue.take());
+					} catch (final InterruptedException e) {
+						continue;
+					}
+					changesQueue.drainTo(batch, batchSize - 1);
+					final long start = System.nanoTime();
+					try {
+						save(batch);
+					} finally {
+						unsaved.addAndGet(-batch.size());
+					}
+					batchTime += System.nanoTime() - start;
+					batchCount++;
+					batch.clear();
 				}
 			}
 		}, "Skript variable save thread for database '" + name + "'");
@@ -113,6 +134,19 @@ public abstract class VariablesStorage implements Closeable {
 	}
 	
 	public final boolean load(final SectionNode n) {
+		if (!loadConfig(n) || !loadVariables(n))
+			return false;
+		Skript.closeOnDisable(this);
+		return true;
+	}
+	
+	/**
+	 * Reads the generic parts of the database's configuration. Must be called on Bukkit's main thread.
+	 * 
+	 * @param n
+	 * @return Whether the configuration is valid
+	 */
+	final boolean loadConfig(final SectionNode n) {
 		final String pattern = getValue(n, "pattern");
 		if (pattern == null)
 			return false;
@@ -163,16 +197,32 @@ public abstract class VariablesStorage implements Closeable {
 					startBackupTask(backupInterval);
 			}
 		}
-		
+		return true;
+	}
+	
+	/**
+	 * Loads the variables stored in this database and starts saving changes. Must be called on Bukkit's main thread unless this storage {@link #canLoadInParallel() can load
+	 * in parallel}.
+	 * <p>
+	 * The caller must register this storage with {@link Skript#closeOnDisable(Closeable)} if this method succeeds.
+	 * 
+	 * @param n
+	 * @return Whether the variables were loaded successfully
+	 */
+	final boolean loadVariables(final SectionNode n) {
 		if (!load_i(n))
 			return false;
-		
 		writeThread.start();
-		Skript.closeOnDisable(this);
-		
 		return true;
 	}
 	
+	/**
+	 * @return Whether {@link #load_i(SectionNode)} may be called on a thread other than Bukkit's main thread, and concurrently with the loading of other storages
+	 */
+	protected boolean canLoadInParallel() {
+		return false;
+	}
+	
 	/**
 	 * Loads variables stored here.
 	 * 
@@ -191,7 +241,7 @@ public abstract class VariablesStorage implements Closeable {
 	protected abstract File getFile(String file);
 	
 	/**
-	 * Must be locked after {@link Variables#getReadLock()} (if that lock is used at all)
+	 * Must be locked before the segments of the variables map (if those are locked at all)
 	 */
 	protected final Object connectionLock = new Object();
 	
@@ -246,6 +296,7 @@ public abstract class VariablesStorage implements Closeable {
 	 * May be called from a different thread than Bukkit's main thread.
 	 */
 	final void save(final SerializedVariable var) {
+		unsaved.incrementAndGet();
 		if (changesQueue.size() > FIRST_WARNING && lastWarning < System.currentTimeMillis() - WARNING_INTERVAL * 1000) {
 			Skript.warning("Cannot write variables to the database '" + databaseName + "' at sufficient speed; server performance may suffer and many variables will be lost if the server crashes. (this warning will be repeated at most once every " + WARNING_INTERVAL + " seconds)");
 			lastWarning = System.currentTimeMillis();
@@ -271,7 +322,7 @@ public abstract class VariablesStorage implements Closeable {
 	 */
 	@Override
 	public void close() {
-		while (changesQueue.size() > 0) {
+		while (unsaved.get() > 0) {
 			try {
 				Thread.sleep(10);
 			} catch (final InterruptedException e) {}
@@ -284,7 +335,41 @@ public abstract class VariablesStorage implements Closeable {
 	 * Clears the queue of unsaved variables. Only used if all variables are saved immediately after calling this method.
 	 */
 	protected void clearChangesQueue() {
-		changesQueue.clear();
+		final List<SerializedVariable> cleared = new ArrayList<SerializedVariable>(changesQueue.size());
+		changesQueue.drainTo(cleared);
+		unsaved.addAndGet(-cleared.size());
+	}
+	
+	/**
+	 * Saves several variables at once. Called from the {@link #writeThread} with all variables that have accumulated in the queue (up to a limit).
+	 * <p>
+	 * The default implementation calls {@link #save(String, String, byte[])} for each variable.
+	 * 
+	 * @param vars
+	 */
+	protected void save(final List<SerializedVariable> vars) {
+		for (final SerializedVariable var : vars) {
+			final Value d = var.value;
+			if (d != null)
+				save(var.name, d.type, d.data);
+			else
+				save(var.name, null, null);
+		}
+	}
+	
+	// only written by the writeThread
+	private volatile long batchTime = 0, batchCount = 0;
+	
+	final long getBatchCount() {
+		return batchCount;
+	}
+	
+	/**
+	 * @return The average time in milliseconds a call to {@link #save(List)} took
+	 */
+	final double getAverageBatchTime() {
+		final long n = batchCount;
+		return n == 0 ? 0 : batchTime / 1000000. / n;
 	}
 	
 	/**
@@ -33,6 +33,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.concurrent.NotThreadSafe;
 
@@ -236,7 +237,10 @@ public final class Fields implements Iterable<FieldContext> {
 		}
 	}
 	
-	private final static Map<Class<?>, Collection<Field>> cache = new HashMap<Class<?>, Collection<Field>>();
+	/**
+	 * Accessed concurrently, as variables are serialised on the variable save thread and deserialised on several threads while they are loaded
+	 */
+	private final static Map<Class<?>, Collection<Field>> cache = new ConcurrentHashMap<Class<?>, Collection<Field>>();
 	
 	/**
 	 * Gets all serialisable fields of the provided class, including superclasses.
@@ -0,0 +1,80 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.lang;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.logging.Level;
+
+import org.junit.Test;
+
+import ch.njol.skript.log.ErrorQuality;
+import ch.njol.skript.log.LogEntry;
+
+public class ParseMemoTest {
+	
+	private static ParseMemo.Key key(final String expr, final Class<?>... types) {
+		return new ParseMemo.Key(ParseMemo.EXPRESSION, expr, SkriptParser.ALL_FLAGS, ParseContext.DEFAULT, null, types);
+	}
+	
+	private static LogEntry error(final String message) {
+		return new LogEntry(Level.SEVERE, ErrorQuality.NOT_AN_EXPRESSION.quality(), message, null);
+	}
+	
+	@Test
+	public void testKeys() {
+		assertEquals(key("5 and x", Number.class, String.class), key("5 and x", Number.class, String.class));
+		assertEquals(key("5 and x", Number.class).hashCode(), key("5 and x", Number.class).hashCode());
+		assertFalse(key("5 and x", Number.class).equals(key("5 and x", String.class)));
+		assertFalse(key("5 and x", Number.class).equals(key("5 or x", Number.class)));
+		assertFalse(key("5", Number.class).equals(new ParseMemo.Key(ParseMemo.SINGLE_EXPRESSION, "5", SkriptParser.ALL_FLAGS, ParseContext.DEFAULT, null, new Class<?>[] {Number.class})));
+		assertFalse(key("5", Number.class).equals(new ParseMemo.Key(ParseMemo.EXPRESSION, "5", SkriptParser.PARSE_LITERALS, ParseContext.DEFAULT, null, new Class<?>[] {Number.class})));
+		assertFalse(key("5", Number.class).equals(new ParseMemo.Key(ParseMemo.EXPRESSION, "5", SkriptParser.ALL_FLAGS, ParseContext.COMMAND, null, new Class<?>[] {Number.class})));
+		
+		// the error to print if nothing else matches is part of a failure's messages
+		final LogEntry error = error("'5' is not a number");
+		final ParseMemo.Key withError = new ParseMemo.Key(ParseMemo.SINGLE_EXPRESSION, "5", SkriptParser.ALL_FLAGS, ParseContext.DEFAULT, error, new Class<?>[] {Number.class});
+		assertEquals(withError, new ParseMemo.Key(ParseMemo.SINGLE_EXPRESSION, "5", SkriptParser.ALL_FLAGS, ParseContext.DEFAULT, error("'5' is not a number"), new Class<?>[] {Number.class}));
+		assertFalse(withError.equals(new ParseMemo.Key(ParseMemo.SINGLE_EXPRESSION, "5", SkriptParser.ALL_FLAGS, ParseContext.DEFAULT, null, new Class<?>[] {Number.class})));
+		assertFalse(withError.equals(new ParseMemo.Key(ParseMemo.SINGLE_EXPRESSION, "5", SkriptParser.ALL_FLAGS, ParseContext.DEFAULT, error("'5' is not text"), new Class<?>[] {Number.class})));
+	}
+	
+	@Test
+	public void testScope() {
+		final ParseMemo outer = ParseMemo.enter();
+		outer.addFailure(key("x", Number.class), Collections.<LogEntry>emptyList());
+		final ParseMemo inner = ParseMemo.enter();
+		assertSame(outer, inner);
+		assertTrue(inner.replayFailure(key("x", Number.class)));
+		assertFalse(inner.replayFailure(key("x", String.class)));
+		inner.exit();
+		outer.exit();
+		
+		// failures are forgotten after the outermost parse
+		final ParseMemo next = ParseMemo.enter();
+		assertNotSame(outer, next);
+		assertFalse(next.replayFailure(key("x", Number.class)));
+		next.exit();
+	}
+	
+}
@@ -0,0 +1,168 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.lang;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.Test;
+import org.spongepowered.api.event.Event;
+
+public class TriggerFrameTest {
+	
+	private static Event event() {
+		return (Event) Proxy.newProxyInstance(TriggerFrameTest.class.getClassLoader(), new Class<?>[] {Event.class}, new InvocationHandler() {
+			@Override
+			@Nullable
+			public Object invoke(final @Nullable Object proxy, final @Nullable Method method, final @Nullable Object[] args) {
+				assert method != null;
+				if (method.getName().equals("equals"))
+					return proxy == args[0];
+				if (method.getName().equals("hashCode"))
+					return System.identityHashCode(proxy);
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testNesting() {
+		final Event e1 = event(), e2 = event();
+		final TriggerFrame f1 = new TriggerFrame(e1, 1), f2 = new TriggerFrame(e2, 0);
+		assertNull(TriggerFrame.of(e1));
+		
+		final TriggerFrame p1 = f1.enter();
+		assertNull(p1);
+		assertSame(f1, f1.enter()); // entering the current frame again does nothing
+		assertSame(f1, TriggerFrame.of(e1));
+		
+		final TriggerFrame p2 = f2.enter();
+		assertSame(f1, p2);
+		assertSame(f2, TriggerFrame.of(e2));
+		assertSame(f1, TriggerFrame.of(e1)); // outer frames can still be found
+		f2.exit(p2);
+		
+		assertNull(TriggerFrame.of(e2));
+		assertSame(f1, TriggerFrame.of(e1));
+		f1.exit(p1);
+		assertNull(TriggerFrame.of(e1));
+	}
+	
+	@Test
+	public void testSlots() {
+		final TriggerFrame f = new TriggerFrame(event(), 1);
+		assertNull(f.getSlot(0));
+		assertNull(f.getSlot(5));
+		f.setSlot(0, "a");
+		f.setSlot(5, "b");
+		assertEquals("a", f.getSlot(0));
+		assertEquals("b", f.getSlot(5));
+	}
+	
+	/**
+	 * Executes a loop whose body waits like an addon's delay, i.e. suspends the frame and continues the execution with {@link TriggerItem#walk(TriggerItem, TriggerFrame)}
+	 * after the event has passed.
+	 */
+	@Test
+	public void testResume() {
+		final List<String> log = new ArrayList<String>();
+		final List<TriggerFrame> suspended = new ArrayList<TriggerFrame>();
+		final TriggerItem body = new TriggerItem() {
+			@Override
+			@Nullable
+			protected TriggerItem walk(final Event e) {
+				final TriggerFrame frame = TriggerFrame.of(e);
+				assert frame != null;
+				log.add(frame.getSlot(1) + (frame.isDelayed() ? " delayed" : ""));
+				assertSame(frame, TriggerFrame.suspend(e));
+				suspended.add(frame);
+				return null;
+			}
+			
+			@Override
+			protected boolean run(final Event e) {
+				throw new UnsupportedOperationException();
+			}
+			
+			@Override
+			public String toString(final @Nullable Event e, final boolean debug) {
+				return "wait";
+			}
+		};
+		final TriggerItem loop = new TriggerItem() {
+			@Override
+			@Nullable
+			protected TriggerItem walk(final Event e) {
+				final TriggerFrame frame = TriggerFrame.of(e);
+				assert frame != null;
+				Iterator<?> iter = (Iterator<?>) frame.getSlot(0);
+				if (iter == null)
+					frame.setSlot(0, iter = Arrays.asList(1, 2, 3).iterator());
+				if (!iter.hasNext())
+					return null;
+				frame.setSlot(1, iter.next());
+				return body;
+			}
+			
+			@Override
+			protected boolean run(final Event e) {
+				throw new UnsupportedOperationException();
+			}
+			
+			@Override
+			public String toString(final @Nullable Event e, final boolean debug) {
+				return "loop";
+			}
+		};
+		
+		final Event e = event();
+		assertTrue(TriggerItem.walk(loop, e));
+		for (int i = 0; i < 3; i++) {
+			assertEquals(i + 1, suspended.size());
+			assertNull(TriggerFrame.of(e));
+			assertTrue(TriggerItem.walk(loop, suspended.get(i)));
+		}
+		assertEquals(Arrays.asList("1", "2 delayed", "3 delayed"), log);
+		assertEquals(3, suspended.size());
+		
+		// continuing with only the event starts a new execution
+		assertTrue(TriggerItem.walk(loop, e));
+		assertEquals(Arrays.asList("1", "2 delayed", "3 delayed", "1"), log);
+	}
+	
+	@Test
+	public void testSuspendOutside() {
+		try {
+			TriggerFrame.suspend(event());
+			fail();
+		} catch (final IllegalStateException e) {}
+	}
+	
+}
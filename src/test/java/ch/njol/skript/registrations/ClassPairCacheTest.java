@@ -0,0 +1,89 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.registrations;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.Test;
+
+public class ClassPairCacheTest {
+	
+	@Test
+	public void testCache() {
+		final AtomicInteger resolved = new AtomicInteger();
+		final ClassPairCache<String> cache = new ClassPairCache<String>() {
+			@Override
+			@Nullable
+			protected String resolve(final Class<?> first, final Class<?> second) {
+				resolved.incrementAndGet();
+				return first == second ? null : first.getSimpleName() + second.getSimpleName();
+			}
+		};
+		assertEquals("StringInteger", cache.get(String.class, Integer.class));
+		assertEquals("IntegerString", cache.get(Integer.class, String.class));
+		assertNull(cache.get(String.class, String.class));
+		assertEquals(3, resolved.get());
+		
+		// cached values, including null, are not resolved again
+		assertEquals("StringInteger", cache.get(String.class, Integer.class));
+		assertNull(cache.get(String.class, String.class));
+		assertEquals(3, resolved.get());
+		
+		cache.clear();
+		assertNull(cache.get(String.class, String.class));
+		assertEquals(4, resolved.get());
+	}
+	
+	@Test
+	public void testConcurrentAccess() throws InterruptedException {
+		final Class<?>[] classes = {Object.class, String.class, Integer.class, Double.class, Boolean.class, Character.class};
+		final ClassPairCache<String> cache = new ClassPairCache<String>() {
+			@Override
+			protected String resolve(final Class<?> first, final Class<?> second) {
+				return first.getName() + " " + second.getName();
+			}
+		};
+		final AtomicInteger failures = new AtomicInteger();
+		final Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int offset = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 10000; i++) {
+						final Class<?> first = classes[(i + offset) % classes.length], second = classes[(i / classes.length) % classes.length];
+						if (!(first.getName() + " " + second.getName()).equals(cache.get(first, second)))
+							failures.incrementAndGet();
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (final Thread t : threads)
+			t.join();
+		assertEquals(0, failures.get());
+	}
+	
+}
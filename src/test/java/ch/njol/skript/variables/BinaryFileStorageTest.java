@@ -0,0 +1,93 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.variables;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import ch.njol.skript.variables.BinaryFileStorage.LogReader;
+import ch.njol.skript.variables.BinaryFileStorage.LogWriter;
+
+public class BinaryFileStorageTest {
+	
+	private static byte[] write() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final LogWriter w = new LogWriter(out);
+		w.writeHeader();
+		w.write("a", "long", new byte[] {1, 2, 3});
+		w.write("list::ä::1", "string", new byte[1000]);
+		w.write("a", null, null);
+		w.close();
+		return out.toByteArray();
+	}
+	
+	@SuppressWarnings("null")
+	@Test
+	public void testRoundTrip() throws IOException {
+		final LogReader r = new LogReader(new ByteArrayInputStream(write()));
+		assertTrue(r.readHeader());
+		assertTrue(r.next());
+		assertEquals("a", r.name);
+		assertEquals("long", r.type);
+		assertTrue(Arrays.equals(new byte[] {1, 2, 3}, r.value));
+		assertTrue(r.next());
+		assertEquals("list::ä::1", r.name);
+		assertEquals("string", r.type);
+		assertEquals(1000, r.value.length);
+		assertTrue(r.next());
+		assertEquals("a", r.name);
+		assertNull(r.type);
+		assertFalse(r.next());
+		assertFalse(r.corrupted);
+	}
+	
+	@Test
+	public void testCorruption() throws IOException {
+		final byte[] log = write();
+		
+		// cut off in the middle of the last record
+		LogReader r = new LogReader(new ByteArrayInputStream(log, 0, log.length - 5));
+		assertTrue(r.readHeader());
+		assertTrue(r.next());
+		assertTrue(r.next());
+		assertFalse(r.next());
+		assertTrue(r.corrupted);
+		
+		// changed byte in the second record
+		final byte[] changed = log.clone();
+		changed[40] ^= 1;
+		r = new LogReader(new ByteArrayInputStream(changed));
+		assertTrue(r.readHeader());
+		assertTrue(r.next());
+		assertFalse(r.next());
+		assertTrue(r.corrupted);
+		
+		assertFalse(new LogReader(new ByteArrayInputStream("# csv".getBytes())).readHeader());
+	}
+	
+}
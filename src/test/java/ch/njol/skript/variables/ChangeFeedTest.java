@@ -0,0 +1,82 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.variables;
+
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ChangeFeedTest {
+	
+	@Test
+	public void testAdaptive() {
+		final ChangeFeed.Adaptive f = new ChangeFeed.Adaptive(1, 8);
+		f.lastCheck = 0; // don't actually wait
+		assertTrue(f.await(0));
+		assertEquals(8, f.interval);
+		assertTrue(f.await(3));
+		assertEquals(4, f.interval);
+		f.await(1);
+		f.await(1);
+		f.await(1);
+		assertEquals(1, f.interval);
+		f.await(0);
+		assertEquals(2, f.interval);
+		f.close();
+		assertFalse(f.await(0));
+	}
+	
+	@Test
+	public void testNotifying() throws SocketException {
+		final long interval = 60 * 1000;
+		final ChangeFeed.Notifying receiver = new ChangeFeed.Notifying(0, Collections.<InetSocketAddress>emptyList(), "server 1", interval);
+		final List<InetSocketAddress> servers = new ArrayList<InetSocketAddress>();
+		servers.add(new InetSocketAddress("localhost", receiver.getPort()));
+		final ChangeFeed.Notifying sender = new ChangeFeed.Notifying(0, servers, "server 2", interval);
+		try {
+			sender.committed();
+			final long start = System.currentTimeMillis();
+			assertTrue(receiver.await(0));
+			assertTrue(System.currentTimeMillis() - start < interval / 2);
+			
+			// own notifications are ignored
+			servers.add(new InetSocketAddress("localhost", sender.getPort()));
+			sender.committed();
+			assertTrue(receiver.await(0));
+			sender.lastCheck -= interval - 200;
+			final long start2 = System.currentTimeMillis();
+			assertTrue(sender.await(0));
+			assertTrue(System.currentTimeMillis() - start2 >= 150);
+		} finally {
+			receiver.close();
+			sender.close();
+		}
+		assertFalse(receiver.await(0));
+	}
+	
+}
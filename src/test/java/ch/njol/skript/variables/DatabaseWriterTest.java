@@ -0,0 +1,122 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.variables;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.Test;
+
+public class DatabaseWriterTest {
+	
+	private static PreparedStatement statement(final String prefix, final List<String> executed, final int[] executions) {
+		return statement(prefix, executed, executions, null);
+	}
+	
+	/**
+	 * Records the names of executed rows as "w:name" or "d:name"
+	 * 
+	 * @param bad The name of a row that cannot be executed, which makes its whole batch fail
+	 */
+	private static PreparedStatement statement(final String prefix, final List<String> executed, final int[] executions, final @Nullable String bad) {
+		return (PreparedStatement) Proxy.newProxyInstance(DatabaseWriterTest.class.getClassLoader(), new Class<?>[] {PreparedStatement.class}, new InvocationHandler() {
+			private String name = "";
+			private final List<String> batch = new ArrayList<String>();
+			
+			@Override
+			@Nullable
+			public Object invoke(final @Nullable Object proxy, final @Nullable Method method, final @Nullable Object[] args) throws SQLException {
+				assert method != null;
+				if (method.getName().equals("setString") && args != null && (Integer) args[0] == 1) {
+					name = (String) args[1];
+				} else if (method.getName().equals("addBatch")) {
+					batch.add(name);
+				} else if (method.getName().equals("clearBatch")) {
+					batch.clear();
+				} else if (method.getName().equals("executeBatch")) {
+					executions[0]++;
+					if (batch.contains(bad))
+						throw new SQLException("bad row");
+					for (final String n : batch)
+						executed.add(prefix + n);
+					batch.clear();
+					return new int[0];
+				} else if (method.getName().equals("executeUpdate")) {
+					if (name.equals(bad))
+						throw new SQLException("bad row");
+					executed.add(prefix + name);
+					return 1;
+				}
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testOrder() throws SQLException {
+		final List<String> executed = new ArrayList<String>();
+		final int[] executions = {0};
+		final DatabaseWriter w = new DatabaseWriter(statement("w:", executed, executions), statement("d:", executed, executions), "guid", 2);
+		final byte[] v = {1};
+		w.write("a", "long", v);
+		w.write("b", "long", v);
+		assertEquals(1, executions[0]); // full batch
+		w.write("a", null, null);
+		w.write("c", "long", v);
+		w.write("c", null, null);
+		assertEquals(Arrays.asList("w:a", "w:b", "d:a", "w:c"), executed);
+		w.flush();
+		assertEquals(Arrays.asList("w:a", "w:b", "d:a", "w:c", "d:c"), executed);
+		assertEquals(4, executions[0]);
+		w.flush();
+		assertEquals(4, executions[0]);
+	}
+	
+	@Test
+	public void testFailedBatch() throws SQLException {
+		final List<String> executed = new ArrayList<String>();
+		final int[] executions = {0};
+		final DatabaseWriter w = new DatabaseWriter(statement("w:", executed, executions, "b"), statement("d:", executed, executions), "guid", 3);
+		final byte[] v = {1};
+		w.write("a", "long", v);
+		w.write("b", "long", v);
+		try {
+			w.write("c", "long", v);
+			fail();
+		} catch (final SQLException e) {}
+		// only the bad row is lost
+		assertEquals(Arrays.asList("w:a", "w:c"), executed);
+		w.write("d", "long", v);
+		w.flush();
+		assertEquals(Arrays.asList("w:a", "w:c", "w:d"), executed);
+	}
+	
+}
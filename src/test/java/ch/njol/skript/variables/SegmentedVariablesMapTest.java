@@ -0,0 +1,97 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.variables;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class SegmentedVariablesMapTest {
+	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testSemantics() {
+		final SegmentedVariablesMap m = new SegmentedVariablesMap();
+		m.setVariable("a", 1);
+		m.setVariable("a::1", 2);
+		m.setVariable("a::2::x", 3);
+		m.setVariable("b", 4);
+		assertEquals(4, m.size());
+		assertEquals(1, m.getVariable("a"));
+		assertEquals(3, m.getVariable("a::2::x"));
+		final Map<String, Object> list = (Map<String, Object>) m.getVariable("a::*");
+		assertNotNull(list);
+		assertEquals(1, list.get(null));
+		assertEquals(2, list.get("1"));
+		
+		m.setVariable("a::*", null);
+		assertEquals(1, m.getVariable("a"));
+		assertNull(m.getVariable("a::1"));
+		assertNull(m.getVariable("a::2::x"));
+		assertEquals(2, m.size());
+		
+		assertEquals("a", SegmentedVariablesMap.getSegmentName("a"));
+		assertEquals("a", SegmentedVariablesMap.getSegmentName("a::b::c"));
+	}
+	
+	/**
+	 * Several threads read and write overlapping and disjoint segments. Mostly a smoke test for deadlocks and corrupted maps under contention.
+	 */
+	@Test
+	public void testContention() throws Exception {
+		final SegmentedVariablesMap m = new SegmentedVariablesMap();
+		final int threads = 8, operations = 20000;
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		final Thread[] ts = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			ts[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < operations; i++) {
+							final String name = (i / 4 % 2 == 0 ? "shared" : "own" + id) + "::" + id + "::" + (i % 100); // each kind of operation on both segments
+							if (i % 4 == 0)
+								m.setVariable(name, i);
+							else if (i % 4 == 1)
+								m.getVariable("shared::*");
+							else
+								m.getVariable(name);
+						}
+					} catch (final Throwable e) {
+						error.set(e);
+					}
+				}
+			});
+			ts[t].start();
+		}
+		for (final Thread t : ts)
+			t.join();
+		if (error.get() != null)
+			throw new AssertionError(error.get());
+		assertEquals(threads * 50, m.size());
+	}
+	
+}
@@ -0,0 +1,78 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.variables;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class VariableChangeQueueTest {
+	
+	@Test
+	public void testCoalescing() throws InterruptedException {
+		final VariableChangeQueue q = new VariableChangeQueue();
+		final SerializedVariable.Value v1 = new SerializedVariable.Value("long", new byte[] {1}), v2 = new SerializedVariable.Value("long", new byte[] {2});
+		q.add(new SerializedVariable("a", v1));
+		q.add(new SerializedVariable("b", v1));
+		q.add(new SerializedVariable("a", v2));
+		q.add(new SerializedVariable("c", null));
+		assertEquals(3, q.size());
+		assertEquals(0.25, q.getCoalesceRatio(), 0);
+		
+		final List<SerializedVariable> first = q.take(2);
+		assertEquals(2, first.size());
+		assertEquals("a", first.get(0).name);
+		assertSame(v2, first.get(0).value);
+		assertEquals("b", first.get(1).name);
+		
+		final List<SerializedVariable> second = q.take(2);
+		assertEquals(1, second.size());
+		assertEquals("c", second.get(0).name);
+		assertNull(second.get(0).value);
+		assertTrue(q.isEmpty());
+	}
+	
+	@Test(timeout = 1000)
+	public void testAwaitSaved() throws InterruptedException {
+		final VariableChangeQueue q = new VariableChangeQueue();
+		q.add(new SerializedVariable("a", null));
+		final List<SerializedVariable> batch = q.take(10);
+		assertTrue(q.isEmpty());
+		final Thread saver = new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(50);
+				} catch (final InterruptedException e) {}
+				q.saved(batch.size());
+			}
+		};
+		final long start = System.currentTimeMillis();
+		saver.start();
+		q.awaitSaved(); // must not return while the batch is still being saved
+		assertTrue(System.currentTimeMillis() - start >= 40);
+		saver.join();
+	}
+	
+}
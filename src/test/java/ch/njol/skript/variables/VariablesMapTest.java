@@ -0,0 +1,104 @@
+/*
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ * Copyright 2011-2014 Peter Güttinger
+ *
+ */
+
+package ch.njol.skript.variables;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+public class VariablesMapTest {
+	
+	@Test
+	public void testComparator() {
+		final String[] sorted = {
+				"a1", "a01", "a2", "a10b", "a10", "a11",
+				"a99999999999999999999", "a100000000000000000000", "a0100000000000000000000",
+				"a", // a name comes after all longer names it is a prefix of
+				"log::9", "log::12345", "log::12346",
+				"scores::1::x", "scores::2",
+		};
+		for (int i = 0; i < sorted.length; i++) {
+			assertEquals(sorted[i], 0, VariablesMap.variableNameComparator.compare(sorted[i], sorted[i]));
+			for (int j = i + 1; j < sorted.length; j++) {
+				assertTrue(sorted[i] + " < " + sorted[j], VariablesMap.variableNameComparator.compare(sorted[i], sorted[j]) < 0);
+				assertTrue(sorted[j] + " > " + sorted[i], VariablesMap.variableNameComparator.compare(sorted[j], sorted[i]) > 0);
+			}
+		}
+		final String[] shuffled = sorted.clone();
+		Arrays.sort(shuffled);
+		Arrays.sort(shuffled, VariablesMap.variableNameComparator);
+		assertArrayEquals(sorted, shuffled);
+	}
+	
+	private static String[] path(final String... names) {
+		return names;
+	}
+	
+	private static String next(final Iterator<Entry<String, Object>> iter) {
+		assertTrue(iter.hasNext());
+		final Entry<String, Object> e = iter.next();
+		return e.getKey() + "=" + e.getValue();
+	}
+	
+	@Test
+	public void testListIterator() {
+		final VariablesMap map = new VariablesMap();
+		assertNull(map.listIterator(path("list", "*")));
+		for (int i = 1; i <= 4; i++)
+			map.setVariable(path("list", "" + i), i);
+		map.setVariable(path("list", "2", "nested"), "n");
+		map.setVariable(path("list", "5", "nested"), "n");
+		
+		final Iterator<Entry<String, Object>> iter = map.listIterator(path("list", "*"));
+		assertNotNull(iter);
+		assertEquals("1=1", next(iter));
+		map.setVariable(path("list", "2"), 20); // changed
+		map.setVariable(path("list", "3"), null); // deleted
+		map.setVariable(path("list", "10"), 10); // added
+		map.setVariable(path("list", "0"), 0); // added before the current element
+		assertEquals("2=20", next(iter));
+		assertEquals("4=4", next(iter));
+		assertFalse(iter.hasNext()); // '5' is only a list, '10' has been added after the iterator was created
+		
+		final Iterator<Entry<String, Object>> iter2 = map.listIterator(path("list", "*"));
+		assertNotNull(iter2);
+		assertEquals("0=0", next(iter2));
+		assertEquals("1=1", next(iter2));
+	}
+	
+	@Test
+	public void testDeletedList() {
+		final VariablesMap map = new VariablesMap();
+		map.setVariable(path("a", "b", "1"), 1);
+		map.setVariable(path("a", "b", "2"), 2);
+		final Iterator<Entry<String, Object>> iter = map.listIterator(path("a", "b", "*"));
+		assertNotNull(iter);
+		assertEquals("1=1", next(iter));
+		map.setVariable(path("a", "*"), null);
+		assertFalse(iter.hasNext());
+	}
+	
+}